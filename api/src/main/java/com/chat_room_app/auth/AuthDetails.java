@@ -6,18 +6,23 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.time.LocalDateTime;
 
 @Entity
 @Table
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @AllArgsConstructor
 @Data
 @NoArgsConstructor
 public class AuthDetails {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "auth_details_seq")
+    @SequenceGenerator(name = "auth_details_seq", sequenceName = "auth_details_seq", allocationSize = 100)
     @Column(nullable = false, updatable = false)
     private Long id;
 
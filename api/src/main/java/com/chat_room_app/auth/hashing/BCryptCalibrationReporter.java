@@ -0,0 +1,47 @@
+package com.chat_room_app.auth.hashing;
+
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * Times a few hashes once the app is up and logs what the configured BCrypt cost means for throughput,
+ * makes it obvious when the strength is too high for the hardware the api runs on
+ */
+@Log
+@Component
+public class BCryptCalibrationReporter {
+
+    private static final int SAMPLES = 3;
+
+    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+
+    @Value("${password.hashing.bcrypt-strength:10}")
+    private int bcryptStrength;
+
+    public BCryptCalibrationReporter(PasswordEncoder passwordEncoder, PasswordHashingExecutor passwordHashingExecutor) {
+        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reportCalibration() {
+        long[] samples = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            passwordEncoder.encode("calibration-Password1!");
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        double medianMillis = samples[SAMPLES / 2] / 1_000_000.0;
+        double hashesPerSecond = passwordHashingExecutor.getPoolSize() * (1000.0 / medianMillis);
+        log.info(String.format("BCrypt strength %d takes %.1f ms per hash, about %.0f hashes/sec across %d threads",
+                bcryptStrength, medianMillis, hashesPerSecond, passwordHashingExecutor.getPoolSize()));
+    }
+}
@@ -0,0 +1,9 @@
+package com.chat_room_app.auth.hashing;
+
+/**
+ * Priority of a queued hashing task, lower ordinal runs first.
+ * Logins (VERIFY) jump ahead of sign-ups and password changes (ENCODE) during a storm
+ */
+public enum HashPriority {
+    VERIFY, ENCODE
+}
@@ -0,0 +1,146 @@
+package com.chat_room_app.auth.hashing;
+
+import com.chat_room_app.exceptions.custom_exceptions.ServiceUnavailableException;
+import com.chat_room_app.exceptions.custom_exceptions.TooManyRequests429Exception;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs BCrypt hashing and verification on a fixed pool of platform threads sized to the cpu count.
+ * Requests wait in a bounded priority queue, once the queue is full new requests are rejected with a 429
+ * instead of letting every virtual thread start its own cpu heavy hash
+ */
+@Log
+@Component
+public class PasswordHashingExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final Semaphore permits;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Counter rejectedCounter;
+    private final Map<HashPriority, Timer> queueWaitTimers = new EnumMap<>(HashPriority.class);
+    private final Map<HashPriority, Timer> hashTimers = new EnumMap<>(HashPriority.class);
+
+    public PasswordHashingExecutor(@Value("${password.hashing.threads:0}") int threads,
+                                   @Value("${password.hashing.queue-capacity:64}") int queueCapacity,
+                                   MeterRegistry meterRegistry) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.permits = new Semaphore(poolSize + queueCapacity);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), Thread.ofPlatform().name("password-hash-", 0).daemon().factory());
+        this.rejectedCounter = Counter.builder("password.hashing.rejected")
+                .description("Hashing requests rejected because the queue was full")
+                .register(meterRegistry);
+        Gauge.builder("password.hashing.queue.size", executor, pool -> pool.getQueue().size())
+                .description("Hashing requests waiting for a free thread")
+                .register(meterRegistry);
+        for (HashPriority priority : HashPriority.values()) {
+            queueWaitTimers.put(priority, Timer.builder("password.hashing.queue.wait")
+                    .tag("priority", priority.name())
+                    .register(meterRegistry));
+            hashTimers.put(priority, Timer.builder("password.hashing.duration")
+                    .tag("priority", priority.name())
+                    .register(meterRegistry));
+        }
+        log.info("Password hashing executor started with " + poolSize + " threads and a queue of " + queueCapacity);
+    }
+
+    /**
+     * Queues the hashing task and blocks the calling (virtual) thread until it is done
+     * @throws TooManyRequests429Exception if the queue is already full
+     */
+    public <T> T execute(HashPriority priority, Supplier<T> hashTask) {
+        if (!permits.tryAcquire()) {
+            rejectedCounter.increment();
+            log.warning("Password hashing queue is full, rejecting " + priority + " request");
+            throw new TooManyRequests429Exception("Too many authentication requests, please try again shortly");
+        }
+        long enqueuedAt = System.nanoTime();
+        HashTask<T> task = new HashTask<>(priority, sequence.getAndIncrement(), () -> {
+            long startedAt = System.nanoTime();
+            queueWaitTimers.get(priority).record(startedAt - enqueuedAt, TimeUnit.NANOSECONDS);
+            try {
+                return hashTask.get();
+            }
+            finally {
+                hashTimers.get(priority).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            }
+        });
+        try {
+            executor.execute(task);
+        }
+        catch (RejectedExecutionException ree) {
+            task.cancel(false);
+            throw new ServiceUnavailableException("Password hashing is unavailable");
+        }
+        return await(task);
+    }
+
+    public int getPoolSize() {
+        return executor.getCorePoolSize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> T await(HashTask<T> task) {
+        try {
+            return task.get();
+        }
+        catch (InterruptedException ie) {
+            task.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Password hashing was interrupted");
+        }
+        catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * FutureTask ordered by priority, then by arrival so equal priorities stay FIFO.
+     * The permit is handed back in done() which runs once on completion or cancellation
+     */
+    private final class HashTask<T> extends FutureTask<T> implements Comparable<HashTask<?>> {
+        private final HashPriority priority;
+        private final long sequence;
+
+        private HashTask(HashPriority priority, long sequence, Callable<T> callable) {
+            super(callable);
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(HashTask<?> other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+
+        @Override
+        protected void done() {
+            permits.release();
+        }
+    }
+}
@@ -4,9 +4,10 @@ package com.chat_room_app.auth.v1;
 import com.chat_room_app.auth.dtos.*;
 import com.chat_room_app.jwt.JwtService;
 import com.chat_room_app.jwt.JwtUtils;
+import com.chat_room_app.rate_limit.ClientRateLimit;
+import com.chat_room_app.rate_limit.RateLimitKey;
 import com.chat_room_app.users.User;
 import com.chat_room_app.users.dtos.UserDto;
-import io.github.resilience4j.ratelimiter.annotation.RateLimiter;
 import jakarta.mail.MessagingException;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.java.Log;
@@ -39,7 +40,7 @@ public class AuthController {
      */
     @PreAuthorize("isAuthenticated()")
     @PostMapping("/cookie-status")
-    @RateLimiter(name = "auths")
+    @ClientRateLimit(key = RateLimitKey.USER)
     public ResponseEntity<String> checkCookie() {
         String username = JwtUtils.getCurrentUserUsername();
         log.info("Cookie is still valid for user: " + username);
@@ -50,7 +51,7 @@ public class AuthController {
      * register user endpoint
      */
     @PostMapping("/register")
-    @RateLimiter(name = "auths")
+    @ClientRateLimit(route = "register")
     public ResponseEntity<UserDto> register(@RequestBody RegisterUserDto request) throws MessagingException {
             User registeredUser = authenticationService.signUp(request);
             UserDto dto = UserDto.getUserDto(registeredUser);
@@ -61,7 +62,7 @@ public class AuthController {
      * login user endpoint
      */
     @PostMapping("/login")
-    @RateLimiter(name = "auths")
+    @ClientRateLimit(route = "login")
     public ResponseEntity<UserDto> login(@RequestBody AuthenticateUserDto request, HttpServletResponse response) {
         User user = authenticationService.authenticateUser(request);
         String token = jwtService.generateToken(user);
@@ -75,7 +76,7 @@ public class AuthController {
      * verify user endpoint via the code they input
      */
     @PostMapping("/verify")
-    @RateLimiter(name = "auths")
+    @ClientRateLimit(route = "verify")
     public ResponseEntity<String> verify(@RequestBody VerifyUserDto request) {
         authenticationService.verifyUser(request);
         return ResponseEntity.ok("User verified!");
@@ -83,7 +84,7 @@ public class AuthController {
 
     @PreAuthorize("isAuthenticated()")
     @PostMapping("/logout")
-    @RateLimiter(name = "auths")
+    @ClientRateLimit(key = RateLimitKey.USER)
     public ResponseEntity<String> logout(HttpServletResponse response) {
         // Set cookie header with SameSite
         String cookieHeader = jwtService.generateCookie("", Optional.of(0L));
@@ -95,7 +96,7 @@ public class AuthController {
      * resend verification email endpoint
      */
     @PostMapping("/resend/{username}")
-    @RateLimiter(name = "auths")
+    @ClientRateLimit(route = "email")
     public ResponseEntity<EmailSentSuccessfullyDto> resend(@PathVariable String username) throws MessagingException {
         authenticationService.resendVerificationEmail(username);
         EmailSentSuccessfullyDto dto = new EmailSentSuccessfullyDto(username, "Verification code resent!");
@@ -107,7 +108,7 @@ public class AuthController {
      * THIS IS USED ONLY FOR WHEN A USER WANTS TO UPDATE PASSWORD
      */
     @PutMapping("/password")
-    @RateLimiter(name = "auths")
+    @ClientRateLimit(route = "login")
     public ResponseEntity<UserDto> changePassword(@RequestBody ChangePasswordDto request) {
         User user = authenticationService.changePassword(request);
         UserDto userDto = UserDto.getUserDto(user);
@@ -118,7 +119,7 @@ public class AuthController {
      * sends email for reset password request
      */
     @PostMapping("/forgot/{username}")
-    @RateLimiter(name = "auths")
+    @ClientRateLimit(route = "email")
     public ResponseEntity<EmailSentSuccessfullyDto> forgotPassword(@PathVariable String username) throws MessagingException {
         authenticationService.sendForgottenPasswordVerificationCode(username);
         EmailSentSuccessfullyDto dto = new EmailSentSuccessfullyDto(username, "Forgot password verification code sent!");
@@ -130,7 +131,7 @@ public class AuthController {
      * ONLY TO BE USED FOR WHEN USER FORGETS PASSWORD
      */
     @PutMapping("/reset")
-    @RateLimiter(name = "auths")
+    @ClientRateLimit(route = "verify")
     public ResponseEntity<UserDto> resetPasswordForgottenPassword(@RequestBody ForgetPasswordDto request) {
         User user = authenticationService.resetPassword(request);
         UserDto userDto = UserDto.getUserDto(user);
@@ -10,6 +10,8 @@ import com.chat_room_app.exceptions.custom_exceptions.NotFound404Exception;
 import com.chat_room_app.exceptions.custom_exceptions.UnAuthorized401Exception;
 import com.chat_room_app.users.User;
 import com.chat_room_app.users.UserRepository;
+import com.chat_room_app.users.UsernameAutocompleteIndex;
+import com.chat_room_app.users.UsernameSearchIndex;
 import jakarta.mail.MessagingException;
 import lombok.extern.java.Log;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -32,13 +34,17 @@ public class AuthService {
     private final PasswordEncoder passwordEncoder;
     private final EmailService emailService;
     private final AuthRepository authRepository;
+    private final UsernameSearchIndex usernameSearchIndex;
+    private final UsernameAutocompleteIndex usernameAutocompleteIndex;
 
-    public AuthService(UserRepository userRepository, AuthenticationManager authenticationManager, PasswordEncoder passwordEncoder, EmailService emailService, AuthRepository authRepository) {
+    public AuthService(UserRepository userRepository, AuthenticationManager authenticationManager, PasswordEncoder passwordEncoder, EmailService emailService, AuthRepository authRepository, UsernameSearchIndex usernameSearchIndex, UsernameAutocompleteIndex usernameAutocompleteIndex) {
         this.userRepository = userRepository;
         this.authenticationManager = authenticationManager;
         this.passwordEncoder = passwordEncoder;
         this.emailService = emailService;
         this.authRepository = authRepository;
+        this.usernameSearchIndex = usernameSearchIndex;
+        this.usernameAutocompleteIndex = usernameAutocompleteIndex;
     }
 
     /**
@@ -54,7 +60,10 @@ public class AuthService {
         String code = setVerificationCode(authDetails);
         sendVerificationEmail(user, code);
         log.info("User " + request.username() + " created");
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        usernameSearchIndex.index(savedUser);
+        usernameAutocompleteIndex.index(savedUser);
+        return savedUser;
     }
 
     /**
@@ -97,6 +106,8 @@ public class AuthService {
             authDetails.setIsVerified(true);
             log.info("user verified");
             userRepository.save(user);
+            usernameSearchIndex.index(user);
+            usernameAutocompleteIndex.index(user);
         }
         else {
             log.warning("verification code invalid: " + request.code());
@@ -1,6 +1,7 @@
 package com.chat_room_app.auth.v2;
 
 import com.chat_room_app.auth.dtos.RegisterUserDto;
+import com.chat_room_app.rate_limit.ClientRateLimit;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -16,6 +17,7 @@ public class AuthV2Controller {
     }
 
     @PostMapping("/register")
+    @ClientRateLimit(route = "register")
     public ResponseEntity<String> register(@RequestBody RegisterUserDto registerUserDto) {
         authV2Service.signUp(registerUserDto);
         return ResponseEntity
@@ -24,12 +26,14 @@ public class AuthV2Controller {
     }
 
     @PostMapping("/resend-verification/{username}")
+    @ClientRateLimit(route = "email")
     public ResponseEntity<String> resendVerification(@PathVariable String username) {
         authV2Service.resendVerificationEmail(username);
         return ResponseEntity.ok("Verification email sent");
     }
 
     @PostMapping("/forgot/{username}")
+    @ClientRateLimit(route = "email")
     public ResponseEntity<String> forgotPassword(@PathVariable String username) {
         authV2Service.sendForgotPasswordVerificationCode(username);
         return ResponseEntity.ok("Forgot password verification code sent");
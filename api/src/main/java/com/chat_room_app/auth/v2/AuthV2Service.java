@@ -2,42 +2,46 @@ package com.chat_room_app.auth.v2;
 
 import com.chat_room_app.auth.AuthDetails;
 import com.chat_room_app.auth.dtos.RegisterUserDto;
-import com.chat_room_app.auth.dtos.VerifyUserDto;
-import com.chat_room_app.email.ChatterBoxEmailService;
+import com.chat_room_app.email.outbox.EmailOutbox;
+import com.chat_room_app.email.outbox.EmailType;
 import com.chat_room_app.exceptions.custom_exceptions.Conflict409Exception;
 import com.chat_room_app.exceptions.custom_exceptions.NotFound404Exception;
 import com.chat_room_app.users.User;
 import com.chat_room_app.users.UserRepository;
+import com.chat_room_app.users.UsernameAutocompleteIndex;
+import com.chat_room_app.users.UsernameSearchIndex;
 import lombok.extern.java.Log;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executor;
 
 import static com.chat_room_app.auth.AuthUtil.*;
 
 @Service
 @Log
 public class AuthV2Service {
-    private final Executor virtualThreadExecutor;
-    private final ChatterBoxEmailService chatterBoxEmailService;
+    private final EmailOutbox emailOutbox;
     private final PasswordEncoder passwordEncoder;
     private final UserRepository userRepository;
+    private final UsernameSearchIndex usernameSearchIndex;
+    private final UsernameAutocompleteIndex usernameAutocompleteIndex;
 
-    public AuthV2Service(@Qualifier("virtualThreadExecutor") Executor virtualThreadExecutor, ChatterBoxEmailService chatterBoxEmailService, PasswordEncoder passwordEncoder, UserRepository userRepository) {
-        this.virtualThreadExecutor = virtualThreadExecutor;
-        this.chatterBoxEmailService = chatterBoxEmailService;
+    public AuthV2Service(EmailOutbox emailOutbox, PasswordEncoder passwordEncoder, UserRepository userRepository, UsernameSearchIndex usernameSearchIndex, UsernameAutocompleteIndex usernameAutocompleteIndex) {
+        this.emailOutbox = emailOutbox;
         this.passwordEncoder = passwordEncoder;
         this.userRepository = userRepository;
+        this.usernameSearchIndex = usernameSearchIndex;
+        this.usernameAutocompleteIndex = usernameAutocompleteIndex;
     }
 
     /**
-     * Registers users and calls email service asynchronous to avoid blocking
+     * Registers users, the verification email is written to the outbox in the same transaction
+     * and sent by the EmailOutboxDispatcher so sign up never waits on the email service
      * @param request
      */
+    @Transactional
     public void signUp(RegisterUserDto request) {
         log.info("Registering new user");
         verifyRegistrationDetails(request, userRepository);
@@ -46,20 +50,13 @@ public class AuthV2Service {
         authDetails.setAuthorities("ROLE_USER");
         authDetails.setCodeExpiryTime(LocalDateTime.now().plusMinutes(10));
         String code = setVerificationCode(authDetails);
-        CompletableFuture.runAsync(() -> {
-            log.info("Sending email verification request to external email service");
-            try {
-                VerifyUserDto emailServiceDto = new VerifyUserDto(request.email(), request.username(), code);
-                chatterBoxEmailService.sendVerifyEmail(emailServiceDto);
-                log.info("Email request sent successfully");
-            }
-            catch (Exception e) {
-                log.warning("Failed to POST to email service, and send verification email");
-            }
-        }, virtualThreadExecutor);
-        userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        emailOutbox.enqueue(EmailType.VERIFY, user.getEmail(), user.getUsername(), code);
+        usernameSearchIndex.index(savedUser);
+        usernameAutocompleteIndex.index(savedUser);
     }
 
+    @Transactional
     public void resendVerificationEmail(String username) {
         User user = getUserByUsername(username);
         AuthDetails authDetails = user.getAuthDetails();
@@ -68,40 +65,23 @@ public class AuthV2Service {
             throw new Conflict409Exception("Email is already verified");
         }
         String code = setVerificationCode(authDetails);
-        CompletableFuture.runAsync(() -> {
-            log.info("Sending email verification request to external email service");
-            try {
-                VerifyUserDto emailServiceDto = new VerifyUserDto(user.getEmail(), username, code);
-                chatterBoxEmailService.sendVerifyEmail(emailServiceDto);
-            }
-            catch (Exception e) {
-                log.warning("Failed to POST to email service, and resend verification email");
-            }
-        }, virtualThreadExecutor);
         userRepository.save(user);
+        emailOutbox.enqueue(EmailType.VERIFY, user.getEmail(), user.getUsername(), code);
     }
 
 
     /**
-     * Sends a forget password request to email service asynchronous to avoid blocking
+     * Queues a forget password email in the outbox, sent by the EmailOutboxDispatcher
      * @param username
      */
+    @Transactional
     public void sendForgotPasswordVerificationCode(String username) {
         log.info("sending forgotten password verification code for user " + username);
         User user = getUserByUsername(username);
         AuthDetails authDetails = user.getAuthDetails();
         String code = setVerificationCode(authDetails);
-        CompletableFuture.runAsync(() -> {
-            log.info("Sending forgot password request to external email service");
-            try {
-                VerifyUserDto emailServiceDto = new VerifyUserDto(user.getEmail(), username, code);
-                chatterBoxEmailService.sendRestPasswordEmail(emailServiceDto);
-            }
-            catch (Exception e) {
-                log.warning("Failed to POST to email service, and send forget password verification email");
-            }
-        }, virtualThreadExecutor);
         userRepository.save(user);
+        emailOutbox.enqueue(EmailType.RESET_PASSWORD, user.getEmail(), user.getUsername(), code);
     }
 
     private User getUserByUsername(String username) {
@@ -20,7 +20,8 @@ import java.util.Set;
 @EqualsAndHashCode(exclude = {"members", "messages"})
 public class ChatRoom {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "chat_room_seq")
+    @SequenceGenerator(name = "chat_room_seq", sequenceName = "chat_room_seq", allocationSize = 100)
     private Long id;
 
     private String name;
@@ -31,7 +32,8 @@ public class ChatRoom {
     @JoinTable(
             name = "chatroom_members",
             joinColumns = @JoinColumn(name = "chatroom_id"),
-            inverseJoinColumns = @JoinColumn(name = "user_id")
+            inverseJoinColumns = @JoinColumn(name = "user_id"),
+            indexes = @Index(name = "idx_chatroom_members_user", columnList = "user_id")
     )
     private Set<User> members = new HashSet<>();
 
@@ -39,5 +41,8 @@ public class ChatRoom {
     private Set<Message> messages = new HashSet<>();
 
     private LocalDateTime created = LocalDateTime.now();
+
+    // days messages are kept, null uses messages.retention.default-retention
+    private Integer retentionDays;
 }
 
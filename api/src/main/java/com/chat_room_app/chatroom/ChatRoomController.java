@@ -2,8 +2,11 @@ package com.chat_room_app.chatroom;
 
 import com.chat_room_app.chatroom.dtos.ChatRoomDto;
 import com.chat_room_app.chatroom.dtos.NewChatDto;
+import com.chat_room_app.chatroom.dtos.RetentionDto;
 import com.chat_room_app.jwt.JwtUtils;
+import com.chat_room_app.message.MessageService;
 import com.chat_room_app.message.dtos.MessageDto;
+import com.chat_room_app.message.dtos.MessageHistoryPageDto;
 import com.chat_room_app.users.User;
 import com.chat_room_app.users.UserRepository;
 import com.chat_room_app.users.dtos.ChatRoomUserDto;
@@ -21,9 +24,11 @@ import java.util.List;
 public class ChatRoomController {
 
     private final ChatRoomService chatRoomService;
+    private final MessageService messageService;
 
-    public ChatRoomController(ChatRoomService chatRoomService) {
+    public ChatRoomController(ChatRoomService chatRoomService, MessageService messageService) {
         this.chatRoomService = chatRoomService;
+        this.messageService = messageService;
     }
 
     /**
@@ -50,6 +55,21 @@ public class ChatRoomController {
         return new ResponseEntity<>(dto, HttpStatus.OK);
     }
 
+    /**
+     * Page back through the ChatRoom's messages, archived history included
+     * @param id
+     * @param before nextCursor of the previous page, leave out for the newest messages
+     * @param limit
+     * @return
+     */
+    @GetMapping("/{id}/messages")
+    public ResponseEntity<MessageHistoryPageDto> getHistory(@PathVariable Long id, @RequestParam(required = false) String before,
+                                                            @RequestParam(defaultValue = "50") int limit) {
+        String username = JwtUtils.getCurrentUserUsername();
+        MessageHistoryPageDto dto = messageService.getHistory(id, username, before, limit);
+        return new ResponseEntity<>(dto, HttpStatus.OK);
+    }
+
     /**
      * Delete ChatRoom
      * @param id
@@ -62,6 +82,19 @@ public class ChatRoomController {
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
+    /**
+     * Change how long the ChatRoom keeps its messages
+     * @param chatRoomId
+     * @param request null retentionDays goes back to the default
+     * @return
+     */
+    @PutMapping("/{chatRoomId}/retention")
+    public ResponseEntity<RetentionDto> setRetention(@PathVariable Long chatRoomId, @RequestBody RetentionDto request) {
+        String username = JwtUtils.getCurrentUserUsername();
+        RetentionDto dto = chatRoomService.setRetention(chatRoomId, request.retentionDays(), username);
+        return new ResponseEntity<>(dto, HttpStatus.OK);
+    }
+
     /**
      * Add new member to ChatRoom
      * @param chatRoomId
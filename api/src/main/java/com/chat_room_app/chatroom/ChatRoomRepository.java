@@ -1,8 +1,55 @@
 package com.chat_room_app.chatroom;
 
+import com.chat_room_app.chatroom.dtos.ChatRoomIdAndNameDto;
+import com.chat_room_app.chatroom.dtos.ChatRoomMembershipDto;
+import com.chat_room_app.chatroom.dtos.ChatRoomRetentionDto;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
 
 public interface ChatRoomRepository extends JpaRepository<ChatRoom, Long> {
 
     boolean existsByIdAndMembersUsername(Long id, String username);
+
+    /**
+     * Rooms both users are members of, only ids and names
+     * @param userId
+     * @param otherUserId
+     * @return
+     */
+    @Query("SELECT new com.chat_room_app.chatroom.dtos.ChatRoomIdAndNameDto(c.id, c.name) FROM ChatRoom c " +
+            "JOIN c.members m JOIN c.members o WHERE m.id = :userId AND o.id = :otherUserId")
+    List<ChatRoomIdAndNameDto> findCommonChatRooms(@Param("userId") Long userId, @Param("otherUserId") Long otherUserId);
+
+    /**
+     * Ids of the rooms the user is a member of
+     * @param userId
+     * @return
+     */
+    @Query("SELECT c.id FROM ChatRoom c JOIN c.members m WHERE m.id = :userId")
+    List<Long> findIdsByMemberId(@Param("userId") Long userId);
+
+    /**
+     * Pages through every (room, member) pair ordered by room then member, keyset on both
+     * @param lastChatRoomId
+     * @param lastUserId
+     * @param pageable
+     * @return
+     */
+    @Query("SELECT new com.chat_room_app.chatroom.dtos.ChatRoomMembershipDto(c.id, m.id, m.username) FROM ChatRoom c JOIN c.members m " +
+            "WHERE c.id > :lastChatRoomId OR (c.id = :lastChatRoomId AND m.id > :lastUserId) ORDER BY c.id, m.id")
+    List<ChatRoomMembershipDto> findMembershipsAfter(@Param("lastChatRoomId") Long lastChatRoomId, @Param("lastUserId") Long lastUserId, Pageable pageable);
+
+    /**
+     * Pages through the rooms and their retention ordered by id, keyset on the id
+     * @param lastChatRoomId
+     * @param pageable
+     * @return
+     */
+    @Query("SELECT new com.chat_room_app.chatroom.dtos.ChatRoomRetentionDto(c.id, c.retentionDays) FROM ChatRoom c " +
+            "WHERE c.id > :lastChatRoomId ORDER BY c.id")
+    List<ChatRoomRetentionDto> findRetentionsAfter(@Param("lastChatRoomId") Long lastChatRoomId, Pageable pageable);
 }
@@ -1,31 +1,72 @@
 package com.chat_room_app.chatroom;
 
 import com.chat_room_app.chatroom.dtos.ChatRoomDto;
+import com.chat_room_app.chatroom.dtos.ChatRoomSummaryDto;
 import com.chat_room_app.chatroom.dtos.NewChatDto;
+import com.chat_room_app.chatroom.dtos.RetentionDto;
+import com.chat_room_app.configs.CacheConfiguration;
+import com.chat_room_app.datasource.AfterCommit;
+import com.chat_room_app.exceptions.custom_exceptions.BadRequest400Exception;
 import com.chat_room_app.exceptions.custom_exceptions.Conflict409Exception;
 import com.chat_room_app.exceptions.custom_exceptions.NotFound404Exception;
 import com.chat_room_app.exceptions.custom_exceptions.UnAuthorized401Exception;
-import com.chat_room_app.message.dtos.MessageDto;
+import com.chat_room_app.message.MessageArchiveRepository;
+import com.chat_room_app.message.MessageHistoryReader;
+import com.chat_room_app.message.MessageRetentionProperties;
+import com.chat_room_app.message.dtos.MessageHistoryPageDto;
+import com.chat_room_app.users.ProfileVersions;
 import com.chat_room_app.users.User;
 import com.chat_room_app.users.UserRepository;
 import com.chat_room_app.users.dtos.ChatRoomUserDto;
 import lombok.extern.java.Log;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 @Service
 @Log
 public class ChatRoomService {
 
+    private static final int LATEST_MESSAGES_LIMIT = 50;
+
     private final ChatRoomRepository chatRoomRepository;
     private final UserRepository userRepository;
+    private final RoomBlockIndex roomBlockIndex;
+    private final Cache chatRoomCache;
+    private final Cache latestMessagesCache;
+    private final TransactionTemplate readOnlyTransaction;
+    private final MessageRetentionProperties retentionProperties;
+    private final MessageArchiveRepository messageArchiveRepository;
+    private final MessageHistoryReader messageHistoryReader;
+    private final ProfileVersions profileVersions;
 
-    public ChatRoomService(ChatRoomRepository chatRoomRepository, UserRepository userRepository) {
+    public ChatRoomService(ChatRoomRepository chatRoomRepository, UserRepository userRepository, RoomBlockIndex roomBlockIndex,
+                           CacheManager cacheManager, PlatformTransactionManager transactionManager,
+                           MessageRetentionProperties retentionProperties, MessageArchiveRepository messageArchiveRepository,
+                           MessageHistoryReader messageHistoryReader, ProfileVersions profileVersions) {
         this.chatRoomRepository = chatRoomRepository;
         this.userRepository = userRepository;
+        this.roomBlockIndex = roomBlockIndex;
+        this.retentionProperties = retentionProperties;
+        this.messageArchiveRepository = messageArchiveRepository;
+        this.messageHistoryReader = messageHistoryReader;
+        this.profileVersions = profileVersions;
+        this.chatRoomCache = cacheManager.getCache(CacheConfiguration.CHAT_ROOMS);
+        this.latestMessagesCache = cacheManager.getCache(CacheConfiguration.CHAT_ROOM_MESSAGES);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // named like the service method it reads for, the cache load itself is kept on the primary
+        this.readOnlyTransaction.setName(ChatRoomService.class.getName() + ".getChatRoom");
     }
 
     /**
@@ -48,24 +89,44 @@ public class ChatRoomService {
         }
         log.info("New Chat Room created by user: " + creatorUsername);
         chatRoomRepository.save(chatRoom);
+        roomBlockIndex.onMembersAdded(chatRoom.getId(), users);
+        profileVersions.bump(users.stream().map(User::getId).toList());
         return createChatRoomDto(chatRoom);
     }
 
     /**
      * Gets ChatRoom info
+     * The room without its messages is cached by id and membership is checked against the cached member list,
+     * so a cached room is still only shown to its members. The newest page of messages is cached apart from the room,
+     * a message change only drops that page and leaves the room cached. Older history is paged through
+     * GET /chats/{id}/messages.
+     * Not transactional, when many members open the same room at once only the caller loading the room and
+     * the caller loading the page hold a connection, the rest wait for their results
      * @param chatRoomId
      * @param username
      * @return
      */
     public ChatRoomDto getChatRoom(Long chatRoomId, String username) {
         log.info("Fetching ChatRoom info: " + chatRoomId);
-        ChatRoom chatRoom = getChatRoomById(chatRoomId);
-        Set<User> members = chatRoom.getMembers();
-        if (!isAMember(username, members)) {
-            log.warning("Unauthorized user: " + username + " attempting to enter chat room: " + chatRoom.getName());
-            throw new UnAuthorized401Exception("You are not a member of " + chatRoom.getName());
+        ChatRoomSummaryDto chatRoom = getCachedChatRoom(chatRoomId);
+        boolean isMember = chatRoom.members().stream().anyMatch(member -> member.username().equals(username));
+        if (!isMember) {
+            log.warning("Unauthorized user: " + username + " attempting to enter chat room: " + chatRoom.name());
+            throw new UnAuthorized401Exception("You are not a member of " + chatRoom.name());
         }
-        return createChatRoomDto(chatRoom);
+        MessageHistoryPageDto latest = getLatestMessages(chatRoomId);
+        return new ChatRoomDto(chatRoom.id(), chatRoom.name(), chatRoom.creator(), chatRoom.members(),
+                latest.messages(), latest.nextCursor());
+    }
+
+    /**
+     * Drops the room's cached newest page, called whenever one of its messages is sent, edited or deleted.
+     * Dropped right away and again after commit, a load that raced the commit cannot leave the old page cached
+     * @param chatRoomId
+     */
+    public void evictLatestMessages(Long chatRoomId) {
+        latestMessagesCache.evict(chatRoomId);
+        AfterCommit.run(() -> latestMessagesCache.evict(chatRoomId));
     }
 
     public boolean isAMember(String username, Long chatRoomId) {
@@ -87,6 +148,7 @@ public class ChatRoomService {
      * @param username
      * @param chatRoomId
      */
+    @CacheEvict(cacheNames = CacheConfiguration.CHAT_ROOMS, key = "#chatRoomId")
     public void deleteChatRoom(Long chatRoomId, String username) {
         ChatRoom chatRoom = getChatRoomById(chatRoomId);
         if (!chatRoom.getChatRoomCreator().equals(username)) {
@@ -94,7 +156,36 @@ public class ChatRoomService {
             throw new UnAuthorized401Exception("Only the chat room owner can delete the chat room");
         }
         log.info("Deleting chat room: " + chatRoom.getName());
+        List<Long> memberIds = chatRoom.getMembers().stream().map(User::getId).toList();
         chatRoomRepository.delete(chatRoom);
+        messageArchiveRepository.deleteByChatRoomId(chatRoomId);
+        evictLatestMessages(chatRoomId);
+        roomBlockIndex.onRoomDeleted(chatRoomId);
+        profileVersions.bump(memberIds);
+    }
+
+    /**
+     * Sets how many days the room keeps its messages, only the creator can change it.
+     * Null puts the room back on the default retention, older messages are deleted by the MessageRetentionPurger
+     * @param chatRoomId
+     * @param retentionDays
+     * @param requesterUsername
+     * @return
+     */
+    @Transactional
+    public RetentionDto setRetention(Long chatRoomId, Integer retentionDays, String requesterUsername) {
+        ChatRoom chatRoom = getChatRoomById(chatRoomId);
+        if (!chatRoom.getChatRoomCreator().equals(requesterUsername)) {
+            log.warning("Non owner tried to change the retention of room: " + requesterUsername);
+            throw new UnAuthorized401Exception("Only the chat room owner can change how long messages are kept");
+        }
+        if (retentionDays != null && (retentionDays < 1 || retentionDays > retentionProperties.getMaxRetentionDays())) {
+            throw new BadRequest400Exception("Retention must be between 1 and " + retentionProperties.getMaxRetentionDays() + " days");
+        }
+        chatRoom.setRetentionDays(retentionDays);
+        chatRoomRepository.save(chatRoom);
+        log.info("Retention of chat room " + chatRoomId + " set to " + retentionDays + " days");
+        return new RetentionDto(retentionDays);
     }
 
     /**
@@ -103,6 +194,7 @@ public class ChatRoomService {
      * @param chatRoomId
      * @return
      */
+    @CacheEvict(cacheNames = CacheConfiguration.CHAT_ROOMS, key = "#chatRoomId")
     public ChatRoomDto addUserToChatRoom(Long chatRoomId, String username, String requesterUsername) {
         ChatRoom chatRoom = getChatRoomById(chatRoomId);
         User newMember = userRepository.findByUsername(username).orElseThrow(() -> new NotFound404Exception("User not found with username: " + username));
@@ -118,6 +210,8 @@ public class ChatRoomService {
         chatRoom.getMembers().add(newMember);
         log.info("User: " + username + " added to chat room: " + chatRoom.getName());
         chatRoomRepository.save(chatRoom);
+        roomBlockIndex.onMembersAdded(chatRoomId, List.of(newMember));
+        profileVersions.bump(newMember.getId());
         return createChatRoomDto(chatRoom);
     }
 
@@ -127,6 +221,7 @@ public class ChatRoomService {
      * @param chatRoomId
      * @return
      */
+    @CacheEvict(cacheNames = CacheConfiguration.CHAT_ROOMS, key = "#chatRoomId")
     public ChatRoomDto removeUserFromChatRoom(Long chatRoomId, String username, String requesterUsername) {
         ChatRoom chatRoom = getChatRoomById(chatRoomId);
         if (!chatRoom.getChatRoomCreator().equals(requesterUsername)) {
@@ -142,26 +237,64 @@ public class ChatRoomService {
      * @param username
      * @param chatRoomId
      */
+    @CacheEvict(cacheNames = CacheConfiguration.CHAT_ROOMS, key = "#chatRoomId")
     public void leaveChatRoom(Long chatRoomId, String username) {
         ChatRoom chatRoom = getChatRoomById(chatRoomId);
-        chatRoom.getMembers().removeIf(user -> user.getUsername().equals(username));
+        List<Long> removedIds = new ArrayList<>(1);
+        chatRoom.getMembers().removeIf(user -> {
+            if (!user.getUsername().equals(username)) {
+                return false;
+            }
+            roomBlockIndex.onMemberRemoved(chatRoomId, user.getId());
+            removedIds.add(user.getId());
+            return true;
+        });
         log.info("User: " + username + " was removed from chat room: " + chatRoom.getName());
         chatRoomRepository.save(chatRoom);
+        profileVersions.bump(removedIds);
     }
 
     //helpers
 
+    private ChatRoomSummaryDto getCachedChatRoom(Long chatRoomId) {
+        return load(chatRoomCache, chatRoomId,
+                () -> readOnlyTransaction.execute(status -> createChatRoomSummaryDto(getChatRoomById(chatRoomId))));
+    }
+
+    private MessageHistoryPageDto getLatestMessages(Long chatRoomId) {
+        return load(latestMessagesCache, chatRoomId, () -> messageHistoryReader.readLatest(chatRoomId, LATEST_MESSAGES_LIMIT));
+    }
+
+    /*
+     * concurrent misses for the same room share one load, an exception from the load is rethrown as is
+     */
+    private static <T> T load(Cache cache, Long chatRoomId, Callable<T> loader) {
+        try {
+            return cache.get(chatRoomId, loader);
+        }
+        catch (Cache.ValueRetrievalException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
     public ChatRoom getChatRoomById(Long chatRoomId) {
         return chatRoomRepository.findById(chatRoomId).orElseThrow(() -> new NotFound404Exception("Chat room not found with id: " + chatRoomId));
     }
 
     private ChatRoomDto createChatRoomDto(ChatRoom chatRoom) {
+        ChatRoomSummaryDto summary = createChatRoomSummaryDto(chatRoom);
+        MessageHistoryPageDto latest = getLatestMessages(chatRoom.getId());
+        return new ChatRoomDto(summary.id(), summary.name(), summary.creator(), summary.members(),
+                latest.messages(), latest.nextCursor());
+    }
+
+    private ChatRoomSummaryDto createChatRoomSummaryDto(ChatRoom chatRoom) {
         List<ChatRoomUserDto> members = chatRoom.getMembers().stream().map(user ->
                 new ChatRoomUserDto(user.getId(), user.getUsername())).toList();
-        List<MessageDto> messages = chatRoom.getMessages().stream().map(message -> {
-            String time = message.getCreated().toLocalTime().toString();
-            return new MessageDto(message.getId(), message.getContent(), message.getSender(), time);
-        }).toList();
-        return new ChatRoomDto(chatRoom.getId(), chatRoom.getName(), chatRoom.getChatRoomCreator(), members, messages);
+        return new ChatRoomSummaryDto(chatRoom.getId(), chatRoom.getName(), chatRoom.getChatRoomCreator(), members);
     }
+
 }
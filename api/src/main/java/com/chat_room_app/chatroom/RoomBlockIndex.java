@@ -0,0 +1,287 @@
+package com.chat_room_app.chatroom;
+
+import com.chat_room_app.chatroom.dtos.ChatRoomMembershipDto;
+import com.chat_room_app.datasource.AfterCommit;
+import com.chat_room_app.friends.FriendshipGraph;
+import com.chat_room_app.friends.LongHashSet;
+import com.chat_room_app.users.User;
+import lombok.extern.java.Log;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Per room bitmaps of "members that block this sender", so message fan-out never looks at block rows.
+ * Every member of a room gets a small ordinal, each sender with at least one blocker in the room has a long[]
+ * with a bit set per blocking member's ordinal. Most senders have none, then a lookup is two map gets and a null check.
+ * Loaded at startup from memberships and the FriendshipGraph, ChatRoomService and FriendshipService push changes once they commit
+ */
+@Log
+@Component
+public class RoomBlockIndex {
+
+    private static final int LOAD_BATCH_SIZE = 10_000;
+
+    private final ChatRoomRepository chatRoomRepository;
+    private final FriendshipGraph friendshipGraph;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Room> rooms = new HashMap<>();
+    private final Map<Long, LongHashSet> roomsByUser = new HashMap<>();
+
+    public RoomBlockIndex(ChatRoomRepository chatRoomRepository, FriendshipGraph friendshipGraph) {
+        this.chatRoomRepository = chatRoomRepository;
+        this.friendshipGraph = friendshipGraph;
+    }
+
+    @Order(1)
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.nanoTime();
+        long lastChatRoomId = Long.MIN_VALUE;
+        long lastUserId = Long.MIN_VALUE;
+        int loaded = 0;
+        List<ChatRoomMembershipDto> batch;
+        do {
+            batch = chatRoomRepository.findMembershipsAfter(lastChatRoomId, lastUserId, PageRequest.ofSize(LOAD_BATCH_SIZE));
+            lock.writeLock().lock();
+            try {
+                for (ChatRoomMembershipDto membership : batch) {
+                    addMember(membership.chatRoomId(), membership.userId(), membership.username());
+                    lastChatRoomId = membership.chatRoomId();
+                    lastUserId = membership.userId();
+                }
+            }
+            finally {
+                lock.writeLock().unlock();
+            }
+            loaded += batch.size();
+        } while (batch.size() == LOAD_BATCH_SIZE);
+        log.info("Loaded block bitmaps for " + loaded + " memberships in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Members of the room that block the sender, empty for nearly every message
+     */
+    public Set<String> getRecipientsBlocking(Long chatRoomId, String senderUsername) {
+        lock.readLock().lock();
+        try {
+            Room room = rooms.get(chatRoomId);
+            if (room == null) {
+                return Set.of();
+            }
+            Integer sender = room.ordinalByUsername.get(senderUsername);
+            long[] blockers = sender == null ? null : room.blockers[sender];
+            if (blockers == null) {
+                return Set.of();
+            }
+            Set<String> usernames = new HashSet<>();
+            for (int word = 0; word < blockers.length; word++) {
+                long bits = blockers[word];
+                while (bits != 0) {
+                    usernames.add(room.usernames[word * Long.SIZE + Long.numberOfTrailingZeros(bits)]);
+                    bits &= bits - 1;
+                }
+            }
+            return usernames;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the users to the room once the surrounding transaction commits
+     */
+    public void onMembersAdded(Long chatRoomId, Collection<User> members) {
+        Map<Long, String> added = new HashMap<>();
+        members.forEach(member -> added.put(member.getId(), member.getUsername()));
+        AfterCommit.run(() -> write(() -> added.forEach((userId, username) -> addMember(chatRoomId, userId, username))));
+    }
+
+    /**
+     * Removes the user from the room once the surrounding transaction commits
+     */
+    public void onMemberRemoved(Long chatRoomId, Long userId) {
+        AfterCommit.run(() -> write(() -> removeMember(chatRoomId, userId)));
+    }
+
+    /**
+     * Forgets the room once the surrounding transaction commits
+     */
+    public void onRoomDeleted(Long chatRoomId) {
+        AfterCommit.run(() -> write(() -> {
+            Room room = rooms.remove(chatRoomId);
+            if (room == null) {
+                return;
+            }
+            for (Long userId : room.ordinalByUserId.keySet()) {
+                forgetRoom(userId, chatRoomId);
+            }
+        }));
+    }
+
+    /**
+     * Takes a deleted user out of every room they were in once the surrounding transaction commits
+     */
+    public void onUserDeleted(Long userId) {
+        AfterCommit.run(() -> write(() -> {
+            LongHashSet userRooms = roomsByUser.get(userId);
+            if (userRooms == null) {
+                return;
+            }
+            for (long chatRoomId : userRooms.toArray()) {
+                removeMember(chatRoomId, userId);
+            }
+        }));
+    }
+
+    /**
+     * Re-reads the blocks between the two users from the FriendshipGraph once the surrounding transaction commits,
+     * call it after the graph has been told about the change
+     */
+    public void onBlocksChanged(Long userId, Long otherUserId) {
+        AfterCommit.run(() -> write(() -> {
+            LongHashSet userRooms = roomsByUser.get(userId);
+            LongHashSet otherRooms = roomsByUser.get(otherUserId);
+            if (userRooms == null || otherRooms == null) {
+                return;
+            }
+            boolean userBlocksOther = friendshipGraph.isBlockedBy(otherUserId, userId);
+            boolean otherBlocksUser = friendshipGraph.isBlockedBy(userId, otherUserId);
+            for (long chatRoomId : userRooms.intersect(otherRooms)) {
+                Room room = rooms.get(chatRoomId);
+                int user = room.ordinalByUserId.get(userId);
+                int other = room.ordinalByUserId.get(otherUserId);
+                room.setBlocked(other, user, userBlocksOther);
+                room.setBlocked(user, other, otherBlocksUser);
+            }
+        }));
+    }
+
+    /*
+     * caller holds the write lock
+     */
+    private void addMember(long chatRoomId, long userId, String username) {
+        Room room = rooms.computeIfAbsent(chatRoomId, id -> new Room());
+        if (room.ordinalByUserId.containsKey(userId)) {
+            return;
+        }
+        int member = room.add(userId, username);
+        roomsByUser.computeIfAbsent(userId, id -> new LongHashSet()).add(chatRoomId);
+        for (long blockedId : friendshipGraph.getBlockedIds(userId)) {
+            Integer blocked = room.ordinalByUserId.get(blockedId);
+            if (blocked != null) {
+                room.setBlocked(blocked, member, true);
+            }
+        }
+        for (long blockerId : friendshipGraph.getBlockedByIds(userId)) {
+            Integer blocker = room.ordinalByUserId.get(blockerId);
+            if (blocker != null) {
+                room.setBlocked(member, blocker, true);
+            }
+        }
+    }
+
+    /*
+     * caller holds the write lock
+     */
+    private void removeMember(long chatRoomId, long userId) {
+        Room room = rooms.get(chatRoomId);
+        if (room == null || !room.ordinalByUserId.containsKey(userId)) {
+            return;
+        }
+        room.remove(userId);
+        forgetRoom(userId, chatRoomId);
+        if (room.ordinalByUserId.isEmpty()) {
+            rooms.remove(chatRoomId);
+        }
+    }
+
+    private void forgetRoom(long userId, long chatRoomId) {
+        LongHashSet userRooms = roomsByUser.get(userId);
+        if (userRooms != null && userRooms.remove(chatRoomId) && userRooms.isEmpty()) {
+            roomsByUser.remove(userId);
+        }
+    }
+
+    private void write(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ordinals are reused after a member leaves so the bitmaps stay as wide as the room, not its history
+     */
+    private static final class Room {
+        private final Map<Long, Integer> ordinalByUserId = new HashMap<>();
+        private final Map<String, Integer> ordinalByUsername = new HashMap<>();
+        private final BitSet freeOrdinals = new BitSet();
+        private String[] usernames = new String[8];
+        // indexed by sender ordinal, null unless some member blocks that sender
+        private long[][] blockers = new long[8][];
+        private int width;
+
+        private int add(long userId, String username) {
+            int ordinal = freeOrdinals.nextSetBit(0);
+            if (ordinal < 0) {
+                ordinal = width++;
+                if (ordinal == usernames.length) {
+                    usernames = Arrays.copyOf(usernames, ordinal * 2);
+                    blockers = Arrays.copyOf(blockers, ordinal * 2);
+                }
+            }
+            else {
+                freeOrdinals.clear(ordinal);
+            }
+            usernames[ordinal] = username;
+            ordinalByUserId.put(userId, ordinal);
+            ordinalByUsername.put(username, ordinal);
+            return ordinal;
+        }
+
+        private void remove(long userId) {
+            int ordinal = ordinalByUserId.remove(userId);
+            ordinalByUsername.remove(usernames[ordinal]);
+            usernames[ordinal] = null;
+            blockers[ordinal] = null;
+            for (int sender = 0; sender < width; sender++) {
+                setBlocked(sender, ordinal, false);
+            }
+            freeOrdinals.set(ordinal);
+        }
+
+        private void setBlocked(int sender, int recipient, boolean blocked) {
+            int word = recipient / Long.SIZE;
+            long bit = 1L << (recipient % Long.SIZE);
+            long[] bits = blockers[sender];
+            if (blocked) {
+                if (bits == null || bits.length <= word) {
+                    bits = bits == null ? new long[word + 1] : Arrays.copyOf(bits, word + 1);
+                    blockers[sender] = bits;
+                }
+                bits[word] |= bit;
+                return;
+            }
+            if (bits == null || bits.length <= word) {
+                return;
+            }
+            bits[word] &= ~bit;
+            for (long remaining : bits) {
+                if (remaining != 0) {
+                    return;
+                }
+            }
+            blockers[sender] = null;
+        }
+    }
+}
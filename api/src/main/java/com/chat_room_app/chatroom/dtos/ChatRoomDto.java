@@ -6,5 +6,10 @@ import com.chat_room_app.users.dtos.ChatRoomUserDto;
 
 import java.util.List;
 
-public record ChatRoomDto(Long id, String name, String creator, List<ChatRoomUserDto> members, List<MessageDto> messages) {
+/**
+ * The room with its newest messages, oldest first. nextCursor loads older ones from GET /chats/{id}/messages,
+ * it is null when there are none
+ */
+public record ChatRoomDto(Long id, String name, String creator, List<ChatRoomUserDto> members, List<MessageDto> messages,
+                          String nextCursor) {
 }
@@ -0,0 +1,4 @@
+package com.chat_room_app.chatroom.dtos;
+
+public record ChatRoomMembershipDto(Long chatRoomId, Long userId, String username) {
+}
@@ -0,0 +1,12 @@
+package com.chat_room_app.chatroom.dtos;
+
+import com.chat_room_app.users.dtos.ChatRoomUserDto;
+
+
+import java.util.List;
+
+/**
+ * The room without its messages, what the chatRooms cache holds
+ */
+public record ChatRoomSummaryDto(Long id, String name, String creator, List<ChatRoomUserDto> members) {
+}
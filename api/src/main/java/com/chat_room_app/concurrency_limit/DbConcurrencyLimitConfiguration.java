@@ -0,0 +1,22 @@
+package com.chat_room_app.concurrency_limit;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Stands in for Spring Boot's JpaTransactionManager, spring.transaction.* customizers still apply
+ */
+@Configuration
+public class DbConcurrencyLimitConfiguration {
+
+    @Bean
+    PlatformTransactionManager transactionManager(ObjectProvider<TransactionManagerCustomizers> transactionManagerCustomizers,
+                                                  ObjectProvider<DbConcurrencyLimiter> limiter) {
+        LimitedJpaTransactionManager transactionManager = new LimitedJpaTransactionManager(limiter);
+        transactionManagerCustomizers.ifAvailable(customizers -> customizers.customize(transactionManager));
+        return transactionManager;
+    }
+}
@@ -0,0 +1,22 @@
+package com.chat_room_app.concurrency_limit;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Marks the request once it reaches a controller, only transactions opened from there on are limited.
+ * The security filters run before this, so loading the user for a JWT is never shed
+ */
+@Component
+public class DbConcurrencyLimitInterceptor implements HandlerInterceptor {
+
+    static final String LIMITED = DbConcurrencyLimitInterceptor.class.getName() + ".LIMITED";
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        request.setAttribute(LIMITED, Boolean.TRUE);
+        return true;
+    }
+}
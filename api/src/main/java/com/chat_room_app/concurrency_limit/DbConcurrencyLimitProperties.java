@@ -0,0 +1,28 @@
+package com.chat_room_app.concurrency_limit;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounds for the adaptive limit on in-flight request transactions, bound from db.concurrency-limit.*
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "db.concurrency-limit")
+public class DbConcurrencyLimitProperties {
+
+    private boolean enabled = true;
+
+    private int initialLimit = 20;
+
+    private int minLimit = 4;
+
+    private int maxLimit = 200;
+
+    // how much of each new estimate is blended into the limit
+    private double smoothing = 0.2;
+
+    // latency may grow this much over the long term average before the limit starts shrinking
+    private double tolerance = 1.5;
+}
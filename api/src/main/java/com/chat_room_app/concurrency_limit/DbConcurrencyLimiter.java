@@ -0,0 +1,87 @@
+package com.chat_room_app.concurrency_limit;
+
+import com.chat_room_app.exceptions.custom_exceptions.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.java.Log;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caps in-flight request transactions at the GradientLimit. Every request runs on its own virtual thread,
+ * so without this thousands of them queue inside Hikari and all of them get slow, past the limit
+ * new transactions are shed with a 503 right away and the ones admitted keep their usual latency.
+ * LimitedJpaTransactionManager decides which transactions go through here
+ */
+@Log
+@Component
+public class DbConcurrencyLimiter {
+
+    private final DbConcurrencyLimitProperties properties;
+    private final GradientLimit limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rejectedCounter;
+    private final Timer callTimer;
+
+    public DbConcurrencyLimiter(DbConcurrencyLimitProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.limit = new GradientLimit(properties.getInitialLimit(), properties.getMinLimit(), properties.getMaxLimit(),
+                properties.getSmoothing(), properties.getTolerance());
+        this.rejectedCounter = Counter.builder("db.concurrency.rejected")
+                .description("Request transactions shed because the concurrency limit was reached")
+                .register(meterRegistry);
+        this.callTimer = Timer.builder("db.concurrency.call.duration")
+                .description("Time spent in admitted request transactions, waiting for a connection included")
+                .register(meterRegistry);
+        Gauge.builder("db.concurrency.limit", limit, GradientLimit::getLimit)
+                .description("Current limit on in-flight request transactions")
+                .register(meterRegistry);
+        Gauge.builder("db.concurrency.in-flight", inFlight, AtomicInteger::get)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes a slot for one transaction, pass the result to release() when it is done
+     * @return the start time of the transaction
+     * @throws ServiceUnavailableException if the limit is reached
+     */
+    public long acquire() {
+        if (!properties.isEnabled()) {
+            return System.nanoTime();
+        }
+        int currentLimit = limit.getLimit();
+        while (true) {
+            int current = inFlight.get();
+            if (current >= currentLimit) {
+                rejectedCounter.increment();
+                log.warning("Database concurrency limit of " + currentLimit + " reached, shedding request");
+                throw new ServiceUnavailableException("Server is busy, please try again shortly");
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return System.nanoTime();
+            }
+        }
+    }
+
+    public void release(long startNanos, boolean dropped) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long rtt = System.nanoTime() - startNanos;
+        int current = inFlight.getAndDecrement();
+        callTimer.record(rtt, TimeUnit.NANOSECONDS);
+        limit.onSample(rtt, current, dropped);
+    }
+
+    public int getLimit() {
+        return limit.getLimit();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,71 @@
+package com.chat_room_app.concurrency_limit;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Gradient style concurrency limit, compares each call's latency with a long term average.
+ * While calls take about as long as usual the limit grows by roughly sqrt(limit), once they take longer
+ * because work is queueing inside the pool or the database the limit shrinks in proportion,
+ * so latency levels off instead of climbing with the backlog. Samples taken while most of the limit
+ * was unused say nothing about capacity and are ignored
+ */
+public class GradientLimit {
+
+    private static final double LONG_RTT_WINDOW = 100;
+    private static final double DROP_BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final double tolerance;
+    // a ReentrantLock rather than synchronized so a virtual thread holding it never pins its carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile double estimatedLimit;
+    private double longRttNanos;
+
+    public GradientLimit(int initialLimit, int minLimit, int maxLimit, double smoothing, double tolerance) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.tolerance = tolerance;
+        this.estimatedLimit = initialLimit;
+    }
+
+    public int getLimit() {
+        return (int) estimatedLimit;
+    }
+
+    /**
+     * @param rttNanos how long the call took
+     * @param inFlight calls running when this one finished, itself included
+     * @param dropped the call failed because the database was overloaded
+     */
+    public void onSample(long rttNanos, int inFlight, boolean dropped) {
+        // a sample skipped under contention is not worth making callers wait
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            if (dropped) {
+                estimatedLimit = Math.max(minLimit, estimatedLimit * DROP_BACKOFF);
+                return;
+            }
+            double rtt = Math.max(rttNanos, 1);
+            longRttNanos = longRttNanos == 0 ? rtt : longRttNanos + (rtt - longRttNanos) / LONG_RTT_WINDOW;
+            // after an overload the average stays high for a while, pull it down so the limit can recover
+            if (longRttNanos / rtt > 2) {
+                longRttNanos *= 0.95;
+            }
+            if (inFlight < estimatedLimit / 2) {
+                return;
+            }
+            double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRttNanos / rtt));
+            double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+            newLimit = estimatedLimit * (1 - smoothing) + newLimit * smoothing;
+            estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+}
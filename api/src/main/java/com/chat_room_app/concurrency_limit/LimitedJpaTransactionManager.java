@@ -0,0 +1,83 @@
+package com.chat_room_app.concurrency_limit;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * JpaTransactionManager that admits every outermost transaction opened while a controller handles a request
+ * through the DbConcurrencyLimiter and gives the slot back once the transaction completes.
+ * Admitting whole transactions instead of repository calls means the measured time includes the wait for a
+ * pooled connection, and a service transaction is never shed halfway through.
+ * Auth filters, schedulers, startup loads, STOMP handlers and transactions opened from afterCommit callbacks
+ * are not limited, see DbConcurrencyLimitInterceptor
+ */
+public class LimitedJpaTransactionManager extends JpaTransactionManager {
+
+    private final ObjectProvider<DbConcurrencyLimiter> limiter;
+    // the transaction holding this thread's slot, anything it suspends for or runs after commit shares it
+    private final ThreadLocal<Slot> slots = new ThreadLocal<>();
+
+    /*
+     * the limiter is looked up on first use, the transaction manager is created before most other beans
+     */
+    public LimitedJpaTransactionManager(ObjectProvider<DbConcurrencyLimiter> limiter) {
+        this.limiter = limiter;
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        if (!isLimited()) {
+            super.doBegin(transaction, definition);
+            return;
+        }
+        DbConcurrencyLimiter dbConcurrencyLimiter = limiter.getObject();
+        long start = dbConcurrencyLimiter.acquire();
+        try {
+            super.doBegin(transaction, definition);
+        }
+        catch (CannotCreateTransactionException e) {
+            // no connection within the pool timeout, the one failure that says the database is overloaded
+            dbConcurrencyLimiter.release(start, true);
+            throw e;
+        }
+        catch (RuntimeException | Error e) {
+            dbConcurrencyLimiter.release(start, false);
+            throw e;
+        }
+        slots.set(new Slot(transaction, start));
+    }
+
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        try {
+            super.doCleanupAfterCompletion(transaction);
+        }
+        finally {
+            Slot slot = slots.get();
+            if (slot != null && slot.transaction() == transaction) {
+                slots.remove();
+                limiter.getObject().release(slot.start(), false);
+            }
+        }
+    }
+
+    /*
+     * synchronization is only active when a new transaction begins if it was opened from another one's afterCommit
+     */
+    private boolean isLimited() {
+        if (slots.get() != null || TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes != null
+                && attributes.getAttribute(DbConcurrencyLimitInterceptor.LIMITED, RequestAttributes.SCOPE_REQUEST) != null;
+    }
+
+    private record Slot(Object transaction, long start) {
+    }
+}
@@ -1,6 +1,9 @@
 package com.chat_room_app.configs;
 
+import com.chat_room_app.auth.hashing.BoundedPasswordEncoder;
+import com.chat_room_app.auth.hashing.PasswordHashingExecutor;
 import com.chat_room_app.users.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 
 import org.springframework.context.annotation.Bean;
@@ -11,6 +14,7 @@ import org.springframework.security.config.annotation.authentication.configurati
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 
 
 /**
@@ -20,9 +24,14 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 public class ApplicationConfiguration {
 
     private final UserRepository userRepository;
+    private final PasswordHashingExecutor passwordHashingExecutor;
 
-    public ApplicationConfiguration(UserRepository userRepository) {
+    @Value("${password.hashing.bcrypt-strength:10}")
+    private int bcryptStrength;
+
+    public ApplicationConfiguration(UserRepository userRepository, PasswordHashingExecutor passwordHashingExecutor) {
         this.userRepository = userRepository;
+        this.passwordHashingExecutor = passwordHashingExecutor;
     }
 
     /*
@@ -37,11 +46,11 @@ public class ApplicationConfiguration {
 
     /*
      * default password encoder used
-     * BCrypt hard hashing
+     * BCrypt hard hashing, run on the bounded PasswordHashingExecutor rather than the request thread
      */
     @Bean
-    BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    PasswordEncoder passwordEncoder() {
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(bcryptStrength), passwordHashingExecutor);
     }
 
     /*
@@ -0,0 +1,86 @@
+package com.chat_room_app.configs;
+
+import com.chat_room_app.chatroom.dtos.ChatRoomSummaryDto;
+import com.chat_room_app.message.dtos.MessageHistoryPageDto;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.boot.actuate.metrics.cache.CacheMeterBinderProvider;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory Caffeine caches for the hot read endpoints, every cache is bounded in size or weight and age and records
+ * statistics, which Spring Boot publishes as cache.* metrics per cache.
+ * The caching advice wraps the transaction advice, so @CacheEvict only runs once the change is committed
+ * and a concurrent read cannot put the old value back.
+ * Each cache is a SingleFlightCache, concurrent misses on one key share a single load and only that load
+ * opens a transaction
+ */
+@Configuration
+@EnableCaching(order = Ordered.LOWEST_PRECEDENCE - 1)
+public class CacheConfiguration {
+
+    public static final String CHAT_ROOMS = "chatRooms";
+    public static final String CHAT_ROOM_MESSAGES = "chatRoomMessages";
+    public static final String USER_PROFILES = "userProfiles";
+    public static final String USER_SEARCH = "userSearch";
+    public static final String FRIENDS = "friends";
+    public static final String FRIEND_REQUESTS = "friendRequests";
+    public static final String BLOCKED_USERS = "blockedUsers";
+
+    private static final List<String> CACHE_NAMES = List.of(CHAT_ROOMS, CHAT_ROOM_MESSAGES, USER_PROFILES, USER_SEARCH, FRIENDS, FRIEND_REQUESTS, BLOCKED_USERS);
+
+    @Bean
+    CacheManager cacheManager(CacheSpecProperties properties) {
+        // only the caches below exist, a typo in a cache name fails instead of creating an unbounded cache
+        List<SingleFlightCache> caches = new ArrayList<>();
+        for (String name : CACHE_NAMES) {
+            CacheSpecProperties.Spec spec = properties.getSpecs().getOrDefault(name, new CacheSpecProperties.Spec());
+            Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                    .expireAfterWrite(spec.getExpireAfterWrite())
+                    .recordStats();
+            if (spec.getMaximumWeight() > 0) {
+                builder.maximumWeight(spec.getMaximumWeight()).weigher(CacheConfiguration::weigh);
+            }
+            else {
+                builder.maximumSize(spec.getMaximumSize());
+            }
+            caches.add(new SingleFlightCache(new CaffeineCache(name, builder.build())));
+        }
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(caches);
+        return cacheManager;
+    }
+
+    /*
+     * a room weighs one plus one per member and a page one plus one per message,
+     * so a few very large entries cannot take the place of thousands of small ones
+     */
+    private static int weigh(Object key, Object value) {
+        if (value instanceof ChatRoomSummaryDto chatRoom) {
+            return 1 + chatRoom.members().size();
+        }
+        if (value instanceof MessageHistoryPageDto page) {
+            return 1 + page.messages().size();
+        }
+        return 1;
+    }
+
+    /**
+     * Spring Boot only binds metrics for caches it recognises, this unwraps the SingleFlightCache
+     */
+    @Bean
+    @SuppressWarnings("unchecked")
+    CacheMeterBinderProvider<SingleFlightCache> singleFlightCacheMeterBinderProvider() {
+        return (cache, tags) -> new CaffeineCacheMetrics<>(
+                (com.github.benmanes.caffeine.cache.Cache<Object, Object>) cache.getNativeCache(), cache.getName(), tags);
+    }
+}
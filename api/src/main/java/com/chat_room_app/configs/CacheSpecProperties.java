@@ -0,0 +1,30 @@
+package com.chat_room_app.configs;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Size and age bounds of each Spring cache, bound from caches.specs.*.
+ * Caches that are not configured get the default spec. A cache given a maximum-weight is bounded by the weight
+ * of its entries instead of their count, see CacheConfiguration for how entries are weighed
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "caches")
+public class CacheSpecProperties {
+
+    private Map<String, Spec> specs = new HashMap<>();
+
+    @Data
+    public static class Spec {
+        private long maximumSize = 10_000;
+        // 0 bounds the cache by maximumSize
+        private long maximumWeight = 0;
+        private Duration expireAfterWrite = Duration.ofMinutes(5);
+    }
+}
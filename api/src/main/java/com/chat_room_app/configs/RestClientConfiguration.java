@@ -3,8 +3,20 @@ package com.chat_room_app.configs;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestClient;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Client for the email service, built on the JDK HttpClient so connections are kept alive and reused (HTTP/2 when
+ * the service offers it). Timeouts keep a slow email service from holding callers, the Spring managed builder
+ * records every call under the http.client.requests metric.
+ * The JDK reads its pool size and keep alive only from system properties, those are set as JVM options in the Dockerfile
+ */
 @Configuration
 public class RestClientConfiguration {
 
@@ -14,10 +26,28 @@ public class RestClientConfiguration {
     @Value("${access.token.header}")
     private String accessToken;
 
+    @Value("${email.service.connect-timeout:PT2S}")
+    private Duration connectTimeout;
+
+    @Value("${email.service.read-timeout:PT5S}")
+    private Duration readTimeout;
+
+    @Bean(destroyMethod = "close")
+    ExecutorService restClientExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+
     @Bean
-    RestClient restClient() {
-        return RestClient
-                .builder()
+    RestClient restClient(RestClient.Builder builder, ExecutorService restClientExecutor) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .executor(restClientExecutor)
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+        return builder
+                .requestFactory(requestFactory)
                 .defaultHeaders(httpHeaders -> {
                     httpHeaders.add("Access-Token", accessToken);
                     httpHeaders.add("Content-Type", "application/json");
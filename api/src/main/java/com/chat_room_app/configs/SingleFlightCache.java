@@ -0,0 +1,156 @@
+package com.chat_room_app.configs;
+
+import com.chat_room_app.datasource.PrimaryReads;
+import org.springframework.cache.Cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Wraps a cache so concurrent misses on the same key share one load, used by Cache.get(key, loader)
+ * and @Cacheable(sync = true).
+ * The first caller runs the loader on its own thread, keeping its security context and transaction,
+ * the others park on a future instead of a monitor so waiting virtual threads do not pin their carriers.
+ * Loads read from the primary, a replica that is still behind would leave an old value in the cache for everyone.
+ * An evict while a load is running forgets that load, callers arriving afterwards start a new one
+ * and the old result is still handed to the callers that joined it but never left in the cache
+ */
+public class SingleFlightCache implements Cache {
+
+    private final Cache delegate;
+    private final ConcurrentMap<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    public SingleFlightCache(Cache delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        return delegate.get(key, type);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper cached = delegate.get(key);
+        if (cached != null) {
+            return (T) cached.get();
+        }
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            return (T) await(running);
+        }
+
+        Object value;
+        try {
+            value = PrimaryReads.call(valueLoader);
+        }
+        catch (Throwable e) {
+            inFlight.remove(key, flight);
+            ValueRetrievalException failure = new ValueRetrievalException(key, valueLoader, e);
+            flight.completeExceptionally(failure);
+            throw failure;
+        }
+        // put while still registered, if an evict forgot the flight meanwhile the value may predate the change
+        delegate.put(key, value);
+        if (!inFlight.remove(key, flight)) {
+            delegate.evict(key);
+        }
+        flight.complete(value);
+        return (T) value;
+    }
+
+    @Override
+    public CompletableFuture<?> retrieve(Object key) {
+        return delegate.retrieve(key);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> retrieve(Object key, Supplier<CompletableFuture<T>> valueLoader) {
+        return delegate.retrieve(key, valueLoader);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        delegate.put(key, value);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        return delegate.putIfAbsent(key, value);
+    }
+
+    @Override
+    public void evict(Object key) {
+        inFlight.remove(key);
+        delegate.evict(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        inFlight.remove(key);
+        return delegate.evictIfPresent(key);
+    }
+
+    @Override
+    public void clear() {
+        inFlight.clear();
+        delegate.clear();
+    }
+
+    @Override
+    public boolean invalidate() {
+        inFlight.clear();
+        return delegate.invalidate();
+    }
+
+    /**
+     * Number of loads currently running
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private static Object await(CompletableFuture<Object> flight) {
+        try {
+            return flight.get();
+        }
+        catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a cache load", e);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException(cause);
+    }
+}
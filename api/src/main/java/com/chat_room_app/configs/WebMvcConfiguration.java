@@ -0,0 +1,29 @@
+package com.chat_room_app.configs;
+
+import com.chat_room_app.concurrency_limit.DbConcurrencyLimitInterceptor;
+import com.chat_room_app.rate_limit.ClientRateLimitInterceptor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Registers MVC interceptors, the per-client rate limiter and the marker for database concurrency limiting
+ */
+@Configuration
+public class WebMvcConfiguration implements WebMvcConfigurer {
+
+    private final ClientRateLimitInterceptor clientRateLimitInterceptor;
+    private final DbConcurrencyLimitInterceptor dbConcurrencyLimitInterceptor;
+
+    public WebMvcConfiguration(ClientRateLimitInterceptor clientRateLimitInterceptor,
+                               DbConcurrencyLimitInterceptor dbConcurrencyLimitInterceptor) {
+        this.clientRateLimitInterceptor = clientRateLimitInterceptor;
+        this.dbConcurrencyLimitInterceptor = dbConcurrencyLimitInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(clientRateLimitInterceptor);
+        registry.addInterceptor(dbConcurrencyLimitInterceptor);
+    }
+}
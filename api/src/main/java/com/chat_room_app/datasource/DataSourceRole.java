@@ -0,0 +1,6 @@
+package com.chat_room_app.datasource;
+
+public enum DataSourceRole {
+    PRIMARY,
+    REPLICA
+}
@@ -0,0 +1,37 @@
+package com.chat_room_app.datasource;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Keeps the reads of a block of work on the primary even inside a read only service transaction.
+ * Used for loads that fill shared caches, a value read from a lagging replica would otherwise be served
+ * to everyone until it expires, long after the write's evict already ran.
+ * Only connections taken inside the block are affected, a transaction that already holds one keeps it
+ */
+public final class PrimaryReads {
+
+    private static final ThreadLocal<Boolean> FORCED = new ThreadLocal<>();
+
+    private PrimaryReads() {
+    }
+
+    public static <T> T call(Callable<T> work) throws Exception {
+        Boolean previous = FORCED.get();
+        FORCED.set(Boolean.TRUE);
+        try {
+            return work.call();
+        }
+        finally {
+            if (previous == null) {
+                FORCED.remove();
+            }
+            else {
+                FORCED.set(previous);
+            }
+        }
+    }
+
+    static boolean isForced() {
+        return FORCED.get() != null;
+    }
+}
@@ -0,0 +1,73 @@
+package com.chat_room_app.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Replaces the single spring.datasource pool with a primary and a replica pool behind a ReadWriteRoutingDataSource,
+ * only when datasource.replica.url is set
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "datasource.replica", name = "url")
+@EnableConfigurationProperties({DataSourceProperties.class, ReplicaProperties.class})
+public class ReadWriteDataSourceConfiguration {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("datasource.replica.hikari")
+    HikariDataSource replicaDataSource(ReplicaProperties replica, DataSourceProperties primary) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(replica.getUrl())
+                .username(replica.getUsername() != null ? replica.getUsername() : primary.getUsername())
+                .password(replica.getPassword() != null ? replica.getPassword() : primary.getPassword())
+                .driverClassName(replica.getDriverClassName() != null ? replica.getDriverClassName() : primary.getDriverClassName())
+                .build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    ReplicaLagMonitor replicaLagMonitor(@Qualifier("replicaDataSource") HikariDataSource replicaDataSource, ReplicaProperties replica, MeterRegistry meterRegistry) {
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(replicaDataSource, replica.getLagQuery(), replica.getMaxLag());
+        monitor.probe();
+        meterRegistry.gauge("datasource.replica.lag", monitor, ReplicaLagMonitor::getLagSeconds);
+        return monitor;
+    }
+
+    @Bean
+    RecentWriteTracker recentWriteTracker(ReplicaProperties replica, MeterRegistry meterRegistry) {
+        RecentWriteTracker tracker = new RecentWriteTracker(replica.getStickyWindow());
+        meterRegistry.gauge("datasource.replica.sticky.users", tracker, RecentWriteTracker::size);
+        return tracker;
+    }
+
+    @Bean
+    @Primary
+    DataSource dataSource(@Qualifier("primaryDataSource") HikariDataSource primaryDataSource,
+                          @Qualifier("replicaDataSource") HikariDataSource replicaDataSource,
+                          ReplicaLagMonitor replicaLagMonitor, RecentWriteTracker recentWriteTracker, ReplicaProperties replica) {
+        return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(primaryDataSource, replicaDataSource,
+                replicaLagMonitor, recentWriteTracker, replica.getRoutedPackages()));
+    }
+}
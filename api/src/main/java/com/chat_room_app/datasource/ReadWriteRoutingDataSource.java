@@ -0,0 +1,65 @@
+package com.chat_room_app.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends @Transactional(readOnly = true) service methods to the replica and everything else to the primary.
+ * Reads also stay on the primary while the replica lags, for the sticky window after the user's own write
+ * and inside PrimaryReads, which cache loads use.
+ * Has to sit behind a LazyConnectionDataSourceProxy, otherwise the connection is picked before
+ * the transaction is marked read only
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final ReplicaLagMonitor replicaLagMonitor;
+    private final RecentWriteTracker recentWriteTracker;
+    private final List<String> routedPackages;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor replicaLagMonitor,
+                                      RecentWriteTracker recentWriteTracker, List<String> routedPackages) {
+        this.replicaLagMonitor = replicaLagMonitor;
+        this.recentWriteTracker = recentWriteTracker;
+        this.routedPackages = routedPackages;
+        setTargetDataSources(Map.of(DataSourceRole.PRIMARY, primary, DataSourceRole.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String username = RecentWriteTracker.currentUsername();
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                recentWriteTracker.markWrite(username);
+            }
+            return DataSourceRole.PRIMARY;
+        }
+        if (PrimaryReads.isForced()
+                || !isRouted(TransactionSynchronizationManager.getCurrentTransactionName())
+                || !replicaLagMonitor.isReplicaUsable()
+                || recentWriteTracker.wroteRecently(username)) {
+            return DataSourceRole.PRIMARY;
+        }
+        return DataSourceRole.REPLICA;
+    }
+
+    /*
+     * the transaction name is the class and method that opened it
+     */
+    private boolean isRouted(String transactionName) {
+        if (transactionName == null) {
+            return false;
+        }
+        for (String routedPackage : routedPackages) {
+            if (transactionName.startsWith(routedPackage + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
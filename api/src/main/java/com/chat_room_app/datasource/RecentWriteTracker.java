@@ -0,0 +1,61 @@
+package com.chat_room_app.datasource;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers who wrote within the sticky window so their next reads go to the primary
+ * instead of a replica that may not have their change yet
+ */
+public class RecentWriteTracker {
+
+    private final long stickyNanos;
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+
+    public RecentWriteTracker(Duration stickyWindow) {
+        this.stickyNanos = stickyWindow.toNanos();
+    }
+
+    public void markWrite(String username) {
+        if (username != null) {
+            lastWrites.put(username, System.nanoTime());
+        }
+    }
+
+    public boolean wroteRecently(String username) {
+        if (username == null) {
+            return false;
+        }
+        Long lastWrite = lastWrites.get(username);
+        return lastWrite != null && System.nanoTime() - lastWrite < stickyNanos;
+    }
+
+    /*
+     * users who stopped writing do not stay in memory
+     */
+    @Scheduled(fixedDelayString = "${datasource.replica.sticky-window:PT5S}")
+    public void evictExpired() {
+        long now = System.nanoTime();
+        lastWrites.values().removeIf(lastWrite -> now - lastWrite >= stickyNanos);
+    }
+
+    public int size() {
+        return lastWrites.size();
+    }
+
+    /*
+     * the authenticated user if there is one, unlike JwtUtils this does not throw for anonymous requests
+     */
+    static String currentUsername() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return null;
+        }
+        return authentication.getName();
+    }
+}
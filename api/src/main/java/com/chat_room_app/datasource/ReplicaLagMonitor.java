@@ -0,0 +1,55 @@
+package com.chat_room_app.datasource;
+
+import lombok.extern.java.Log;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Polls the replica for how far it is behind, reads fall back to the primary while it is too far behind or unreachable
+ */
+@Log
+public class ReplicaLagMonitor {
+
+    private final JdbcTemplate replica;
+    private final String lagQuery;
+    private final double maxLagSeconds;
+    private volatile boolean replicaUsable;
+    private volatile double lagSeconds = -1;
+
+    public ReplicaLagMonitor(DataSource replica, String lagQuery, Duration maxLag) {
+        this.replica = new JdbcTemplate(replica);
+        this.lagQuery = lagQuery;
+        this.maxLagSeconds = maxLag.toMillis() / 1000d;
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.replica.lag-check-interval:PT5S}")
+    public void probe() {
+        boolean usable;
+        try {
+            Double lag = replica.queryForObject(lagQuery, Double.class);
+            lagSeconds = lag == null ? -1 : lag;
+            usable = lag != null && lag <= maxLagSeconds;
+        }
+        catch (DataAccessException e) {
+            lagSeconds = -1;
+            usable = false;
+        }
+        if (usable != replicaUsable) {
+            log.warning(usable ? "Replica caught up, sending reads to it again"
+                    : "Replica lag " + lagSeconds + "s is over " + maxLagSeconds + "s or unknown, reading from the primary");
+        }
+        replicaUsable = usable;
+    }
+
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+
+    public double getLagSeconds() {
+        return lagSeconds;
+    }
+}
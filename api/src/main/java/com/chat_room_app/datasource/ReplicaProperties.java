@@ -0,0 +1,38 @@
+package com.chat_room_app.datasource;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Read replica settings, bound from datasource.replica.*. Routing is only set up when url is given,
+ * otherwise everything keeps using spring.datasource
+ */
+@Data
+@ConfigurationProperties(prefix = "datasource.replica")
+public class ReplicaProperties {
+
+    private String url;
+
+    private String username;
+
+    private String password;
+
+    private String driverClassName;
+
+    // replica stops taking reads once it is further behind the primary than this
+    private Duration maxLag = Duration.ofSeconds(2);
+
+    // seconds the replica is behind, null or an error counts as unusable. A replica that replayed everything it
+    // received is caught up, the last replay time alone keeps growing while the primary is idle
+    private String lagQuery = "SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0"
+            + " ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+
+    // a user's reads stay on the primary this long after they wrote, so they see their own changes
+    private Duration stickyWindow = Duration.ofSeconds(5);
+
+    // only read only transactions opened by these packages go to the replica, repository defaults stay on the primary
+    private List<String> routedPackages = List.of("com.chat_room_app");
+}
@@ -1,32 +1,96 @@
 package com.chat_room_app.email;
 
 import com.chat_room_app.auth.dtos.VerifyUserDto;
+import com.chat_room_app.email.dtos.EmailBatchItemDto;
+import com.chat_room_app.email.dtos.EmailBatchRequestDto;
+import com.chat_room_app.email.dtos.EmailBatchResponseDto;
+import com.chat_room_app.email.exceptions.EmailRejectedException;
+import com.chat_room_app.email.exceptions.EmailServiceUnavailableException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
 import lombok.extern.java.Log;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClient;
 
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Calls the ChatterBox email service. Every call goes through a bulkhead, so only a bounded number of threads
+ * ever wait on the service, and a circuit breaker that fails fast while the service is down.
+ * A 4xx surfaces as EmailRejectedException (not retried, not counted by the breaker),
+ * a 5xx, 408, 429 or connection problem as EmailServiceUnavailableException
+ */
 @Service
 @Log
 public class ChatterBoxEmailService {
-    private final RestClient restClient;
+    private static final String RESILIENCE_INSTANCE = "emailService";
 
+    private final RestClient restClient;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
 
-    public ChatterBoxEmailService(RestClient restClient) {
+    public ChatterBoxEmailService(RestClient restClient, CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry) {
         this.restClient = restClient;
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(RESILIENCE_INSTANCE);
+        this.bulkhead = bulkheadRegistry.bulkhead(RESILIENCE_INSTANCE);
     }
 
     public void sendVerifyEmail(VerifyUserDto verifyUserDto) {
-        restClient.post()
-                .uri("/api/v1/emails/verify")
-                .body(verifyUserDto)
-                .retrieve();
+        post("/api/v1/emails/verify", verifyUserDto);
     }
 
     public void sendRestPasswordEmail(VerifyUserDto verifyUserDto) {
-        restClient.post()
-                .uri("/api/v1/emails/reset-password")
-                .body(verifyUserDto)
-                .retrieve();
+        post("/api/v1/emails/reset-password", verifyUserDto);
+    }
+
+    /**
+     * Sends many emails in one request, the email service answers with one result per item at the same index
+     * @param items
+     * @return
+     */
+    public EmailBatchResponseDto sendBatch(List<EmailBatchItemDto> items) {
+        return post("/api/v1/emails/batch", new EmailBatchRequestDto(items), EmailBatchResponseDto.class);
+    }
+
+    private void post(String uri, Object body) {
+        post(uri, body, null);
+    }
+
+    private <T> T post(String uri, Object body, Class<T> responseType) {
+        Supplier<T> call = () -> {
+            try {
+                RestClient.ResponseSpec spec = restClient.post()
+                        .uri(uri)
+                        .body(body)
+                        .retrieve()
+                        .onStatus(status -> status.is4xxClientError() && !isTransient(status), (request, response) -> {
+                            throw new EmailRejectedException("Email service rejected " + uri + " with " + response.getStatusCode());
+                        })
+                        .onStatus(status -> status.is5xxServerError() || isTransient(status), (request, response) -> {
+                            throw new EmailServiceUnavailableException("Email service failed " + uri + " with " + response.getStatusCode());
+                        });
+                if (responseType == null) {
+                    spec.toBodilessEntity();
+                    return null;
+                }
+                return spec.body(responseType);
+            }
+            catch (ResourceAccessException e) {
+                throw new EmailServiceUnavailableException("Could not reach email service for " + uri, e);
+            }
+        };
+        return Bulkhead.decorateSupplier(bulkhead, CircuitBreaker.decorateSupplier(circuitBreaker, call)).get();
+    }
+
+    /*
+     * timed out or throttled, the same request can succeed later
+     */
+    private static boolean isTransient(HttpStatusCode status) {
+        return status.value() == 408 || status.value() == 429;
     }
 }
@@ -0,0 +1,4 @@
+package com.chat_room_app.email.dtos;
+
+public record EmailBatchItemDto(String type, String email, String username, String code) {
+}
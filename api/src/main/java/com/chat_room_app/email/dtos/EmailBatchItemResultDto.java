@@ -0,0 +1,7 @@
+package com.chat_room_app.email.dtos;
+
+/**
+ * Outcome of one batch item, status is ACCEPTED, REJECTED (invalid, do not retry) or FAILED (retry later)
+ */
+public record EmailBatchItemResultDto(int index, String status, String error) {
+}
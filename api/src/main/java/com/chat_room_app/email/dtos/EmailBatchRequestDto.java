@@ -0,0 +1,6 @@
+package com.chat_room_app.email.dtos;
+
+import java.util.List;
+
+public record EmailBatchRequestDto(List<EmailBatchItemDto> emails) {
+}
@@ -0,0 +1,10 @@
+package com.chat_room_app.email.exceptions;
+
+/**
+ * The email service answered with a 4xx, sending the same request again will not help
+ */
+public class EmailRejectedException extends RuntimeException {
+    public EmailRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,14 @@
+package com.chat_room_app.email.exceptions;
+
+/**
+ * The email service answered with a 5xx or could not be reached, worth retrying later
+ */
+public class EmailServiceUnavailableException extends RuntimeException {
+    public EmailServiceUnavailableException(String message) {
+        super(message);
+    }
+
+    public EmailServiceUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
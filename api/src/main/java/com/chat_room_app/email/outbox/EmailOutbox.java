@@ -0,0 +1,128 @@
+package com.chat_room_app.email.outbox;
+
+import lombok.extern.java.Log;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Writes emails to the email_outbox table as part of the caller's transaction, so an email exists if and only if
+ * the user change that needs it committed. The EmailOutboxDispatcher claims and delivers them later
+ */
+@Service
+@Log
+public class EmailOutbox {
+
+    private final EmailOutboxRepository emailOutboxRepository;
+
+    public EmailOutbox(EmailOutboxRepository emailOutboxRepository) {
+        this.emailOutboxRepository = emailOutboxRepository;
+    }
+
+    /**
+     * Queues the email, a pending or already delivered email of the same type for the user is reused
+     * so only the latest code goes out
+     * @param type
+     * @param email
+     * @param username
+     * @param code
+     */
+    @Transactional
+    public void enqueue(EmailType type, String email, String username, String code) {
+        EmailOutboxMessage message = emailOutboxRepository.findByTypeAndUsername(type, username)
+                .orElseGet(EmailOutboxMessage::new);
+        LocalDateTime now = LocalDateTime.now();
+        message.setType(type);
+        message.setUsername(username);
+        message.setEmail(email);
+        message.setCode(code);
+        message.setStatus(EmailOutboxStatus.PENDING);
+        message.setAttempts(0);
+        message.setRevision(message.getRevision() + 1);
+        message.setNextAttemptAt(now);
+        message.setCreatedAt(now);
+        message.setSentAt(null);
+        message.setLastError(null);
+        emailOutboxRepository.save(message);
+        log.info("Queued " + type + " email for user " + username);
+    }
+
+    /**
+     * Claims up to batchSize due emails by pushing their next attempt past the lease,
+     * if the node dies mid send they become due again once the lease runs out
+     * @param batchSize
+     * @param lease
+     * @return
+     */
+    @Transactional
+    public List<OutboxEmail> claimDue(int batchSize, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        List<EmailOutboxMessage> due = emailOutboxRepository.findDue(now, PageRequest.ofSize(batchSize));
+        LocalDateTime leaseEnd = now.plus(lease);
+        return due.stream().map(message -> {
+            message.setNextAttemptAt(leaseEnd);
+            return new OutboxEmail(message.getId(), message.getRevision(), message.getType(), message.getEmail(),
+                    message.getUsername(), message.getCode(), message.getAttempts(), message.getCreatedAt());
+        }).toList();
+    }
+
+    @Transactional
+    public void markSent(OutboxEmail sent) {
+        emailOutboxRepository.findById(sent.id())
+                .filter(message -> message.getRevision() == sent.revision())
+                .ifPresent(message -> {
+                    message.setStatus(EmailOutboxStatus.SENT);
+                    message.setAttempts(sent.attempts() + 1);
+                    message.setSentAt(LocalDateTime.now());
+                    message.setLastError(null);
+                });
+    }
+
+    /**
+     * Records the failed attempt, retries at nextAttemptAt or gives up when that is null
+     * @param failed
+     * @param error
+     * @param nextAttemptAt
+     */
+    @Transactional
+    public void markFailed(OutboxEmail failed, String error, LocalDateTime nextAttemptAt) {
+        emailOutboxRepository.findById(failed.id())
+                .filter(message -> message.getRevision() == failed.revision())
+                .ifPresent(message -> {
+                    message.setAttempts(failed.attempts() + 1);
+                    message.setLastError(error == null || error.length() <= 500 ? error : error.substring(0, 500));
+                    if (nextAttemptAt == null) {
+                        message.setStatus(EmailOutboxStatus.FAILED);
+                    }
+                    else {
+                        message.setNextAttemptAt(nextAttemptAt);
+                    }
+                });
+    }
+
+    /**
+     * Pushes the next attempt back without counting it, for sends that never reached the email service
+     * @param deferred
+     * @param nextAttemptAt
+     */
+    @Transactional
+    public void defer(OutboxEmail deferred, LocalDateTime nextAttemptAt) {
+        emailOutboxRepository.findById(deferred.id())
+                .filter(message -> message.getRevision() == deferred.revision())
+                .ifPresent(message -> message.setNextAttemptAt(nextAttemptAt));
+    }
+
+    public long countPending() {
+        return emailOutboxRepository.countByStatus(EmailOutboxStatus.PENDING);
+    }
+
+    public Duration getOldestPendingAge() {
+        return emailOutboxRepository.findOldestPendingCreatedAt()
+                .map(createdAt -> Duration.between(createdAt, LocalDateTime.now()))
+                .orElse(Duration.ZERO);
+    }
+}
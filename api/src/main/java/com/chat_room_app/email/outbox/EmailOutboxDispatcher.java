@@ -0,0 +1,179 @@
+package com.chat_room_app.email.outbox;
+
+import com.chat_room_app.email.ChatterBoxEmailService;
+import com.chat_room_app.email.dtos.EmailBatchItemDto;
+import com.chat_room_app.email.dtos.EmailBatchItemResultDto;
+import com.chat_room_app.email.dtos.EmailBatchResponseDto;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the email outbox to the ChatterBoxEmailService, one batch request per claimed batch, never larger than
+ * the service accepts. A failed send is retried with exponential backoff (plus some jitter so a recovering email
+ * service is not hit by every row at once) until max attempts, then the row is left as FAILED for someone to look at.
+ * Only an item the service rejects in its per-item results is given up on right away, a whole request failing
+ * (4xx included, it says nothing about a single email) is retried, one the circuit breaker or bulkhead kept from
+ * being sent is deferred without counting as an attempt
+ */
+@Log
+@Component
+public class EmailOutboxDispatcher {
+
+    private static final String ACCEPTED = "ACCEPTED";
+    private static final String REJECTED = "REJECTED";
+
+    private final EmailOutbox emailOutbox;
+    private final ChatterBoxEmailService chatterBoxEmailService;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration lease;
+    private final Counter sentCounter;
+    private final Counter retriedCounter;
+    private final Counter failedCounter;
+    private final Counter deferredCounter;
+    private final Timer deliveryLag;
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong oldestPendingAgeSeconds = new AtomicLong();
+
+    public EmailOutboxDispatcher(EmailOutbox emailOutbox, ChatterBoxEmailService chatterBoxEmailService, MeterRegistry meterRegistry,
+                                 @Value("${email.outbox.batch-size:50}") int batchSize,
+                                 @Value("${email.service.batch-max-size:100}") int serviceBatchMaxSize,
+                                 @Value("${email.outbox.max-attempts:8}") int maxAttempts,
+                                 @Value("${email.outbox.initial-backoff:PT5S}") Duration initialBackoff,
+                                 @Value("${email.outbox.max-backoff:PT30M}") Duration maxBackoff,
+                                 @Value("${email.outbox.lease:PT1M}") Duration lease) {
+        this.emailOutbox = emailOutbox;
+        this.chatterBoxEmailService = chatterBoxEmailService;
+        if (batchSize > serviceBatchMaxSize) {
+            log.warning("email.outbox.batch-size " + batchSize + " is above what the email service accepts, using " + serviceBatchMaxSize);
+        }
+        this.batchSize = Math.min(batchSize, serviceBatchMaxSize);
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.lease = lease;
+        this.sentCounter = Counter.builder("email.outbox.sent")
+                .description("Emails handed to the email service")
+                .register(meterRegistry);
+        this.retriedCounter = Counter.builder("email.outbox.retried")
+                .description("Failed sends scheduled for another attempt")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("email.outbox.failed")
+                .description("Emails given up on, rejected by the email service or out of attempts")
+                .register(meterRegistry);
+        this.deferredCounter = Counter.builder("email.outbox.deferred")
+                .description("Sends postponed because the email service circuit breaker or bulkhead refused the call")
+                .register(meterRegistry);
+        this.deliveryLag = Timer.builder("email.outbox.delivery.lag")
+                .description("Time from queueing an email to the email service accepting it")
+                .register(meterRegistry);
+        Gauge.builder("email.outbox.pending", pending, AtomicLong::get)
+                .description("Emails waiting in the outbox")
+                .register(meterRegistry);
+        Gauge.builder("email.outbox.oldest.pending.age", oldestPendingAgeSeconds, AtomicLong::get)
+                .description("Age of the oldest waiting email")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${email.outbox.poll-interval:PT2S}")
+    public void dispatch() {
+        List<OutboxEmail> batch;
+        do {
+            batch = emailOutbox.claimDue(batchSize, lease);
+            if (!batch.isEmpty()) {
+                send(batch);
+            }
+        } while (batch.size() == batchSize);
+        pending.set(emailOutbox.countPending());
+        oldestPendingAgeSeconds.set(emailOutbox.getOldestPendingAge().toSeconds());
+    }
+
+    /*
+     * one request for the whole batch, the email service reports on every item at the same index
+     */
+    private void send(List<OutboxEmail> batch) {
+        List<EmailBatchItemDto> items = batch.stream()
+                .map(email -> new EmailBatchItemDto(email.type().name(), email.email(), email.username(), email.code()))
+                .toList();
+        EmailBatchResponseDto response;
+        try {
+            response = chatterBoxEmailService.sendBatch(items);
+        }
+        catch (CallNotPermittedException | BulkheadFullException e) {
+            // the email service was not even called, try again once the breaker may have closed without using up an attempt
+            batch.forEach(email -> emailOutbox.defer(email, LocalDateTime.now().plus(initialBackoff)));
+            deferredCounter.increment(batch.size());
+            return;
+        }
+        catch (Exception e) {
+            batch.forEach(email -> failed(email, e.getMessage(), true));
+            return;
+        }
+
+        List<EmailBatchItemResultDto> results = response == null || response.results() == null ? List.of() : response.results();
+        EmailBatchItemResultDto[] byIndex = new EmailBatchItemResultDto[batch.size()];
+        for (EmailBatchItemResultDto result : results) {
+            if (result.index() >= 0 && result.index() < byIndex.length) {
+                byIndex[result.index()] = result;
+            }
+        }
+        for (int i = 0; i < byIndex.length; i++) {
+            OutboxEmail email = batch.get(i);
+            EmailBatchItemResultDto result = byIndex[i];
+            if (result == null) {
+                failed(email, "No result from email service", true);
+            }
+            else if (ACCEPTED.equals(result.status())) {
+                emailOutbox.markSent(email);
+                sentCounter.increment();
+                deliveryLag.record(Duration.between(email.createdAt(), LocalDateTime.now()).toMillis(), TimeUnit.MILLISECONDS);
+            }
+            else {
+                failed(email, result.error(), !REJECTED.equals(result.status()));
+            }
+        }
+    }
+
+    private void failed(OutboxEmail email, String error, boolean retryable) {
+        int attempts = email.attempts() + 1;
+        if (!retryable || attempts >= maxAttempts) {
+            log.warning("Giving up on " + email.type() + " email for user " + email.username() + " after " + attempts + " attempts: " + error);
+            emailOutbox.markFailed(email, error, null);
+            failedCounter.increment();
+            return;
+        }
+        Duration backoff = backoff(attempts);
+        log.warning("Failed to send " + email.type() + " email for user " + email.username() + ", retrying in " + backoff + ": " + error);
+        emailOutbox.markFailed(email, error, LocalDateTime.now().plus(backoff));
+        retriedCounter.increment();
+    }
+
+    /*
+     * initialBackoff * 2^(attempts - 1) capped at maxBackoff, then up to 20% jitter on top
+     */
+    private Duration backoff(int attempts) {
+        long millis = initialBackoff.toMillis() << Math.min(attempts - 1, 30);
+        if (millis <= 0 || millis > maxBackoff.toMillis()) {
+            millis = maxBackoff.toMillis();
+        }
+        return Duration.ofMillis(millis + ThreadLocalRandom.current().nextLong(millis / 5 + 1));
+    }
+}
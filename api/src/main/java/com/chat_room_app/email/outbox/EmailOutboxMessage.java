@@ -0,0 +1,58 @@
+package com.chat_room_app.email.outbox;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * An email waiting to be handed to the email service, there is one row per user and email type
+ * so asking for a new code replaces a pending one instead of queueing a second email
+ */
+@Entity
+@Table(name = "email_outbox",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"type", "username"}),
+        indexes = @Index(name = "idx_email_outbox_status_next_attempt", columnList = "status, next_attempt_at"))
+@Data
+@NoArgsConstructor
+public class EmailOutboxMessage {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "email_outbox_message_seq")
+    @SequenceGenerator(name = "email_outbox_message_seq", sequenceName = "email_outbox_message_seq", allocationSize = 100)
+    private Long id;
+
+    @Column(name = "type", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private EmailType type;
+
+    @Column(name = "username", nullable = false)
+    private String username;
+
+    @Column(nullable = false)
+    private String email;
+
+    @Column(nullable = false)
+    private String code;
+
+    @Column(name = "status", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private EmailOutboxStatus status = EmailOutboxStatus.PENDING;
+
+    private int attempts;
+
+    // bumped whenever the row is re-queued with a new code, a send of an older revision must not mark it sent
+    private int revision;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+}
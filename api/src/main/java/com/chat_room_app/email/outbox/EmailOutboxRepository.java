@@ -0,0 +1,36 @@
+package com.chat_room_app.email.outbox;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutboxMessage, Long> {
+
+    Optional<EmailOutboxMessage> findByTypeAndUsername(EmailType type, String username);
+
+    /**
+     * Pending emails that are due, oldest first. Rows locked by another node's dispatcher are skipped
+     * so several instances can drain the outbox at once without sending anything twice
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT o FROM EmailOutboxMessage o WHERE o.status = com.chat_room_app.email.outbox.EmailOutboxStatus.PENDING " +
+            "AND o.nextAttemptAt <= :now ORDER BY o.nextAttemptAt")
+    List<EmailOutboxMessage> findDue(@Param("now") LocalDateTime now, Pageable pageable);
+
+    long countByStatus(EmailOutboxStatus status);
+
+    @Query("SELECT MIN(o.createdAt) FROM EmailOutboxMessage o WHERE o.status = com.chat_room_app.email.outbox.EmailOutboxStatus.PENDING")
+    Optional<LocalDateTime> findOldestPendingCreatedAt();
+}
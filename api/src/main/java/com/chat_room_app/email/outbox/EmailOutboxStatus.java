@@ -0,0 +1,7 @@
+package com.chat_room_app.email.outbox;
+
+public enum EmailOutboxStatus {
+    PENDING,
+    SENT,
+    FAILED // gave up after the max attempts
+}
@@ -0,0 +1,6 @@
+package com.chat_room_app.email.outbox;
+
+public enum EmailType {
+    VERIFY,
+    RESET_PASSWORD
+}
@@ -0,0 +1,10 @@
+package com.chat_room_app.email.outbox;
+
+import java.time.LocalDateTime;
+
+/**
+ * Detached copy of a claimed outbox row, sent without holding a transaction open
+ */
+public record OutboxEmail(Long id, int revision, EmailType type, String email, String username, String code,
+                          int attempts, LocalDateTime createdAt) {
+}
@@ -85,6 +85,13 @@ public class GlobalExceptionHandler {
                 .body(new FailedAPIRequestResponse(sue.getMessage(), request.getRequestURI()));
     }
 
+    @ExceptionHandler(TooManyRequests429Exception.class)
+    public ResponseEntity<FailedAPIRequestResponse> handleTooManyRequests429Exception(TooManyRequests429Exception tme, HttpServletRequest request) {
+        return ResponseEntity
+                .status(HttpStatus.TOO_MANY_REQUESTS)
+                .body(new FailedAPIRequestResponse(tme.getMessage(), request.getRequestURI()));
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<FailedAPIRequestResponse> handleRuntimeException(RuntimeException re, HttpServletRequest request) {
         return ResponseEntity
@@ -0,0 +1,7 @@
+package com.chat_room_app.exceptions.custom_exceptions;
+
+public class TooManyRequests429Exception extends RuntimeException {
+    public TooManyRequests429Exception(String message) {
+        super(message);
+    }
+}
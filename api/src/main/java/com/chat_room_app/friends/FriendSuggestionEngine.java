@@ -0,0 +1,242 @@
+package com.chat_room_app.friends;
+
+import com.chat_room_app.chatroom.ChatRoomRepository;
+import com.chat_room_app.chatroom.dtos.ChatRoomMembershipDto;
+import com.chat_room_app.datasource.AfterCommit;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * "People you may know", candidates are friends of friends and people sharing rooms with the user,
+ * scored by mutual friends first and shared rooms second. Each user keeps only their top K.
+ * A friendship change marks both users and their friends stale, stale users are recomputed on the next drain or read.
+ * Everything is refreshed periodically on a fork-join pool, which is also when room memberships are reloaded
+ */
+@Log
+@Component
+public class FriendSuggestionEngine {
+
+    private static final int MUTUAL_FRIEND_WEIGHT = 3;
+    private static final int SHARED_ROOM_WEIGHT = 1;
+    private static final int MAX_ROOM_SIZE = 200; // big rooms say little about who knows who
+    private static final int REFRESH_SPLIT_THRESHOLD = 256;
+    private static final int LOAD_BATCH_SIZE = 10_000;
+    private static final Suggestion[] NO_SUGGESTIONS = new Suggestion[0];
+
+    private final FriendshipGraph friendshipGraph;
+    private final ChatRoomRepository chatRoomRepository;
+    private final int topK;
+    private final ForkJoinPool refreshPool;
+    private final Map<Long, Suggestion[]> suggestions = new ConcurrentHashMap<>();
+    private final Set<Long> staleUsers = ConcurrentHashMap.newKeySet();
+    private volatile RoomMemberships roomMemberships = RoomMemberships.EMPTY;
+
+    public FriendSuggestionEngine(FriendshipGraph friendshipGraph, ChatRoomRepository chatRoomRepository,
+                                  @Value("${friends.suggestions.top-k:20}") int topK) {
+        this.friendshipGraph = friendshipGraph;
+        this.chatRoomRepository = chatRoomRepository;
+        this.topK = topK;
+        this.refreshPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Best suggestions for the user, recomputed first if a friendship change made them stale
+     */
+    public List<Suggestion> getSuggestions(Long userId) {
+        Suggestion[] current = suggestions.get(userId);
+        if (current == null || staleUsers.remove(userId)) {
+            current = compute(userId);
+            store(userId, current);
+        }
+        List<Suggestion> stillValid = new ArrayList<>(current.length);
+        for (Suggestion suggestion : current) {
+            // a request may have been sent since the list was built
+            if (!friendshipGraph.isConnected(userId, suggestion.userId())) {
+                stillValid.add(suggestion);
+            }
+        }
+        return stillValid;
+    }
+
+    /**
+     * Marks both users and their friends stale once the surrounding transaction commits,
+     * call it after the FriendshipGraph has been told about the change
+     */
+    public void markStale(Long userId, Long otherUserId) {
+        AfterCommit.run(() -> {
+            for (Long id : List.of(userId, otherUserId)) {
+                staleUsers.add(id);
+                for (long friendId : friendshipGraph.getFriendIds(id)) {
+                    staleUsers.add(friendId);
+                }
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${friends.suggestions.stale-drain-interval:PT10S}")
+    public void recomputeStale() {
+        Iterator<Long> iterator = staleUsers.iterator();
+        while (iterator.hasNext()) {
+            Long userId = iterator.next();
+            iterator.remove();
+            store(userId, compute(userId));
+        }
+    }
+
+    @Scheduled(initialDelayString = "${friends.suggestions.initial-delay:PT30S}",
+            fixedDelayString = "${friends.suggestions.refresh-interval:PT30M}")
+    public void refreshAll() {
+        long start = System.nanoTime();
+        RoomMemberships loaded = loadRoomMemberships();
+        roomMemberships = loaded;
+
+        LongHashSet userIds = new LongHashSet(loaded.roomsByUser.size());
+        for (long userId : friendshipGraph.getUserIds()) {
+            userIds.add(userId);
+        }
+        loaded.roomsByUser.keySet().forEach(userIds::add);
+        long[] ids = userIds.toArray();
+        refreshPool.invoke(new RefreshTask(ids, 0, ids.length));
+        suggestions.keySet().removeIf(userId -> !userIds.contains(userId));
+        log.info("Refreshed friend suggestions for " + ids.length + " users in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshPool.shutdownNow();
+    }
+
+    /*
+     * counts, per candidate, the friends and rooms they share with the user then keeps the best topK in a min heap
+     */
+    private Suggestion[] compute(long userId) {
+        Map<Long, int[]> counts = new HashMap<>();
+        for (long friendId : friendshipGraph.getFriendIds(userId)) {
+            for (long candidateId : friendshipGraph.getFriendIds(friendId)) {
+                if (candidateId != userId) {
+                    counts.computeIfAbsent(candidateId, id -> new int[2])[0]++;
+                }
+            }
+        }
+        RoomMemberships rooms = roomMemberships;
+        for (long roomId : rooms.roomsOf(userId)) {
+            long[] members = rooms.membersOf(roomId);
+            if (members.length > MAX_ROOM_SIZE) {
+                continue;
+            }
+            for (long candidateId : members) {
+                if (candidateId != userId) {
+                    counts.computeIfAbsent(candidateId, id -> new int[2])[1]++;
+                }
+            }
+        }
+        if (counts.isEmpty()) {
+            return NO_SUGGESTIONS;
+        }
+
+        PriorityQueue<Suggestion> best = new PriorityQueue<>(topK + 1, Suggestion.BY_SCORE);
+        for (Map.Entry<Long, int[]> entry : counts.entrySet()) {
+            Long candidateId = entry.getKey();
+            if (friendshipGraph.isConnected(userId, candidateId)) {
+                continue;
+            }
+            best.add(new Suggestion(candidateId, entry.getValue()[0], entry.getValue()[1]));
+            if (best.size() > topK) {
+                best.poll();
+            }
+        }
+        Suggestion[] ranked = best.toArray(NO_SUGGESTIONS);
+        Arrays.sort(ranked, Suggestion.BY_SCORE.reversed());
+        return ranked;
+    }
+
+    private void store(long userId, Suggestion[] ranked) {
+        if (ranked.length == 0) {
+            suggestions.remove(userId);
+        }
+        else {
+            suggestions.put(userId, ranked);
+        }
+    }
+
+    private RoomMemberships loadRoomMemberships() {
+        Map<Long, LongHashSet> roomsByUser = new HashMap<>();
+        Map<Long, LongHashSet> membersByRoom = new HashMap<>();
+        long lastChatRoomId = Long.MIN_VALUE;
+        long lastUserId = Long.MIN_VALUE;
+        List<ChatRoomMembershipDto> batch;
+        do {
+            batch = chatRoomRepository.findMembershipsAfter(lastChatRoomId, lastUserId, PageRequest.ofSize(LOAD_BATCH_SIZE));
+            for (ChatRoomMembershipDto membership : batch) {
+                roomsByUser.computeIfAbsent(membership.userId(), id -> new LongHashSet()).add(membership.chatRoomId());
+                membersByRoom.computeIfAbsent(membership.chatRoomId(), id -> new LongHashSet()).add(membership.userId());
+                lastChatRoomId = membership.chatRoomId();
+                lastUserId = membership.userId();
+            }
+        } while (batch.size() == LOAD_BATCH_SIZE);
+        return new RoomMemberships(toArrays(roomsByUser), toArrays(membersByRoom));
+    }
+
+    private static Map<Long, long[]> toArrays(Map<Long, LongHashSet> sets) {
+        Map<Long, long[]> arrays = new HashMap<>(sets.size() * 2);
+        sets.forEach((id, set) -> arrays.put(id, set.toArray()));
+        return arrays;
+    }
+
+    /**
+     * Splits the user ids in halves until the slice is small enough to compute directly
+     */
+    private final class RefreshTask extends RecursiveAction {
+        private final long[] userIds;
+        private final int from;
+        private final int to;
+
+        private RefreshTask(long[] userIds, int from, int to) {
+            this.userIds = userIds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= REFRESH_SPLIT_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    store(userIds[i], FriendSuggestionEngine.this.compute(userIds[i]));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RefreshTask(userIds, from, middle), new RefreshTask(userIds, middle, to));
+        }
+    }
+
+    public record Suggestion(Long userId, int mutualFriends, int sharedChatRooms) {
+        private static final Comparator<Suggestion> BY_SCORE = Comparator.comparingInt(Suggestion::score)
+                .thenComparing(Suggestion::userId, Comparator.reverseOrder());
+
+        public int score() {
+            return mutualFriends * MUTUAL_FRIEND_WEIGHT + sharedChatRooms * SHARED_ROOM_WEIGHT;
+        }
+    }
+
+    private record RoomMemberships(Map<Long, long[]> roomsByUser, Map<Long, long[]> membersByRoom) {
+        private static final RoomMemberships EMPTY = new RoomMemberships(Map.of(), Map.of());
+
+        private long[] roomsOf(long userId) {
+            return roomsByUser.getOrDefault(userId, new long[0]);
+        }
+
+        private long[] membersOf(long roomId) {
+            return membersByRoom.getOrDefault(roomId, new long[0]);
+        }
+    }
+}
@@ -8,14 +8,22 @@ import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
 
+/*
+ * idx_friendships_receiver_status_date backs the pending-requests page, ddl-auto=update never alters an index it
+ * already created, so it carries a new name instead of reusing the two column idx_friendships_receiver_status.
+ * That older index only backed per-direction status lookups the FriendshipGraph answers now and can be dropped
+ */
 @Entity
-@Table(name = "friendships", uniqueConstraints = @UniqueConstraint(columnNames = {"requester_id", "receiver_id"}))
+@Table(name = "friendships",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"requester_id", "receiver_id"}),
+        indexes = @Index(name = "idx_friendships_receiver_status_date", columnList = "receiver_id, status, friendship_date"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Friendship {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "friendship_seq")
+    @SequenceGenerator(name = "friendship_seq", sequenceName = "friendship_seq", allocationSize = 100)
     private Long id;
 
     @ManyToOne
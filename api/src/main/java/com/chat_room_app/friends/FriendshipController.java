@@ -1,17 +1,22 @@
 package com.chat_room_app.friends;
 
+import com.chat_room_app.friends.dtos.FriendSuggestionDto;
 import com.chat_room_app.friends.dtos.FriendshipDto;
+import com.chat_room_app.friends.dtos.FriendshipPageDto;
 import com.chat_room_app.jwt.JwtUtils;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Set;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/v1/friends")
 public class FriendshipController {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final FriendshipService friendshipService;
 
     public FriendshipController(FriendshipService friendshipService) {
@@ -51,25 +56,79 @@ public class FriendshipController {
         return new ResponseEntity<>("User unblocked", HttpStatus.NO_CONTENT);
     }
 
+    /**
+     * Friend, request and blocked lists are paged newest first, the cursor of the next page is sent in the X-Next-Cursor header.
+     * They share an ETag that only changes when one of the user's relationships does, so polling with If-None-Match
+     * gets a 304 without touching the database
+     */
     @GetMapping()
-    public ResponseEntity<Set<FriendshipDto>> getFriends() {
+    public ResponseEntity<List<FriendshipDto>> getFriends(@RequestParam(defaultValue = "50") int limit,
+                                                          @RequestParam(required = false) String cursor,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         Long userId = JwtUtils.getCurrentUserId();
-        Set<FriendshipDto> friends = friendshipService.getAllFriends(userId);
-        return new ResponseEntity<>(friends, HttpStatus.OK);
+        String eTag = friendshipService.getRelationshipsETag(userId);
+        if (isNotModified(ifNoneMatch, eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+        FriendshipPageDto friends = friendshipService.getFriends(userId, limit, cursor);
+        return toPageResponse(friends, eTag);
     }
 
     @GetMapping("/requests")
-    public ResponseEntity<Set<FriendshipDto>> getFriendRequests() {
+    public ResponseEntity<List<FriendshipDto>> getFriendRequests(@RequestParam(defaultValue = "50") int limit,
+                                                                 @RequestParam(required = false) String cursor,
+                                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        Long userId = JwtUtils.getCurrentUserId();
+        String eTag = friendshipService.getRelationshipsETag(userId);
+        if (isNotModified(ifNoneMatch, eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+        FriendshipPageDto friendRequests = friendshipService.getFriendRequests(userId, limit, cursor);
+        return toPageResponse(friendRequests, eTag);
+    }
+
+    @GetMapping("/suggestions")
+    public ResponseEntity<List<FriendSuggestionDto>> getSuggestions() {
         Long userId = JwtUtils.getCurrentUserId();
-        Set<FriendshipDto> friendRequests = friendshipService.getAllFriendRequests(userId);
-        return new ResponseEntity<>(friendRequests, HttpStatus.OK);
+        List<FriendSuggestionDto> suggestions = friendshipService.getFriendSuggestions(userId);
+        return new ResponseEntity<>(suggestions, HttpStatus.OK);
     }
 
     @GetMapping("/blocked")
-    public ResponseEntity<Set<FriendshipDto>> getBlocked() {
+    public ResponseEntity<List<FriendshipDto>> getBlocked(@RequestParam(defaultValue = "50") int limit,
+                                                          @RequestParam(required = false) String cursor,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         Long userId = JwtUtils.getCurrentUserId();
-        Set<FriendshipDto> blockedUsers = friendshipService.getAllBlockedUsers(userId);
-        return new ResponseEntity<>(blockedUsers, HttpStatus.OK);
+        String eTag = friendshipService.getRelationshipsETag(userId);
+        if (isNotModified(ifNoneMatch, eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+        FriendshipPageDto blockedUsers = friendshipService.getBlockedUsers(userId, limit, cursor);
+        return toPageResponse(blockedUsers, eTag);
+    }
+
+    private ResponseEntity<List<FriendshipDto>> toPageResponse(FriendshipPageDto page, String eTag) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(eTag);
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.friendships());
+    }
+
+    private boolean isNotModified(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(eTag) || tag.equals("*")) {
+                return true;
+            }
+        }
+        return false;
     }
 
 }
@@ -0,0 +1,47 @@
+package com.chat_room_app.friends;
+
+import com.chat_room_app.datasource.AfterCommit;
+import com.chat_room_app.friends.dtos.FriendIdAndNameDto;
+import com.chat_room_app.friends.dtos.FriendshipEventDto;
+import com.chat_room_app.users.User;
+import lombok.extern.java.Log;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Pushes relationship changes to the affected users' /user/queue/friends once the transaction commits,
+ * so clients can update their friend and request lists instead of polling them
+ */
+@Log
+@Component
+public class FriendshipEventPublisher {
+
+    public static final String FRIENDS_QUEUE = "/queue/friends";
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    public FriendshipEventPublisher(SimpMessagingTemplate messagingTemplate) {
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    /**
+     * Sends the event to recipient, describing the relationship with counterpart
+     */
+    public void publish(FriendshipEventType type, Long friendshipId, User recipient, User counterpart) {
+        String recipientUsername = recipient.getUsername();
+        FriendshipEventDto event = new FriendshipEventDto(type, friendshipId,
+                new FriendIdAndNameDto(counterpart.getId(), counterpart.getUsername()));
+        AfterCommit.run(() -> send(recipientUsername, event));
+    }
+
+    private void send(String username, FriendshipEventDto event) {
+        try {
+            messagingTemplate.convertAndSendToUser(username, FRIENDS_QUEUE, event);
+        }
+        catch (MessagingException e) {
+            // the change is committed either way, the client catches up on its next list fetch
+            log.warning("Failed to push " + event.type() + " friendship event to " + username + ": " + e.getMessage());
+        }
+    }
+}
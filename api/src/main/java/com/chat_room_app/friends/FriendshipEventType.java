@@ -0,0 +1,5 @@
+package com.chat_room_app.friends;
+
+public enum FriendshipEventType {
+    REQUESTED, ACCEPTED, REMOVED, BLOCKED, UNBLOCKED
+}
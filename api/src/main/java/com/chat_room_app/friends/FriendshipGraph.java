@@ -0,0 +1,401 @@
+package com.chat_room_app.friends;
+
+import com.chat_room_app.datasource.AfterCommit;
+import com.chat_room_app.friends.dtos.FriendshipEdgeDto;
+import lombok.extern.java.Log;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * In memory copy of the friendships table as per user adjacency sets of primitive ids,
+ * relationship status, mutual friends and block checks become set lookups instead of queries.
+ * Loaded at startup, FriendshipService pushes every change in once its transaction commits.
+ * Changes committed while the load runs are applied right away and replayed after it, otherwise a row read before
+ * its change committed would overwrite the change and a deleted or unblocked relationship would come back
+ */
+@Log
+@Component
+public class FriendshipGraph {
+
+    private static final int LOAD_BATCH_SIZE = 10_000;
+    private static final long[] NO_IDS = new long[0];
+
+    private final FriendshipRepository friendshipRepository;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Node> nodes = new HashMap<>();
+    // bumped for both users on every change, the epoch keeps tags from a previous run from matching
+    private final Map<Long, Long> versions = new ConcurrentHashMap<>();
+    private final long epoch = System.currentTimeMillis();
+    // guarded by the write lock
+    private final List<Runnable> changesDuringLoad = new ArrayList<>();
+    private boolean loading;
+
+    public FriendshipGraph(FriendshipRepository friendshipRepository) {
+        this.friendshipRepository = friendshipRepository;
+    }
+
+    @Order(0) // the RoomBlockIndex builds on the loaded graph
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            loading = true;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+        long lastId = Long.MIN_VALUE;
+        int loaded = 0;
+        try {
+            List<FriendshipEdgeDto> batch;
+            do {
+                batch = friendshipRepository.findEdgesAfter(lastId, PageRequest.ofSize(LOAD_BATCH_SIZE));
+                lock.writeLock().lock();
+                try {
+                    for (FriendshipEdgeDto edge : batch) {
+                        addEdge(edge.requesterId(), edge.receiverId(), edge.status());
+                        lastId = edge.id();
+                    }
+                }
+                finally {
+                    lock.writeLock().unlock();
+                }
+                loaded += batch.size();
+            } while (batch.size() == LOAD_BATCH_SIZE);
+        }
+        finally {
+            lock.writeLock().lock();
+            try {
+                loading = false;
+                changesDuringLoad.forEach(Runnable::run);
+                changesDuringLoad.clear();
+            }
+            finally {
+                lock.writeLock().unlock();
+            }
+        }
+        log.info("Loaded " + loaded + " friendships for " + nodes.size() + " users in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Records the requester -> receiver relationship once the surrounding transaction commits,
+     * replaces whatever that direction held before
+     */
+    public void link(Long requesterId, Long receiverId, FriendStatus status) {
+        AfterCommit.run(() -> apply(() -> {
+            removeEdge(requesterId, receiverId);
+            addEdge(requesterId, receiverId, status);
+            bumpVersion(requesterId);
+            bumpVersion(receiverId);
+        }));
+    }
+
+    /**
+     * Drops the requester -> receiver relationship once the surrounding transaction commits
+     */
+    public void unlink(Long requesterId, Long receiverId) {
+        AfterCommit.run(() -> apply(() -> {
+            removeEdge(requesterId, receiverId);
+            bumpVersion(requesterId);
+            bumpVersion(receiverId);
+        }));
+    }
+
+    /**
+     * Forgets a deleted user and every edge pointing at them once the surrounding transaction commits
+     */
+    public void removeUser(Long userId) {
+        AfterCommit.run(() -> apply(() -> {
+            versions.remove(userId);
+            Node node = nodes.remove(userId);
+            if (node == null) {
+                return;
+            }
+            for (Relation relation : Relation.values()) {
+                for (long otherId : node.ids(relation)) {
+                    Node other = nodes.get(otherId);
+                    if (other != null) {
+                        other.remove(relation.inverse(), userId);
+                    }
+                    bumpVersion(otherId);
+                }
+            }
+        }));
+    }
+
+    /**
+     * Status as seen by the requester, what they sent wins over what they received
+     */
+    public FriendStatus getRelationshipStatus(Long requesterId, Long targetId) {
+        lock.readLock().lock();
+        try {
+            Node requester = nodes.get(requesterId);
+            if (requester == null) {
+                return FriendStatus.NONE;
+            }
+            if (requester.has(Relation.FRIEND, targetId)) {
+                return FriendStatus.ACCEPTED;
+            }
+            if (requester.has(Relation.SENT_REQUEST, targetId) || requester.has(Relation.RECEIVED_REQUEST, targetId)) {
+                return FriendStatus.PENDING;
+            }
+            if (requester.has(Relation.BLOCKING, targetId) || requester.has(Relation.BLOCKED_BY, targetId)) {
+                return FriendStatus.BLOCKED;
+            }
+            return FriendStatus.NONE;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * True when the two users have any relationship, in either direction
+     */
+    public boolean isConnected(Long userId, Long otherUserId) {
+        lock.readLock().lock();
+        try {
+            Node node = nodes.get(userId);
+            if (node == null) {
+                return false;
+            }
+            for (Relation relation : Relation.values()) {
+                if (node.has(relation, otherUserId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * True when otherUserId has blocked userId
+     */
+    public boolean isBlockedBy(Long userId, Long otherUserId) {
+        lock.readLock().lock();
+        try {
+            Node node = nodes.get(userId);
+            return node != null && node.has(Relation.BLOCKED_BY, otherUserId);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * True when either user has blocked the other
+     */
+    public boolean isBlockedEitherWay(Long userId, Long otherUserId) {
+        lock.readLock().lock();
+        try {
+            Node node = nodes.get(userId);
+            return node != null && (node.has(Relation.BLOCKING, otherUserId) || node.has(Relation.BLOCKED_BY, otherUserId));
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Changes whenever any of the user's relationships change, used as the ETag of their friend lists
+     */
+    public String getVersionTag(Long userId) {
+        return epoch + "-" + versions.getOrDefault(userId, 0L);
+    }
+
+    /**
+     * Every user with at least one relationship
+     */
+    public long[] getUserIds() {
+        lock.readLock().lock();
+        try {
+            long[] userIds = new long[nodes.size()];
+            int count = 0;
+            for (Long userId : nodes.keySet()) {
+                userIds[count++] = userId;
+            }
+            return userIds;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long[] getFriendIds(Long userId) {
+        return read(userId, node -> node.ids(Relation.FRIEND));
+    }
+
+    public long[] getBlockedIds(Long userId) {
+        return read(userId, node -> node.ids(Relation.BLOCKING));
+    }
+
+    public long[] getBlockedByIds(Long userId) {
+        return read(userId, node -> node.ids(Relation.BLOCKED_BY));
+    }
+
+    /**
+     * Everyone the user has any relationship with, in either direction
+     */
+    public long[] getConnectedIds(Long userId) {
+        return read(userId, node -> {
+            LongHashSet connected = new LongHashSet();
+            for (Relation relation : Relation.values()) {
+                for (long otherId : node.ids(relation)) {
+                    connected.add(otherId);
+                }
+            }
+            return connected.toArray();
+        });
+    }
+
+    public long[] getMutualFriendIds(Long userId, Long otherUserId) {
+        lock.readLock().lock();
+        try {
+            Node node = nodes.get(userId);
+            Node other = nodes.get(otherUserId);
+            LongHashSet friends = node == null ? null : node.sets[Relation.FRIEND.ordinal()];
+            LongHashSet otherFriends = other == null ? null : other.sets[Relation.FRIEND.ordinal()];
+            if (friends == null || otherFriends == null) {
+                return NO_IDS;
+            }
+            return friends.intersect(otherFriends);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long[] read(Long userId, Function<Node, long[]> reader) {
+        lock.readLock().lock();
+        try {
+            Node node = nodes.get(userId);
+            return node == null ? NO_IDS : reader.apply(node);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*
+     * every change sets the final state of the edges it touches, so replaying it after the load is safe
+     */
+    private void apply(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+            if (loading) {
+                changesDuringLoad.add(change);
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+     * caller holds the write lock
+     */
+    private void addEdge(long requesterId, long receiverId, FriendStatus status) {
+        Node requester = nodes.computeIfAbsent(requesterId, id -> new Node());
+        Node receiver = nodes.computeIfAbsent(receiverId, id -> new Node());
+        switch (status) {
+            case ACCEPTED -> {
+                requester.add(Relation.FRIEND, receiverId);
+                receiver.add(Relation.FRIEND, requesterId);
+            }
+            case PENDING -> {
+                requester.add(Relation.SENT_REQUEST, receiverId);
+                receiver.add(Relation.RECEIVED_REQUEST, requesterId);
+            }
+            case BLOCKED -> {
+                requester.add(Relation.BLOCKING, receiverId);
+                receiver.add(Relation.BLOCKED_BY, requesterId);
+            }
+            case NONE -> { }
+        }
+    }
+
+    /*
+     * caller holds the write lock, an accepted friendship is symmetric so it goes no matter who requested it
+     */
+    private void removeEdge(long requesterId, long receiverId) {
+        Node requester = nodes.get(requesterId);
+        Node receiver = nodes.get(receiverId);
+        if (requester != null) {
+            requester.remove(Relation.FRIEND, receiverId);
+            requester.remove(Relation.SENT_REQUEST, receiverId);
+            requester.remove(Relation.BLOCKING, receiverId);
+        }
+        if (receiver != null) {
+            receiver.remove(Relation.FRIEND, requesterId);
+            receiver.remove(Relation.RECEIVED_REQUEST, requesterId);
+            receiver.remove(Relation.BLOCKED_BY, requesterId);
+        }
+    }
+
+    private void bumpVersion(long userId) {
+        versions.merge(userId, 1L, Long::sum);
+    }
+
+    private enum Relation {
+        FRIEND, SENT_REQUEST, RECEIVED_REQUEST, BLOCKING, BLOCKED_BY;
+
+        private Relation inverse() {
+            return switch (this) {
+                case FRIEND -> FRIEND;
+                case SENT_REQUEST -> RECEIVED_REQUEST;
+                case RECEIVED_REQUEST -> SENT_REQUEST;
+                case BLOCKING -> BLOCKED_BY;
+                case BLOCKED_BY -> BLOCKING;
+            };
+        }
+    }
+
+    /**
+     * One set per relation, only allocated once the user has something in it since most users have few relations
+     */
+    private static final class Node {
+        private final LongHashSet[] sets = new LongHashSet[Relation.values().length];
+
+        private boolean has(Relation relation, long userId) {
+            LongHashSet set = sets[relation.ordinal()];
+            return set != null && set.contains(userId);
+        }
+
+        private void add(Relation relation, long userId) {
+            LongHashSet set = sets[relation.ordinal()];
+            if (set == null) {
+                set = new LongHashSet();
+                sets[relation.ordinal()] = set;
+            }
+            set.add(userId);
+        }
+
+        private void remove(Relation relation, long userId) {
+            LongHashSet set = sets[relation.ordinal()];
+            if (set != null && set.remove(userId) && set.isEmpty()) {
+                sets[relation.ordinal()] = null;
+            }
+        }
+
+        private long[] ids(Relation relation) {
+            LongHashSet set = sets[relation.ordinal()];
+            return set == null ? NO_IDS : set.toArray();
+        }
+    }
+}
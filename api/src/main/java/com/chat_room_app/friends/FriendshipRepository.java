@@ -1,9 +1,15 @@
 package com.chat_room_app.friends;
 
+import com.chat_room_app.friends.dtos.FriendshipEdgeDto;
+import com.chat_room_app.friends.dtos.FriendshipRowDto;
 import com.chat_room_app.users.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,4 +19,49 @@ public interface FriendshipRepository extends JpaRepository<Friendship, Long> {
     Optional<Friendship> findByRequesterIdAndReceiverId(Long userId, Long friendId);
     List<Friendship> findAllByRequesterAndStatus(User requester, FriendStatus status);
     List<Friendship> findAllByReceiverAndStatus(User receiver, FriendStatus status);
+
+    @Query("SELECT COUNT(f) > 0 FROM Friendship f " +
+            "WHERE (f.requester.id = :userId AND f.receiver.id = :otherUserId) " +
+            "OR (f.requester.id = :otherUserId AND f.receiver.id = :userId)")
+    boolean existsBetween(@Param("userId") Long userId, @Param("otherUserId") Long otherUserId);
+
+    /**
+     * Accepted friendships of the user in either direction, newest first, keyset on (createdAt, id)
+     */
+    @Query("SELECT new com.chat_room_app.friends.dtos.FriendshipRowDto(f.id, f.requester.id, f.requester.username, f.receiver.id, f.receiver.username, f.status, f.createdAt) FROM Friendship f " +
+            "WHERE f.status = com.chat_room_app.friends.FriendStatus.ACCEPTED AND (f.requester.id = :userId OR f.receiver.id = :userId) " +
+            "AND (f.createdAt < :afterCreatedAt OR (f.createdAt = :afterCreatedAt AND f.id < :afterId)) " +
+            "ORDER BY f.createdAt DESC, f.id DESC")
+    List<FriendshipRowDto> findFriendsPage(@Param("userId") Long userId, @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+            @Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Pending requests received by the user, newest first, keyset on (createdAt, id)
+     */
+    @Query("SELECT new com.chat_room_app.friends.dtos.FriendshipRowDto(f.id, f.requester.id, f.requester.username, f.receiver.id, f.receiver.username, f.status, f.createdAt) FROM Friendship f " +
+            "WHERE f.status = com.chat_room_app.friends.FriendStatus.PENDING AND f.receiver.id = :userId " +
+            "AND (f.createdAt < :afterCreatedAt OR (f.createdAt = :afterCreatedAt AND f.id < :afterId)) " +
+            "ORDER BY f.createdAt DESC, f.id DESC")
+    List<FriendshipRowDto> findFriendRequestsPage(@Param("userId") Long userId, @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+            @Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Users blocked by the user, newest first, keyset on (createdAt, id)
+     */
+    @Query("SELECT new com.chat_room_app.friends.dtos.FriendshipRowDto(f.id, f.requester.id, f.requester.username, f.receiver.id, f.receiver.username, f.status, f.createdAt) FROM Friendship f " +
+            "WHERE f.status = com.chat_room_app.friends.FriendStatus.BLOCKED AND f.requester.id = :userId " +
+            "AND (f.createdAt < :afterCreatedAt OR (f.createdAt = :afterCreatedAt AND f.id < :afterId)) " +
+            "ORDER BY f.createdAt DESC, f.id DESC")
+    List<FriendshipRowDto> findBlockedPage(@Param("userId") Long userId, @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+            @Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Pages through every friendship edge in id order, used to build the FriendshipGraph
+     * @param lastId
+     * @param pageable
+     * @return
+     */
+    @Query("SELECT new com.chat_room_app.friends.dtos.FriendshipEdgeDto(f.id, f.requester.id, f.receiver.id, f.status) FROM Friendship f " +
+            "WHERE f.id > :lastId ORDER BY f.id")
+    List<FriendshipEdgeDto> findEdgesAfter(@Param("lastId") Long lastId, Pageable pageable);
 }
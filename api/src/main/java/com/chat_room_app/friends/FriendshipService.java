@@ -1,18 +1,33 @@
 package com.chat_room_app.friends;
 
+import com.chat_room_app.chatroom.RoomBlockIndex;
+import com.chat_room_app.configs.CacheConfiguration;
+import com.chat_room_app.datasource.AfterCommit;
 import com.chat_room_app.exceptions.custom_exceptions.BadRequest400Exception;
 import com.chat_room_app.exceptions.custom_exceptions.Conflict409Exception;
 import com.chat_room_app.exceptions.custom_exceptions.NotFound404Exception;
 import com.chat_room_app.friends.dtos.FriendIdAndNameDto;
+import com.chat_room_app.friends.dtos.FriendSuggestionDto;
 import com.chat_room_app.friends.dtos.FriendshipDto;
+import com.chat_room_app.friends.dtos.FriendshipPageDto;
+import com.chat_room_app.friends.dtos.FriendshipRowDto;
+import com.chat_room_app.users.ProfileVersions;
 import com.chat_room_app.users.User;
 import com.chat_room_app.users.UserRepository;
-import jakarta.transaction.Transactional;
+import com.chat_room_app.users.dtos.QueriedUserDto;
 import lombok.extern.java.Log;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
@@ -20,12 +35,30 @@ import java.util.stream.Collectors;
 @Log
 public class FriendshipService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final LocalDateTime FIRST_PAGE_CREATED_AT = LocalDateTime.of(9999, 12, 31, 0, 0);
+
     private final FriendshipRepository friendshipRepository;
     private final UserRepository userRepository;
+    private final FriendshipGraph friendshipGraph;
+    private final FriendSuggestionEngine friendSuggestionEngine;
+    private final FriendshipEventPublisher friendshipEventPublisher;
+    private final RoomBlockIndex roomBlockIndex;
+    private final List<Cache> relationshipCaches;
+    private final ProfileVersions profileVersions;
 
-    public FriendshipService(FriendshipRepository friendshipRepository, UserRepository userRepository) {
+    public FriendshipService(FriendshipRepository friendshipRepository, UserRepository userRepository, FriendshipGraph friendshipGraph,
+                             FriendSuggestionEngine friendSuggestionEngine, FriendshipEventPublisher friendshipEventPublisher,
+                             RoomBlockIndex roomBlockIndex, CacheManager cacheManager, ProfileVersions profileVersions) {
         this.friendshipRepository = friendshipRepository;
         this.userRepository = userRepository;
+        this.friendshipGraph = friendshipGraph;
+        this.friendSuggestionEngine = friendSuggestionEngine;
+        this.friendshipEventPublisher = friendshipEventPublisher;
+        this.roomBlockIndex = roomBlockIndex;
+        this.relationshipCaches = List.of(cacheManager.getCache(CacheConfiguration.FRIENDS),
+                cacheManager.getCache(CacheConfiguration.FRIEND_REQUESTS), cacheManager.getCache(CacheConfiguration.BLOCKED_USERS));
+        this.profileVersions = profileVersions;
     }
 
     /**
@@ -40,7 +73,8 @@ public class FriendshipService {
             throw new Conflict409Exception("Cannot send friend request to yourself");
         }
 
-        if (friendshipExists(userId, potentialFriendId)) {
+        // the graph answers most duplicates for free, the database stays the authority for writes
+        if (friendshipGraph.isConnected(userId, potentialFriendId) || friendshipRepository.existsBetween(userId, potentialFriendId)) {
             log.warning("Friendship is already made");
             throw new Conflict409Exception("Friendship already exists");
         }
@@ -54,6 +88,10 @@ public class FriendshipService {
         friendship.setStatus(FriendStatus.PENDING);
 
         Friendship saved = friendshipRepository.save(friendship);
+        friendshipGraph.link(userId, potentialFriendId, FriendStatus.PENDING);
+        evictRelationships(userId, potentialFriendId);
+        friendshipEventPublisher.publish(FriendshipEventType.REQUESTED, saved.getId(), potentialFriend, user);
+        friendshipEventPublisher.publish(FriendshipEventType.REQUESTED, saved.getId(), user, potentialFriend);
         log.info("New friend request created between " + user.getUsername() + " and " + potentialFriend.getUsername());
         return createFriendshipDto(saved.getId(), user, potentialFriend, saved.getStatus());
     }
@@ -68,6 +106,11 @@ public class FriendshipService {
         friendship.setStatus(FriendStatus.ACCEPTED);
         User receiver = friendship.getReceiver();
         User requester = friendship.getRequester();
+        friendshipGraph.link(requester.getId(), receiver.getId(), FriendStatus.ACCEPTED);
+        evictRelationships(requester.getId(), receiver.getId());
+        friendSuggestionEngine.markStale(requester.getId(), receiver.getId());
+        friendshipEventPublisher.publish(FriendshipEventType.ACCEPTED, friendshipId, requester, receiver);
+        friendshipEventPublisher.publish(FriendshipEventType.ACCEPTED, friendshipId, receiver, requester);
         return createFriendshipDto(friendshipId, receiver, requester, FriendStatus.ACCEPTED);
     }
 
@@ -79,6 +122,11 @@ public class FriendshipService {
         Friendship friendship = findFriendshipById(friendshipId);
         log.info("Removing friendship: " + friendshipId);
         friendshipRepository.delete(friendship);
+        friendshipGraph.unlink(friendship.getRequester().getId(), friendship.getReceiver().getId());
+        evictRelationships(friendship.getRequester().getId(), friendship.getReceiver().getId());
+        friendSuggestionEngine.markStale(friendship.getRequester().getId(), friendship.getReceiver().getId());
+        friendshipEventPublisher.publish(FriendshipEventType.REMOVED, friendshipId, friendship.getRequester(), friendship.getReceiver());
+        friendshipEventPublisher.publish(FriendshipEventType.REMOVED, friendshipId, friendship.getReceiver(), friendship.getRequester());
     }
 
     /**
@@ -96,7 +144,7 @@ public class FriendshipService {
         User blockedUser = findUserById(blockId);
 
         // Remove existing friendship if it exists (either direction)
-        removeExistingFriendship(userId, blockId);
+        boolean hadRelationship = removeExistingFriendship(userId, blockId);
 
         Friendship blockFriendship = new Friendship();
         blockFriendship.setRequester(user);
@@ -104,6 +152,14 @@ public class FriendshipService {
         blockFriendship.setStatus(FriendStatus.BLOCKED);
 
         friendshipRepository.save(blockFriendship);
+        friendshipGraph.link(userId, blockId, FriendStatus.BLOCKED);
+        evictRelationships(userId, blockId);
+        roomBlockIndex.onBlocksChanged(userId, blockId);
+        friendshipEventPublisher.publish(FriendshipEventType.BLOCKED, blockFriendship.getId(), user, blockedUser);
+        // the blocked user is only told the relationship is gone, not that they were blocked
+        if (hadRelationship) {
+            friendshipEventPublisher.publish(FriendshipEventType.REMOVED, null, blockedUser, user);
+        }
         return createFriendshipDto(blockFriendship.getId(), user, blockedUser, FriendStatus.BLOCKED);
     }
 
@@ -115,64 +171,133 @@ public class FriendshipService {
         Friendship blockRelationship = friendshipRepository.findByRequesterIdAndReceiverId(userId, blockId)
                 .orElseThrow(() -> new BadRequest400Exception("User is not blocked"));
         friendshipRepository.delete(blockRelationship);
+        friendshipGraph.unlink(userId, blockId);
+        evictRelationships(userId, blockId);
+        roomBlockIndex.onBlocksChanged(userId, blockId);
+        friendSuggestionEngine.markStale(userId, blockId);
+        friendshipEventPublisher.publish(FriendshipEventType.UNBLOCKED, blockRelationship.getId(),
+                blockRelationship.getRequester(), blockRelationship.getReceiver());
     }
 
     /**
-     * Fetches all friends of user
+     * Fetches a page of the user's friends, newest friendship first.
+     * The first page at the default limit is cached per user, the three lists are evicted together on any relationship change
      * @param userId
+     * @param limit max friendships in the page, capped at 100
+     * @param cursor nextCursor of the previous page, null for the first page
      * @return
      */
-    public Set<FriendshipDto> getAllFriends(Long userId) {
-        User currentUser = findUserById(userId);
-        log.info("Fetching all friends of " + currentUser.getUsername());
-        Set<FriendshipDto> friends = new HashSet<>();
-
-        // Friends where current user is the requester
-        friends.addAll(
-                friendshipRepository.findAllByRequesterAndStatus(currentUser, FriendStatus.ACCEPTED)
-                        .stream()
-                        .map(friendship -> createFriendshipDto(friendship.getId(), currentUser, friendship.getReceiver(), friendship.getStatus()))
-                        .collect(Collectors.toSet())
-        );
-
-        // Friends where current user is the receiver
-        friends.addAll(
-                friendshipRepository.findAllByReceiverAndStatus(currentUser, FriendStatus.ACCEPTED)
-                        .stream()
-                        .map(friendship -> createFriendshipDto(friendship.getId(), currentUser, friendship.getRequester(), friendship.getStatus()))
-                        .collect(Collectors.toSet())
-        );
-
-        return friends;
+    @Cacheable(cacheNames = CacheConfiguration.FRIENDS, sync = true, key = "#userId", condition = "#cursor == null && #limit == 50")
+    @Transactional(readOnly = true)
+    public FriendshipPageDto getFriends(Long userId, int limit, String cursor) {
+        log.info("Fetching friends of user " + userId);
+        return getPage(userId, limit, cursor, friendshipRepository::findFriendsPage);
     }
 
     /**
-     * Fetchs all blocked users
+     * Fetches a page of the users blocked by the user, newest first
      * @param userId
+     * @param limit
+     * @param cursor
      * @return
      */
-    public Set<FriendshipDto> getAllBlockedUsers(Long userId) {
-        User currentUser = findUserById(userId);
-        return friendshipRepository.findAllByRequesterAndStatus(currentUser, FriendStatus.BLOCKED)
-                .stream()
-                .map(friendship -> createFriendshipDto(friendship.getId(), currentUser, friendship.getReceiver(), friendship.getStatus()))
-                .collect(Collectors.toSet());
+    @Cacheable(cacheNames = CacheConfiguration.BLOCKED_USERS, sync = true, key = "#userId", condition = "#cursor == null && #limit == 50")
+    @Transactional(readOnly = true)
+    public FriendshipPageDto getBlockedUsers(Long userId, int limit, String cursor) {
+        return getPage(userId, limit, cursor, friendshipRepository::findBlockedPage);
+    }
+
+    /**
+     * Fetches a page of the active friend requests sent to the user, newest first
+     * @param userId
+     * @param limit
+     * @param cursor
+     * @return
+     */
+    @Cacheable(cacheNames = CacheConfiguration.FRIEND_REQUESTS, sync = true, key = "#userId", condition = "#cursor == null && #limit == 50")
+    @Transactional(readOnly = true)
+    public FriendshipPageDto getFriendRequests(Long userId, int limit, String cursor) {
+        return getPage(userId, limit, cursor, friendshipRepository::findFriendRequestsPage);
+    }
+
+    /**
+     * ETag shared by the friend, request and blocked lists, changes on any relationship change of the user
+     * @param userId
+     * @return
+     */
+    public String getRelationshipsETag(Long userId) {
+        return "\"" + friendshipGraph.getVersionTag(userId) + "\"";
     }
 
     /**
-     * Fetches all active friend requests
+     * People the user may know, ranked by mutual friends then shared chat rooms
      * @param userId
      * @return
      */
-    public Set<FriendshipDto> getAllFriendRequests(Long userId) {
-        User currentUser = findUserById(userId);
-        return friendshipRepository.findAllByReceiverAndStatus(currentUser, FriendStatus.PENDING)
+    @Transactional(readOnly = true)
+    public List<FriendSuggestionDto> getFriendSuggestions(Long userId) {
+        List<FriendSuggestionEngine.Suggestion> suggestions = friendSuggestionEngine.getSuggestions(userId);
+        if (suggestions.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, String> usernames = userRepository.findIdsAndUsernamesByIdIn(
+                        suggestions.stream().map(FriendSuggestionEngine.Suggestion::userId).toList())
                 .stream()
-                .map(friendship -> createFriendshipDto(friendship.getId(), currentUser, friendship.getRequester(), friendship.getStatus()))
-                .collect(Collectors.toSet());
+                .collect(Collectors.toMap(QueriedUserDto::id, QueriedUserDto::username));
+        return suggestions.stream()
+                .filter(suggestion -> usernames.containsKey(suggestion.userId()))
+                .map(suggestion -> new FriendSuggestionDto(suggestion.userId(), usernames.get(suggestion.userId()),
+                        suggestion.mutualFriends(), suggestion.sharedChatRooms()))
+                .toList();
     }
 
     // Helper methods
+    private FriendshipPageDto getPage(Long userId, int limit, String cursor, PageQuery pageQuery) {
+        int boundedLimit = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        LocalDateTime afterCreatedAt = FIRST_PAGE_CREATED_AT;
+        long afterId = Long.MAX_VALUE;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+                afterCreatedAt = LocalDateTime.parse(parts[0]);
+                afterId = Long.parseLong(parts[1]);
+            }
+            catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+                throw new BadRequest400Exception("Invalid cursor: " + cursor);
+            }
+        }
+
+        // one extra row tells whether there is a next page
+        List<FriendshipRowDto> rows = pageQuery.find(userId, afterCreatedAt, afterId, PageRequest.ofSize(boundedLimit + 1));
+        String nextCursor = null;
+        if (rows.size() > boundedLimit) {
+            rows = rows.subList(0, boundedLimit);
+            FriendshipRowDto last = rows.get(boundedLimit - 1);
+            String raw = last.createdAt() + "|" + last.id();
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+        List<FriendshipDto> friendships = rows.stream()
+                .map(row -> createFriendshipDto(userId, row))
+                .toList();
+        return new FriendshipPageDto(friendships, nextCursor);
+    }
+
+    /*
+     * evicted right away and again after commit, a read that raced the commit cannot leave the old page cached.
+     * Profiles showing either user move to new keys, see ProfileVersions
+     */
+    private void evictRelationships(Long userId, Long otherUserId) {
+        Runnable evict = () -> {
+            for (Cache cache : relationshipCaches) {
+                cache.evict(userId);
+                cache.evict(otherUserId);
+            }
+        };
+        evict.run();
+        AfterCommit.run(evict);
+        profileVersions.bump(userId, otherUserId);
+    }
+
     private User findUserById(Long userId) {
         return userRepository.findById(userId)
                 .orElseThrow(() -> new NotFound404Exception("User not found with id: " + userId));
@@ -183,16 +308,27 @@ public class FriendshipService {
                 .orElseThrow(() -> new NotFound404Exception("Friendship not found with id: " + friendshipId));
     }
 
-    private boolean friendshipExists(Long userId1, Long userId2) {
-        return friendshipRepository.findByRequesterIdAndReceiverId(userId1, userId2).isPresent() ||
-                friendshipRepository.findByRequesterIdAndReceiverId(userId2, userId1).isPresent();
+    private boolean removeExistingFriendship(Long userId1, Long userId2) {
+        // delete before the second lookup, its auto flush makes sure the delete reaches the database before a new insert
+        Optional<Friendship> sent = friendshipRepository.findByRequesterIdAndReceiverId(userId1, userId2);
+        sent.ifPresent(friendshipRepository::delete);
+        Optional<Friendship> received = friendshipRepository.findByRequesterIdAndReceiverId(userId2, userId1);
+        received.ifPresent(friendshipRepository::delete);
+        friendshipGraph.unlink(userId1, userId2);
+        friendshipGraph.unlink(userId2, userId1);
+        friendSuggestionEngine.markStale(userId1, userId2);
+        return sent.isPresent() || received.isPresent();
     }
 
-    private void removeExistingFriendship(Long userId1, Long userId2) {
-        friendshipRepository.findByRequesterIdAndReceiverId(userId1, userId2)
-                .ifPresent(friendshipRepository::delete);
-        friendshipRepository.findByRequesterIdAndReceiverId(userId2, userId1)
-                .ifPresent(friendshipRepository::delete);
+    private FriendshipDto createFriendshipDto(Long userId, FriendshipRowDto row) {
+        boolean isRequester = row.requesterId().equals(userId);
+        FriendIdAndNameDto userDto = isRequester
+                ? new FriendIdAndNameDto(row.requesterId(), row.requesterUsername())
+                : new FriendIdAndNameDto(row.receiverId(), row.receiverUsername());
+        FriendIdAndNameDto friendDto = isRequester
+                ? new FriendIdAndNameDto(row.receiverId(), row.receiverUsername())
+                : new FriendIdAndNameDto(row.requesterId(), row.requesterUsername());
+        return new FriendshipDto(row.id(), userDto, friendDto, row.status());
     }
 
     private FriendshipDto createFriendshipDto(Long friendshipId, User user, User friend, FriendStatus status) {
@@ -200,4 +336,9 @@ public class FriendshipService {
         FriendIdAndNameDto friendDto = new FriendIdAndNameDto(friend.getId(), friend.getUsername());
         return new FriendshipDto(friendshipId, userDto, friendDto, status);
     }
+
+    @FunctionalInterface
+    private interface PageQuery {
+        List<FriendshipRowDto> find(Long userId, LocalDateTime afterCreatedAt, Long afterId, Pageable pageable);
+    }
 }
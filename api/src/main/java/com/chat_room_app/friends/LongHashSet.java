@@ -0,0 +1,171 @@
+package com.chat_room_app.friends;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing set of primitive longs, no boxing so a user's adjacency costs ~8-16 bytes per id
+ * instead of a HashSet<Long> entry. Not thread safe, callers guard it (see FriendshipGraph)
+ */
+public final class LongHashSet {
+
+    private static final long EMPTY = 0L;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] slots;
+    private int size;
+    private boolean containsEmptyKey; // 0 marks a free slot, so it is tracked on the side
+
+    public LongHashSet() {
+        this(4);
+    }
+
+    public LongHashSet(int expectedSize) {
+        slots = new long[tableSizeFor(expectedSize)];
+    }
+
+    public boolean add(long value) {
+        if (value == EMPTY) {
+            if (containsEmptyKey) {
+                return false;
+            }
+            containsEmptyKey = true;
+            size++;
+            return true;
+        }
+        int mask = slots.length - 1;
+        int index = mix(value) & mask;
+        while (slots[index] != EMPTY) {
+            if (slots[index] == value) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        slots[index] = value;
+        size++;
+        if (size > slots.length * LOAD_FACTOR) {
+            rehash(slots.length << 1);
+        }
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == EMPTY) {
+            return containsEmptyKey;
+        }
+        int mask = slots.length - 1;
+        int index = mix(value) & mask;
+        while (slots[index] != EMPTY) {
+            if (slots[index] == value) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    public boolean remove(long value) {
+        if (value == EMPTY) {
+            if (!containsEmptyKey) {
+                return false;
+            }
+            containsEmptyKey = false;
+            size--;
+            return true;
+        }
+        int mask = slots.length - 1;
+        int index = mix(value) & mask;
+        while (slots[index] != EMPTY) {
+            if (slots[index] == value) {
+                slots[index] = EMPTY;
+                size--;
+                shiftBack(index, mask);
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Copies the values out, the order is not meaningful
+     */
+    public long[] toArray() {
+        long[] values = new long[size];
+        int count = 0;
+        if (containsEmptyKey) {
+            values[count++] = EMPTY;
+        }
+        for (long slot : slots) {
+            if (slot != EMPTY) {
+                values[count++] = slot;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Values present in both sets, iterates the smaller one
+     */
+    public long[] intersect(LongHashSet other) {
+        LongHashSet smaller = size <= other.size ? this : other;
+        LongHashSet larger = smaller == this ? other : this;
+        long[] result = new long[smaller.size];
+        int count = 0;
+        for (long value : smaller.toArray()) {
+            if (larger.contains(value)) {
+                result[count++] = value;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /*
+     * backward shift deletion keeps probe chains intact without tombstones
+     */
+    private void shiftBack(int freed, int mask) {
+        int index = (freed + 1) & mask;
+        while (slots[index] != EMPTY) {
+            long value = slots[index];
+            int home = mix(value) & mask;
+            if (((index - home) & mask) >= ((index - freed) & mask)) {
+                slots[freed] = value;
+                slots[index] = EMPTY;
+                freed = index;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    private void rehash(int newLength) {
+        long[] old = slots;
+        slots = new long[newLength];
+        int mask = newLength - 1;
+        for (long value : old) {
+            if (value != EMPTY) {
+                int index = mix(value) & mask;
+                while (slots[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                slots[index] = value;
+            }
+        }
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int needed = (int) Math.ceil(Math.max(expectedSize, 2) / LOAD_FACTOR);
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+
+    private static int mix(long value) {
+        long hash = value * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
@@ -0,0 +1,4 @@
+package com.chat_room_app.friends.dtos;
+
+public record FriendSuggestionDto(Long id, String username, int mutualFriends, int sharedChatRooms) {
+}
@@ -0,0 +1,6 @@
+package com.chat_room_app.friends.dtos;
+
+import com.chat_room_app.friends.FriendStatus;
+
+public record FriendshipEdgeDto(Long id, Long requesterId, Long receiverId, FriendStatus status) {
+}
@@ -0,0 +1,9 @@
+package com.chat_room_app.friends.dtos;
+
+import com.chat_room_app.friends.FriendshipEventType;
+
+/**
+ * Pushed to /user/queue/friends, user is the other side of the relationship from the receiver's point of view
+ */
+public record FriendshipEventDto(FriendshipEventType type, Long friendshipId, FriendIdAndNameDto user) {
+}
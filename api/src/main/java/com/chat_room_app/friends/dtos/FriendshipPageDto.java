@@ -0,0 +1,6 @@
+package com.chat_room_app.friends.dtos;
+
+import java.util.List;
+
+public record FriendshipPageDto(List<FriendshipDto> friendships, String nextCursor) {
+}
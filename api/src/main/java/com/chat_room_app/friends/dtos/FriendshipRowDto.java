@@ -0,0 +1,9 @@
+package com.chat_room_app.friends.dtos;
+
+import com.chat_room_app.friends.FriendStatus;
+
+import java.time.LocalDateTime;
+
+public record FriendshipRowDto(Long id, Long requesterId, String requesterUsername, Long receiverId, String receiverUsername,
+                               FriendStatus status, LocalDateTime createdAt) {
+}
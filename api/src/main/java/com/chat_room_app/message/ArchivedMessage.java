@@ -0,0 +1,30 @@
+package com.chat_room_app.message;
+
+import com.chat_room_app.message.dtos.MessageDto;
+
+import java.time.LocalDateTime;
+
+/**
+ * A message as it is kept inside a MessageArchiveBlock
+ */
+record ArchivedMessage(Long id, String sender, LocalDateTime created, String content) {
+
+    static ArchivedMessage of(Message message) {
+        return new ArchivedMessage(message.getId(), message.getSender(), message.getCreated(), message.getContent());
+    }
+
+    ArchivedMessage withContent(String newContent) {
+        return new ArchivedMessage(id, sender, created, newContent);
+    }
+
+    /**
+     * True when this message comes before the (created, id) position, history is ordered by both
+     */
+    boolean isBefore(LocalDateTime beforeCreated, Long beforeId) {
+        return created.isBefore(beforeCreated) || (created.equals(beforeCreated) && id < beforeId);
+    }
+
+    MessageDto toMessageDto() {
+        return new MessageDto(id, content, sender, created.toLocalTime().toString());
+    }
+}
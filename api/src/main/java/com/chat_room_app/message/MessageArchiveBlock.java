@@ -0,0 +1,45 @@
+package com.chat_room_app.message;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A run of consecutive messages of one room, in (created, id) order, moved out of the message table by the MessageArchiver
+ * and stored as a compressed MessageArchiveCodec payload. The created range lets history reads pick the blocks they need
+ * without decompressing anything else, the id range finds the block of a message that is edited or deleted
+ */
+@Entity
+@Table(name = "message_archive",
+        indexes = @Index(name = "idx_message_archive_room_created", columnList = "chatroom_id, first_created, id"))
+@Data
+@NoArgsConstructor
+public class MessageArchiveBlock {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "message_archive_seq")
+    @SequenceGenerator(name = "message_archive_seq", sequenceName = "message_archive_seq", allocationSize = 100)
+    private Long id;
+
+    // no foreign key, blocks are deleted with their room by ChatRoomService
+    @Column(name = "chatroom_id", nullable = false)
+    private Long chatRoomId;
+
+    @Column(name = "min_message_id", nullable = false)
+    private Long minMessageId;
+
+    @Column(name = "max_message_id", nullable = false)
+    private Long maxMessageId;
+
+    @Column(name = "first_created", nullable = false)
+    private LocalDateTime firstCreated;
+
+    @Column(name = "last_created", nullable = false)
+    private LocalDateTime lastCreated;
+
+    private int messageCount;
+
+    @Column(nullable = false, length = 16_777_216)
+    private byte[] payload;
+}
@@ -0,0 +1,97 @@
+package com.chat_room_app.message;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Packs a batch of messages into a deflated block, [version][count] then id, author, created and content per message.
+ * Consecutive messages of one room share most of their authors and words, so blocks usually shrink to a fraction
+ * of the rows they replace
+ */
+final class MessageArchiveCodec {
+
+    private static final byte VERSION = 2;
+
+    private MessageArchiveCodec() {
+    }
+
+    static byte[] encode(List<ArchivedMessage> messages) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater))) {
+            out.writeByte(VERSION);
+            out.writeInt(messages.size());
+            for (ArchivedMessage message : messages) {
+                out.writeLong(message.id());
+                writeString(out, message.sender());
+                out.writeLong(message.created().toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(message.created().getNano());
+                writeString(out, message.content());
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Could not encode message archive block", e);
+        }
+        finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return the messages in the order they were encoded, oldest first
+     */
+    static List<ArchivedMessage> decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(payload)))) {
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IllegalStateException("Unknown message archive block version " + version);
+            }
+            int count = in.readInt();
+            List<ArchivedMessage> messages = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long id = in.readLong();
+                String sender = readString(in);
+                LocalDateTime created = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+                String content = readString(in);
+                messages.add(new ArchivedMessage(id, sender, created, content));
+            }
+            return messages;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Could not decode message archive block", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
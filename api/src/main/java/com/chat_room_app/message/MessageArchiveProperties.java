@@ -0,0 +1,26 @@
+package com.chat_room_app.message;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * When rooms count as cold and how the MessageArchiver packs them, bound from messages.archive.*
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "messages.archive")
+public class MessageArchiveProperties {
+
+    private boolean enabled = true;
+
+    // rooms without a message for this long are archived, only messages older than this are moved
+    private Duration idleAfter = Duration.ofDays(30);
+
+    private int blockSize = 500;
+
+    // rooms archived per run, the rest wait for the next run
+    private int roomsPerRun = 100;
+}
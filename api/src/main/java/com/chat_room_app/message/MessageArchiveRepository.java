@@ -0,0 +1,60 @@
+package com.chat_room_app.message;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface MessageArchiveRepository extends JpaRepository<MessageArchiveBlock, Long> {
+
+    /**
+     * Blocks starting before (beforeCreated, beforeBlockId), newest block first, keyset on both.
+     * Pass Long.MAX_VALUE as beforeBlockId to get every block starting at or before beforeCreated
+     * @param chatRoomId
+     * @param beforeCreated
+     * @param beforeBlockId
+     * @param pageable
+     * @return
+     */
+    @Query("SELECT b FROM MessageArchiveBlock b WHERE b.chatRoomId = :chatRoomId AND (b.firstCreated < :beforeCreated " +
+            "OR (b.firstCreated = :beforeCreated AND b.id < :beforeBlockId)) ORDER BY b.firstCreated DESC, b.id DESC")
+    List<MessageArchiveBlock> findBlocksBefore(@Param("chatRoomId") Long chatRoomId, @Param("beforeCreated") LocalDateTime beforeCreated,
+                                               @Param("beforeBlockId") Long beforeBlockId, Pageable pageable);
+
+    /**
+     * Blocks of the room whose id range covers the message, locked until the transaction ends so two edits
+     * cannot rewrite the same block at once
+     * @param chatRoomId
+     * @param messageId
+     * @return
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM MessageArchiveBlock b WHERE b.chatRoomId = :chatRoomId " +
+            "AND b.minMessageId <= :messageId AND b.maxMessageId >= :messageId")
+    List<MessageArchiveBlock> findBlocksSpanning(@Param("chatRoomId") Long chatRoomId, @Param("messageId") Long messageId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM MessageArchiveBlock b WHERE b.chatRoomId = :chatRoomId")
+    int deleteByChatRoomId(@Param("chatRoomId") Long chatRoomId);
+
+    /**
+     * Deletes up to batchSize of the room's blocks whose newest message is older than the cutoff
+     * @param chatRoomId
+     * @param cutoff
+     * @param batchSize
+     * @return blocks deleted
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM message_archive WHERE id IN (SELECT b.id FROM message_archive b " +
+            "WHERE b.chatroom_id = :chatRoomId AND b.last_created < :cutoff LIMIT :batchSize)", nativeQuery = true)
+    int deleteExpired(@Param("chatRoomId") Long chatRoomId, @Param("cutoff") LocalDateTime cutoff, @Param("batchSize") int batchSize);
+}
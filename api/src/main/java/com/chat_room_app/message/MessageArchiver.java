@@ -0,0 +1,184 @@
+package com.chat_room_app.message;
+
+import com.chat_room_app.exceptions.custom_exceptions.UnAuthorized401Exception;
+import com.chat_room_app.message.dtos.MessageDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.java.Log;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
+
+/**
+ * Moves the history of cold rooms out of the message table into compressed MessageArchiveBlocks.
+ * A room is cold once its newest message is older than messages.archive.idle-after, only messages older than that
+ * are moved so a room that wakes up mid run keeps its new messages hot. Every block is written and its messages
+ * deleted in one transaction, a failed run leaves each message either hot or archived, never both.
+ * Archived messages can still be edited or deleted by their sender, their block is rewritten in place
+ */
+@Log
+@Component
+public class MessageArchiver {
+
+    private final MessageRepository messageRepository;
+    private final MessageArchiveRepository messageArchiveRepository;
+    private final MessageArchiveProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter archivedCounter;
+    private final Counter blockCounter;
+    private final Counter payloadBytesCounter;
+
+    public MessageArchiver(MessageRepository messageRepository, MessageArchiveRepository messageArchiveRepository,
+                           MessageArchiveProperties properties,
+                           PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.messageRepository = messageRepository;
+        this.messageArchiveRepository = messageArchiveRepository;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.archivedCounter = Counter.builder("messages.archive.archived")
+                .description("Messages moved from the message table into archive blocks")
+                .register(meterRegistry);
+        this.blockCounter = Counter.builder("messages.archive.blocks")
+                .description("Archive blocks written")
+                .register(meterRegistry);
+        this.payloadBytesCounter = Counter.builder("messages.archive.payload")
+                .description("Compressed bytes written to archive blocks")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${messages.archive.initial-delay:PT10M}",
+            fixedDelayString = "${messages.archive.interval:PT6H}")
+    public void archiveColdRooms() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long start = System.nanoTime();
+        LocalDateTime cutoff = LocalDateTime.now().minus(properties.getIdleAfter());
+        List<Long> chatRoomIds = messageRepository.findIdleChatRoomIds(cutoff, PageRequest.ofSize(properties.getRoomsPerRun()));
+        long archived = 0;
+        for (Long chatRoomId : chatRoomIds) {
+            archived += archiveRoom(chatRoomId, cutoff);
+        }
+        if (archived > 0) {
+            log.info("Archived " + archived + " messages of " + chatRoomIds.size() + " cold rooms in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+    }
+
+    /**
+     * Archives the room's messages created before the cutoff, one block at a time
+     * @param chatRoomId
+     * @param cutoff
+     * @return messages archived
+     */
+    public long archiveRoom(Long chatRoomId, LocalDateTime cutoff) {
+        long archived = 0;
+        int packed;
+        do {
+            Integer blockCount = transactionTemplate.execute(status -> archiveBlock(chatRoomId, cutoff));
+            packed = blockCount == null ? 0 : blockCount;
+            archived += packed;
+        } while (packed == properties.getBlockSize());
+        return archived;
+    }
+
+    private int archiveBlock(Long chatRoomId, LocalDateTime cutoff) {
+        List<Message> messages = messageRepository.findArchivable(chatRoomId, cutoff, PageRequest.ofSize(properties.getBlockSize()));
+        if (messages.isEmpty()) {
+            return 0;
+        }
+        MessageArchiveBlock block = new MessageArchiveBlock();
+        block.setChatRoomId(chatRoomId);
+        fill(block, messages.stream().map(ArchivedMessage::of).toList());
+        messageArchiveRepository.save(block);
+        messageRepository.deleteAllByIdInBatch(messages.stream().map(Message::getId).toList());
+
+        archivedCounter.increment(messages.size());
+        blockCounter.increment();
+        payloadBytesCounter.increment(block.getPayload().length);
+        return messages.size();
+    }
+
+    /**
+     * Changes the content of an archived message, only its sender can
+     * @param chatRoomId
+     * @param messageId
+     * @param username
+     * @param newContent
+     * @return the edited message, empty when the room has no archived message with that id
+     */
+    public Optional<MessageDto> editArchived(Long chatRoomId, Long messageId, String username, String newContent) {
+        return rewriteArchived(chatRoomId, messageId, username, message -> message.withContent(newContent))
+                .map(ArchivedMessage::toMessageDto);
+    }
+
+    /**
+     * Deletes an archived message, only its sender can. A block left empty is deleted with it
+     * @param chatRoomId
+     * @param messageId
+     * @param username
+     * @return false when the room has no archived message with that id
+     */
+    public boolean deleteArchived(Long chatRoomId, Long messageId, String username) {
+        return rewriteArchived(chatRoomId, messageId, username, message -> null).isPresent();
+    }
+
+    /*
+     * change returns the new message, or null to drop it. Returns the changed message, or the dropped one
+     */
+    private Optional<ArchivedMessage> rewriteArchived(Long chatRoomId, Long messageId, String username,
+                                                      UnaryOperator<ArchivedMessage> change) {
+        return Optional.ofNullable(transactionTemplate.execute(status -> {
+            for (MessageArchiveBlock block : messageArchiveRepository.findBlocksSpanning(chatRoomId, messageId)) {
+                List<ArchivedMessage> messages = new ArrayList<>(MessageArchiveCodec.decode(block.getPayload()));
+                for (int i = 0; i < messages.size(); i++) {
+                    ArchivedMessage message = messages.get(i);
+                    if (!message.id().equals(messageId)) {
+                        continue;
+                    }
+                    if (!message.sender().equals(username)) {
+                        log.warning("Unauthorized user " + username + " attempted to change an archived message not their own");
+                        throw new UnAuthorized401Exception("User is not the original author of message: " + username);
+                    }
+                    ArchivedMessage changed = change.apply(message);
+                    if (changed == null) {
+                        messages.remove(i);
+                    }
+                    else {
+                        messages.set(i, changed);
+                    }
+                    if (messages.isEmpty()) {
+                        messageArchiveRepository.delete(block);
+                    }
+                    else {
+                        fill(block, messages);
+                        messageArchiveRepository.save(block);
+                    }
+                    return changed == null ? message : changed;
+                }
+            }
+            return null;
+        }));
+    }
+
+    /*
+     * messages are in (created, id) order
+     */
+    private static void fill(MessageArchiveBlock block, List<ArchivedMessage> messages) {
+        block.setMinMessageId(messages.stream().mapToLong(ArchivedMessage::id).min().orElseThrow());
+        block.setMaxMessageId(messages.stream().mapToLong(ArchivedMessage::id).max().orElseThrow());
+        block.setFirstCreated(messages.getFirst().created());
+        block.setLastCreated(messages.getLast().created());
+        block.setMessageCount(messages.size());
+        block.setPayload(MessageArchiveCodec.encode(messages));
+    }
+}
@@ -28,7 +28,7 @@ public class MessageController {
     @MessageMapping("/chat.deleteMessage")
     public void deleteMessage(DeleteMessageDto request, Principal principal) {
         String username = principal.getName();
-        messageService.deleteMessage(request.messageId(), username);
+        messageService.deleteMessage(request.messageId(), request.chatRoomId(), username);
     }
 
     @MessageMapping("/chat.editMessage")
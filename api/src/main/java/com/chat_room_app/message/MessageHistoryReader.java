@@ -0,0 +1,125 @@
+package com.chat_room_app.message;
+
+import com.chat_room_app.exceptions.custom_exceptions.BadRequest400Exception;
+import com.chat_room_app.message.dtos.MessageDto;
+import com.chat_room_app.message.dtos.MessageHistoryPageDto;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads a room's history newest first, ordered by (created, id), from the message table and then from its
+ * archive blocks. The archiver only moves a room's messages older than everything left in the table,
+ * so a page simply continues into the blocks once the table runs out.
+ * Does not check membership, callers do
+ */
+@Component
+public class MessageHistoryReader {
+
+    private static final int ARCHIVE_BLOCKS_PER_READ = 2;
+    private static final LocalDateTime FIRST_PAGE_CREATED = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    private final MessageRepository messageRepository;
+    private final MessageArchiveRepository messageArchiveRepository;
+
+    public MessageHistoryReader(MessageRepository messageRepository, MessageArchiveRepository messageArchiveRepository) {
+        this.messageRepository = messageRepository;
+        this.messageArchiveRepository = messageArchiveRepository;
+    }
+
+    /**
+     * A page of the room's messages before the cursor, newest first
+     * @param chatRoomId
+     * @param cursor nextCursor of the previous page, null for the newest messages
+     * @param limit
+     * @return
+     */
+    @Transactional(readOnly = true)
+    public MessageHistoryPageDto readPage(Long chatRoomId, String cursor, int limit) {
+        LocalDateTime beforeCreated = FIRST_PAGE_CREATED;
+        long beforeId = Long.MAX_VALUE;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+                beforeCreated = LocalDateTime.parse(parts[0]);
+                beforeId = Long.parseLong(parts[1]);
+            }
+            catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+                throw new BadRequest400Exception("Invalid cursor: " + cursor);
+            }
+        }
+
+        List<MessageDto> messages = new ArrayList<>(limit);
+        ArchivedMessage last = null;
+        for (Message message : messageRepository.findHistoryBefore(chatRoomId, beforeCreated, beforeId, PageRequest.ofSize(limit))) {
+            last = ArchivedMessage.of(message);
+            messages.add(last.toMessageDto());
+        }
+        if (messages.size() < limit) {
+            for (ArchivedMessage message : readArchive(chatRoomId, beforeCreated, beforeId, limit - messages.size())) {
+                last = message;
+                messages.add(message.toMessageDto());
+            }
+        }
+        String nextCursor = null;
+        if (messages.size() == limit) {
+            String raw = last.created() + "|" + last.id();
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+        return new MessageHistoryPageDto(messages, nextCursor);
+    }
+
+    /**
+     * The room's newest messages oldest first, the way the room view lists them.
+     * Older history is read with readPage from the nextCursor, archive blocks are only decompressed when the
+     * room has fewer hot messages than the limit
+     * @param chatRoomId
+     * @param limit
+     * @return
+     */
+    @Transactional(readOnly = true)
+    public MessageHistoryPageDto readLatest(Long chatRoomId, int limit) {
+        MessageHistoryPageDto page = readPage(chatRoomId, null, limit);
+        List<MessageDto> messages = new ArrayList<>(page.messages());
+        Collections.reverse(messages);
+        return new MessageHistoryPageDto(messages, page.nextCursor());
+    }
+
+    /*
+     * blocks come newest first, each one is only decompressed when the page still needs messages
+     */
+    private List<ArchivedMessage> readArchive(Long chatRoomId, LocalDateTime beforeCreated, long beforeId, int limit) {
+        List<ArchivedMessage> archived = new ArrayList<>();
+        LocalDateTime blocksBeforeCreated = beforeCreated;
+        long blocksBeforeId = Long.MAX_VALUE;
+        while (archived.size() < limit) {
+            List<MessageArchiveBlock> blocks = messageArchiveRepository.findBlocksBefore(chatRoomId, blocksBeforeCreated,
+                    blocksBeforeId, PageRequest.ofSize(ARCHIVE_BLOCKS_PER_READ));
+            if (blocks.isEmpty()) {
+                break;
+            }
+            for (MessageArchiveBlock block : blocks) {
+                List<ArchivedMessage> blockMessages = MessageArchiveCodec.decode(block.getPayload());
+                for (int i = blockMessages.size() - 1; i >= 0 && archived.size() < limit; i--) {
+                    if (blockMessages.get(i).isBefore(beforeCreated, beforeId)) {
+                        archived.add(blockMessages.get(i));
+                    }
+                }
+                blocksBeforeCreated = block.getFirstCreated();
+                blocksBeforeId = block.getId();
+                if (archived.size() >= limit) {
+                    break;
+                }
+            }
+        }
+        return archived;
+    }
+}
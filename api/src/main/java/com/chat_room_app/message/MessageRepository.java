@@ -1,10 +1,64 @@
 package com.chat_room_app.message;
 
 import com.chat_room_app.chatroom.ChatRoom;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface MessageRepository extends JpaRepository<Message, Long> {
     List<Message> findAllByChatRoom(ChatRoom chatRoom);
+
+    /**
+     * A page of the room's messages before (beforeCreated, beforeId), newest first, keyset on both
+     * through idx_message_chatroom_created. Ids alone do not follow creation order, they are handed out in pooled
+     * ranges per instance
+     * @param chatRoomId
+     * @param beforeCreated
+     * @param beforeId
+     * @param pageable
+     * @return
+     */
+    @Query("SELECT m FROM Message m WHERE m.chatRoom.id = :chatRoomId AND (m.created < :beforeCreated " +
+            "OR (m.created = :beforeCreated AND m.id < :beforeId)) ORDER BY m.created DESC, m.id DESC")
+    List<Message> findHistoryBefore(@Param("chatRoomId") Long chatRoomId, @Param("beforeCreated") LocalDateTime beforeCreated,
+                                    @Param("beforeId") Long beforeId, Pageable pageable);
+
+    /**
+     * Rooms whose newest message is older than the cutoff
+     * @param cutoff
+     * @param pageable
+     * @return
+     */
+    @Query("SELECT m.chatRoom.id FROM Message m GROUP BY m.chatRoom.id HAVING MAX(m.created) < :cutoff ORDER BY m.chatRoom.id")
+    List<Long> findIdleChatRoomIds(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    /**
+     * The room's oldest messages created before the cutoff, oldest first
+     * @param chatRoomId
+     * @param cutoff
+     * @param pageable
+     * @return
+     */
+    @Query("SELECT m FROM Message m WHERE m.chatRoom.id = :chatRoomId AND m.created < :cutoff ORDER BY m.created, m.id")
+    List<Message> findArchivable(@Param("chatRoomId") Long chatRoomId, @Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    /**
+     * Deletes up to batchSize of the room's messages older than the cutoff, oldest first
+     * through idx_message_chatroom_created
+     * @param chatRoomId
+     * @param cutoff
+     * @param batchSize
+     * @return rows deleted
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM message WHERE id IN (SELECT m.id FROM message m " +
+            "WHERE m.chatroom_id = :chatRoomId AND m.created < :cutoff ORDER BY m.created LIMIT :batchSize)", nativeQuery = true)
+    int deleteExpired(@Param("chatRoomId") Long chatRoomId, @Param("cutoff") LocalDateTime cutoff, @Param("batchSize") int batchSize);
 }
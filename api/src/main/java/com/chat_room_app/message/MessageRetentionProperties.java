@@ -0,0 +1,31 @@
+package com.chat_room_app.message;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * How long messages are kept and how the MessageRetentionPurger deletes them, bound from messages.retention.*.
+ * Rooms can keep their messages for a different number of days, see ChatRoom.retentionDays
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "messages.retention")
+public class MessageRetentionProperties {
+
+    // deleting history is opt-in
+    private boolean enabled = false;
+
+    // rooms without their own retention keep messages this long
+    private Duration defaultRetention = Duration.ofDays(365);
+
+    private int maxRetentionDays = 3650;
+
+    // rows per delete statement, every batch is its own short transaction
+    private int batchSize = 1_000;
+
+    // pause between batches so the purge does not starve writers of the message table
+    private Duration batchPause = Duration.ofMillis(50);
+}
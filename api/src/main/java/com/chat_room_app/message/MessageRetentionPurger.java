@@ -0,0 +1,111 @@
+package com.chat_room_app.message;
+
+import com.chat_room_app.chatroom.ChatRoomRepository;
+import com.chat_room_app.chatroom.dtos.ChatRoomRetentionDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.java.Log;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+/**
+ * Deletes messages that are past their room's retention, oldest first, in small batches that each commit on their own
+ * so no lock on the message table is held for long. Rooms are purged one at a time with their own cutoff,
+ * each delete is a range of idx_message_chatroom_created, so rows kept by a longer retention are never scanned again.
+ * Archive blocks go once their newest message is past the retention.
+ * Off unless messages.retention.enabled is set, deleting history is left to the operator to turn on
+ */
+@Log
+@Component
+public class MessageRetentionPurger {
+
+    private static final int ROOM_PAGE_SIZE = 1_000;
+
+    private final MessageRepository messageRepository;
+    private final MessageArchiveRepository messageArchiveRepository;
+    private final ChatRoomRepository chatRoomRepository;
+    private final MessageRetentionProperties properties;
+    private final Counter purgedCounter;
+    private final Counter purgedBlocksCounter;
+
+    public MessageRetentionPurger(MessageRepository messageRepository, MessageArchiveRepository messageArchiveRepository,
+                                  ChatRoomRepository chatRoomRepository, MessageRetentionProperties properties,
+                                  MeterRegistry meterRegistry) {
+        this.messageRepository = messageRepository;
+        this.messageArchiveRepository = messageArchiveRepository;
+        this.chatRoomRepository = chatRoomRepository;
+        this.properties = properties;
+        this.purgedCounter = Counter.builder("messages.retention.purged")
+                .description("Messages deleted for being past their room's retention")
+                .register(meterRegistry);
+        this.purgedBlocksCounter = Counter.builder("messages.retention.purged.blocks")
+                .description("Archive blocks deleted for being past their room's retention")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${messages.retention.initial-delay:PT5M}",
+            fixedDelayString = "${messages.retention.purge-interval:PT1H}")
+    public void purge() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long start = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        int batchSize = properties.getBatchSize();
+        LocalDateTime defaultCutoff = now.minus(properties.getDefaultRetention());
+
+        long purged = 0;
+        long purgedBlocks = 0;
+        long lastChatRoomId = Long.MIN_VALUE;
+        List<ChatRoomRetentionDto> rooms;
+        do {
+            rooms = chatRoomRepository.findRetentionsAfter(lastChatRoomId, PageRequest.ofSize(ROOM_PAGE_SIZE));
+            for (ChatRoomRetentionDto room : rooms) {
+                Long chatRoomId = room.chatRoomId();
+                LocalDateTime cutoff = room.retentionDays() == null ? defaultCutoff : now.minusDays(room.retentionDays());
+                purged += purgeInBatches(purgedCounter, () -> messageRepository.deleteExpired(chatRoomId, cutoff, batchSize));
+                purgedBlocks += purgeInBatches(purgedBlocksCounter,
+                        () -> messageArchiveRepository.deleteExpired(chatRoomId, cutoff, batchSize));
+                lastChatRoomId = chatRoomId;
+            }
+        } while (rooms.size() == ROOM_PAGE_SIZE);
+        if (purgedBlocks > 0) {
+            log.info("Purged " + purgedBlocks + " expired archive blocks");
+        }
+
+        if (purged > 0) {
+            log.info("Purged " + purged + " expired messages in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+    }
+
+    private long purgeInBatches(Counter counter, IntSupplier deleteBatch) {
+        long purged = 0;
+        int deleted;
+        do {
+            deleted = deleteBatch.getAsInt();
+            purged += deleted;
+            counter.increment(deleted);
+        } while (deleted == properties.getBatchSize() && pause(properties.getBatchPause()));
+        return purged;
+    }
+
+    private static boolean pause(Duration pause) {
+        if (pause.isZero()) {
+            return true;
+        }
+        try {
+            Thread.sleep(pause);
+            return true;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
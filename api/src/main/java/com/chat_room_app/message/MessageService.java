@@ -2,27 +2,41 @@ package com.chat_room_app.message;
 
 import com.chat_room_app.chatroom.ChatRoom;
 import com.chat_room_app.chatroom.ChatRoomService;
+import com.chat_room_app.chatroom.RoomBlockIndex;
 import com.chat_room_app.exceptions.custom_exceptions.NotFound404Exception;
 import com.chat_room_app.exceptions.custom_exceptions.UnAuthorized401Exception;
 import com.chat_room_app.message.dtos.MessageDto;
+import com.chat_room_app.message.dtos.MessageHistoryPageDto;
 import com.chat_room_app.message.dtos.NewMessageDto;
 import com.chat_room_app.message.dtos.UpdateMessageDto;
+import com.chat_room_app.web_socket.BlockedRecipientFilter;
 import lombok.extern.java.Log;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.Optional;
+
 @Service
 @Log
 public class MessageService {
 
+    private static final int MAX_HISTORY_LIMIT = 100;
+
     private final MessageRepository messageRepository;
+    private final MessageHistoryReader messageHistoryReader;
+    private final MessageArchiver messageArchiver;
     private final SimpMessagingTemplate messagingTemplate;
     private final ChatRoomService chatRoomService;
+    private final RoomBlockIndex roomBlockIndex;
 
-    public MessageService(MessageRepository messageRepository, SimpMessagingTemplate messagingTemplate, ChatRoomService chatRoomService) {
+    public MessageService(MessageRepository messageRepository, MessageHistoryReader messageHistoryReader, MessageArchiver messageArchiver,
+                          SimpMessagingTemplate messagingTemplate, ChatRoomService chatRoomService, RoomBlockIndex roomBlockIndex) {
         this.messageRepository = messageRepository;
+        this.messageHistoryReader = messageHistoryReader;
+        this.messageArchiver = messageArchiver;
         this.messagingTemplate = messagingTemplate;
         this.chatRoomService = chatRoomService;
+        this.roomBlockIndex = roomBlockIndex;
     }
 
     public void sendMessage(NewMessageDto request, String username) {
@@ -38,30 +52,71 @@ public class MessageService {
         message.setSender(username);
         Message savedMessage = messageRepository.save(message);
         log.info("New message created: " + savedMessage.getId());
+        chatRoomService.evictLatestMessages(request.chatRoomId());
         MessageDto dto = toMessageDto(savedMessage);
-        // Send to a dynamic topic based on chatId
+        // Send to a dynamic topic based on chatId, members blocking the sender are skipped by the BlockedRecipientFilter
         messagingTemplate.convertAndSend(
                 "/topic/chat." + request.chatRoomId(),
-                dto
+                dto,
+                BlockedRecipientFilter.skipping(roomBlockIndex.getRecipientsBlocking(request.chatRoomId(), username))
         );
     }
 
-    public void deleteMessage(Long messageId, String username) {
-        Message message = getMessageById(messageId);
+    /**
+     * Deletes the message, only its sender can. A message no longer in the message table is looked up in the
+     * archive of the room it was sent in
+     * @param messageId
+     * @param chatRoomId room of the message, only needed for archived messages
+     * @param username
+     */
+    public void deleteMessage(Long messageId, Long chatRoomId, String username) {
+        Optional<Message> stored = messageRepository.findById(messageId);
+        if (stored.isEmpty()) {
+            if (chatRoomId == null || !messageArchiver.deleteArchived(chatRoomId, messageId, username)) {
+                throw new NotFound404Exception("Message not found with id: " + messageId);
+            }
+            log.info("Archived message deleted: " + messageId);
+            chatRoomService.evictLatestMessages(chatRoomId);
+            messagingTemplate.convertAndSend("/topic/chat." + chatRoomId + ".delete", messageId);
+            return;
+        }
+        Message message = stored.get();
         if (!message.getSender().equals(username)) {
             log.warning("Message does not belong to user: " + username);
             throw new UnAuthorized401Exception("User is not the original author of message: " + username);
         }
         messageRepository.delete(message);
         log.info("Message deleted: " + messageId);
+        chatRoomService.evictLatestMessages(message.getChatRoom().getId());
         messagingTemplate.convertAndSend(
                 "/topic/chat." + message.getChatRoom().getId() + ".delete",
                 messageId
         );
     }
 
+    /**
+     * Changes the content of the message, only its sender can. A message no longer in the message table is
+     * looked up in the archive of the room it was sent in
+     * @param request chatRoomId is only needed for archived messages
+     * @param username
+     */
     public void editMessage(UpdateMessageDto request, String username) {
-        Message message = getMessageById(request.messageId());
+        Optional<Message> stored = messageRepository.findById(request.messageId());
+        if (stored.isEmpty()) {
+            Long chatRoomId = request.chatRoomId();
+            MessageDto dto = Optional.ofNullable(chatRoomId)
+                    .flatMap(id -> messageArchiver.editArchived(id, request.messageId(), username, request.newContent()))
+                    .orElseThrow(() -> new NotFound404Exception("Message not found with id: " + request.messageId()));
+            log.info("Archived message updated: " + request.messageId());
+            chatRoomService.evictLatestMessages(chatRoomId);
+            messagingTemplate.convertAndSend(
+                    "/topic/chat." + chatRoomId + ".edit",
+                    dto,
+                    BlockedRecipientFilter.skipping(roomBlockIndex.getRecipientsBlocking(chatRoomId, username))
+            );
+            return;
+        }
+        Message message = stored.get();
         if (!message.getSender().equals(username)) {
             log.warning("Unauthorized user " + username + " attempted to delete a message not their own");
             throw new UnAuthorized401Exception("User is not the original author of message: " + username);
@@ -70,14 +125,36 @@ public class MessageService {
         MessageDto dto = toMessageDto(message);
         messageRepository.save(message);
         log.info("Message updated: " + request.messageId());
+        chatRoomService.evictLatestMessages(message.getChatRoom().getId());
         messagingTemplate.convertAndSend(
                 "/topic/chat." + message.getChatRoom().getId() + ".edit",
-                dto
+                dto,
+                BlockedRecipientFilter.skipping(roomBlockIndex.getRecipientsBlocking(message.getChatRoom().getId(), username))
         );
     }
 
-    // Helper method
-    private MessageDto toMessageDto(Message message) {
+    /**
+     * A page of the room's messages older than the cursor, newest first, ordered by (created, id).
+     * Once the message table runs out the page continues from the archive blocks of the room,
+     * so scrolling back past archived history looks the same to the client
+     * @param chatRoomId
+     * @param username
+     * @param cursor nextCursor of the previous page, null for the newest messages
+     * @param limit capped at 100
+     * @return
+     */
+    public MessageHistoryPageDto getHistory(Long chatRoomId, String username, String cursor, int limit) {
+        if (!chatRoomService.isAMember(username, chatRoomId)) {
+            log.warning("Unauthorized user " + username + " attempted to read the history of ChatRoom " + chatRoomId);
+            throw new UnAuthorized401Exception("User is not part of a chat: " + username);
+        }
+        int boundedLimit = Math.min(Math.max(limit, 1), MAX_HISTORY_LIMIT);
+        return messageHistoryReader.readPage(chatRoomId, cursor, boundedLimit);
+    }
+
+    // Helper methods
+
+    static MessageDto toMessageDto(Message message) {
         String time = message.getCreated().toLocalTime().toString();
         return new MessageDto(
                 message.getId(),
@@ -86,9 +163,4 @@ public class MessageService {
                 time
         );
     }
-
-    private Message getMessageById(Long messageId) {
-        return messageRepository.findById(messageId)
-                .orElseThrow(() -> new NotFound404Exception("Message not found with id: " + messageId));
-    }
 }
@@ -1,4 +1,4 @@
 package com.chat_room_app.message.dtos;
 
-public record DeleteMessageDto(Long messageId) {
+public record DeleteMessageDto(Long messageId, Long chatRoomId) {
 }
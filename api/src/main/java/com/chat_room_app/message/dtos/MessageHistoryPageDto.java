@@ -0,0 +1,6 @@
+package com.chat_room_app.message.dtos;
+
+import java.util.List;
+
+public record MessageHistoryPageDto(List<MessageDto> messages, String nextCursor) {
+}
@@ -1,4 +1,4 @@
 package com.chat_room_app.message.dtos;
 
-public record UpdateMessageDto(Long messageId, String newContent) {
+public record UpdateMessageDto(Long messageId, String newContent, Long chatRoomId) {
 }
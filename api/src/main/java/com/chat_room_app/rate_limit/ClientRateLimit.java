@@ -0,0 +1,19 @@
+package com.chat_room_app.rate_limit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Limits how often a single client can call the annotated endpoint,
+ * limits for the route are configured under rate-limit.routes.{route}
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ClientRateLimit {
+
+    String route() default RateLimitProperties.DEFAULT_ROUTE;
+
+    RateLimitKey key() default RateLimitKey.IP;
+}
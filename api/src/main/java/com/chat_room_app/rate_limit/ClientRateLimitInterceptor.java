@@ -0,0 +1,68 @@
+package com.chat_room_app.rate_limit;
+
+import com.chat_room_app.exceptions.custom_exceptions.TooManyRequests429Exception;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies @ClientRateLimit to controller methods, rejected calls get a 429 with a Retry-After header
+ */
+@Component
+public class ClientRateLimitInterceptor implements HandlerInterceptor {
+
+    private final ClientRateLimiterRegistry clientRateLimiterRegistry;
+    private final RateLimitProperties properties;
+
+    public ClientRateLimitInterceptor(ClientRateLimiterRegistry clientRateLimiterRegistry, RateLimitProperties properties) {
+        this.clientRateLimiterRegistry = clientRateLimiterRegistry;
+        this.properties = properties;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+        ClientRateLimit rateLimit = handlerMethod.getMethodAnnotation(ClientRateLimit.class);
+        if (rateLimit == null) {
+            return true;
+        }
+        long waitNanos = clientRateLimiterRegistry.acquire(rateLimit.route(), resolveClientKey(request, rateLimit.key()));
+        if (waitNanos > 0) {
+            long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            throw new TooManyRequests429Exception("Too many requests, try again in " + retryAfterSeconds + " seconds");
+        }
+        return true;
+    }
+
+    private String resolveClientKey(HttpServletRequest request, RateLimitKey key) {
+        if (key == RateLimitKey.USER) {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication != null && authentication.isAuthenticated() && !(authentication instanceof AnonymousAuthenticationToken)) {
+                return "user:" + authentication.getName();
+            }
+        }
+        return "ip:" + resolveClientIp(request);
+    }
+
+    private String resolveClientIp(HttpServletRequest request) {
+        if (properties.isTrustForwardedFor()) {
+            String forwardedFor = request.getHeader("X-Forwarded-For");
+            if (forwardedFor != null && !forwardedFor.isBlank()) {
+                int comma = forwardedFor.indexOf(',');
+                return (comma < 0 ? forwardedFor : forwardedFor.substring(0, comma)).trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+}
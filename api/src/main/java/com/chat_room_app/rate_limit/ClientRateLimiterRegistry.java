@@ -0,0 +1,58 @@
+package com.chat_room_app.rate_limit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds one TokenBucketRateLimiter per configured route, built lazily from RateLimitProperties.
+ * Rejections are counted per route in rate.limit.rejected rather than logged, a client hammering a route would
+ * otherwise flood the log
+ */
+@Component
+public class ClientRateLimiterRegistry {
+
+    private final RateLimitProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, TokenBucketRateLimiter> limiters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> rejectedCounters = new ConcurrentHashMap<>();
+
+    public ClientRateLimiterRegistry(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Takes a token from the client's bucket for the route
+     * @return 0 if the call is allowed, otherwise the nanos until the client may try again
+     */
+    public long acquire(String route, String clientKey) {
+        if (!properties.isEnabled()) {
+            return 0;
+        }
+        String resolvedRoute = hasRoute(route) ? route : RateLimitProperties.DEFAULT_ROUTE;
+        long waitNanos = limiters.computeIfAbsent(resolvedRoute, this::createLimiter).acquire(clientKey);
+        if (waitNanos > 0) {
+            rejectedCounters.computeIfAbsent(resolvedRoute, name -> Counter.builder("rate.limit.rejected")
+                    .tag("route", name)
+                    .register(meterRegistry)).increment();
+        }
+        return waitNanos;
+    }
+
+    public boolean hasRoute(String route) {
+        return properties.getRoutes().containsKey(route);
+    }
+
+    private TokenBucketRateLimiter createLimiter(String route) {
+        RateLimitProperties.Route limits = properties.getRoutes().getOrDefault(route, new RateLimitProperties.Route());
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(limits.getCapacity(), limits.getRefillPeriod().toNanos(),
+                properties.getIdleTimeout().toNanos(), properties.getMaxKeys());
+        meterRegistry.gauge("rate.limit.keys", Tags.of("route", route), limiter, TokenBucketRateLimiter::size);
+        return limiter;
+    }
+}
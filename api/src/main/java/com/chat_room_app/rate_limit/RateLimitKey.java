@@ -0,0 +1,9 @@
+package com.chat_room_app.rate_limit;
+
+/**
+ * What identifies a client for rate limiting
+ * USER falls back to the client's IP when the request is anonymous
+ */
+public enum RateLimitKey {
+    IP, USER
+}
@@ -0,0 +1,38 @@
+package com.chat_room_app.rate_limit;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-route limits for the per-client rate limiter, bound from rate-limit.* properties.
+ * Routes that are not configured fall back to the "default" route
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+
+    public static final String DEFAULT_ROUTE = "default";
+
+    private boolean enabled = true;
+
+    // only turn on when the api sits behind a proxy that sets X-Forwarded-For
+    private boolean trustForwardedFor = false;
+
+    private int maxKeys = 1_000_000;
+
+    private Duration idleTimeout = Duration.ofMinutes(10);
+
+    private Map<String, Route> routes = new HashMap<>();
+
+    @Data
+    public static class Route {
+        private int capacity = 20;
+        private Duration refillPeriod = Duration.ofMinutes(1);
+    }
+}
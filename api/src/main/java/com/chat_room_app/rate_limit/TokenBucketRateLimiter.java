@@ -0,0 +1,82 @@
+package com.chat_room_app.rate_limit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Per-key token bucket, implemented as GCRA so each bucket is a single long (its "theoretical arrival time")
+ * updated with a CAS, no locks on the hot path.
+ * Buckets live in a Caffeine cache bounded at maxKeys: a bucket untouched for the idle timeout is full again and
+ * expires, and past the bound Caffeine evicts in amortised O(1), so a flood of new keys costs the same per call as
+ * normal traffic. Its frequency sketch keeps the buckets of busy clients over one-off keys, and dropping a bucket
+ * only ever hands that client a fresh one, no client is throttled for another's traffic
+ */
+public class TokenBucketRateLimiter {
+
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final Cache<String, Bucket> buckets;
+
+    /**
+     * @param capacity max burst, a client can make this many calls back to back
+     * @param refillPeriodNanos time it takes an empty bucket to refill completely
+     */
+    public TokenBucketRateLimiter(int capacity, long refillPeriodNanos, long idleTimeoutNanos, int maxKeys) {
+        if (capacity <= 0 || refillPeriodNanos <= 0) {
+            throw new IllegalArgumentException("capacity and refill period must be positive");
+        }
+        this.emissionIntervalNanos = Math.max(1, refillPeriodNanos / capacity);
+        this.burstToleranceNanos = emissionIntervalNanos * capacity;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(Math.max(1, maxKeys))
+                .expireAfterAccess(Duration.ofNanos(Math.max(idleTimeoutNanos, refillPeriodNanos)))
+                .build();
+    }
+
+    /**
+     * Takes a token for the key
+     * @return 0 if the call is allowed, otherwise the nanos until the next token frees up
+     */
+    public long acquire(String key) {
+        long now = System.nanoTime();
+        Bucket bucket = buckets.getIfPresent(key);
+        if (bucket == null) {
+            bucket = buckets.get(key, k -> new Bucket(now - burstToleranceNanos));
+        }
+        return bucket.tryTake(now, emissionIntervalNanos, burstToleranceNanos);
+    }
+
+    public long size() {
+        buckets.cleanUp();
+        return buckets.estimatedSize();
+    }
+
+    private static final class Bucket {
+        private static final AtomicLongFieldUpdater<Bucket> TAT =
+                AtomicLongFieldUpdater.newUpdater(Bucket.class, "tat");
+
+        private volatile long tat;
+
+        private Bucket(long tat) {
+            this.tat = tat;
+        }
+
+        private long tryTake(long now, long emissionIntervalNanos, long burstToleranceNanos) {
+            while (true) {
+                long current = tat;
+                long start = now - current > 0 ? now : current;
+                long next = start + emissionIntervalNanos;
+                long wait = next - now - burstToleranceNanos;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (TAT.compareAndSet(this, current, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.chat_room_app.users;
+
+import com.chat_room_app.datasource.AfterCommit;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A counter per user that is part of every cached profile key, a profile only changes when one of its two users
+ * gains or loses a friend, a block or a room, so bumping both users' counters makes exactly the profiles
+ * that show them unreachable while everyone else's stay cached. Unreachable entries age out of the cache.
+ * Counters are kept for deleted users too, a reset counter would bring their old profiles back
+ */
+@Component
+public class ProfileVersions {
+
+    private final Map<Long, Long> versions = new ConcurrentHashMap<>();
+
+    public long of(Long userId) {
+        return versions.getOrDefault(userId, 0L);
+    }
+
+    /**
+     * Bumps the users once the surrounding transaction commits
+     */
+    public void bump(Long... userIds) {
+        bump(List.of(userIds));
+    }
+
+    /**
+     * Bumps the users once the surrounding transaction commits
+     */
+    public void bump(List<Long> userIds) {
+        AfterCommit.run(() -> userIds.forEach(userId -> versions.merge(userId, 1L, Long::sum)));
+    }
+}
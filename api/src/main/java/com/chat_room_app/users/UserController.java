@@ -4,6 +4,7 @@ import com.chat_room_app.jwt.JwtUtils;
 import com.chat_room_app.users.dtos.QueriedUserDto;
 import com.chat_room_app.users.dtos.UserDto;
 import com.chat_room_app.users.dtos.UserProfileDto;
+import com.chat_room_app.users.dtos.UserSearchPageDto;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -13,6 +14,8 @@ import java.util.List;
 @RequestMapping("/api/v1/users")
 public class UserController {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final UserService userService;
 
     public UserController(UserService userService) {
@@ -41,11 +44,28 @@ public class UserController {
         return ResponseEntity.ok(dto);
     }
 
+    /**
+     * Searches usernames, when there are more results the cursor for the next page is sent in the X-Next-Cursor header
+     */
     @GetMapping("/query")
-    public ResponseEntity<List<QueriedUserDto>> queryUsers(@RequestParam String query) {
+    public ResponseEntity<List<QueriedUserDto>> queryUsers(@RequestParam String query,
+                                                           @RequestParam(defaultValue = "20") int limit,
+                                                           @RequestParam(required = false) String cursor) {
         String username = JwtUtils.getCurrentUserUsername();
-        List<QueriedUserDto> dto = userService.queryUsers(query, username);
-        return ResponseEntity.ok(dto);
+        UserSearchPageDto page = userService.queryUsers(query, username, limit, cursor);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.users());
+    }
+
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<QueriedUserDto>> autocompleteUsernames(@RequestParam String prefix,
+                                                                      @RequestParam(defaultValue = "10") int limit) {
+        String username = JwtUtils.getCurrentUserUsername();
+        List<QueriedUserDto> users = userService.autocompleteUsernames(prefix, username, limit);
+        return ResponseEntity.ok(users);
     }
     
 }
@@ -0,0 +1,11 @@
+package com.chat_room_app.users;
+
+import java.util.Optional;
+
+/**
+ * Username lookups through Hibernate's natural id API, which the second level cache can answer
+ * without SQL, unlike a derived query
+ */
+public interface UserNaturalIdRepository {
+    Optional<User> findByUsername(String username);
+}
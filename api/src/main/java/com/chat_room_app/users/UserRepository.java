@@ -1,26 +1,43 @@
 package com.chat_room_app.users;
 
+import com.chat_room_app.users.dtos.QueriedUserDto;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface UserRepository extends JpaRepository<User, Long> {
-    Optional<User> findByUsername(String username);
+public interface UserRepository extends JpaRepository<User, Long>, UserNaturalIdRepository {
+
+    /*
+     * Hibernate allows one natural id per entity and that is the username, email lookups go through the query cache,
+     * which is dropped whenever the users table changes
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<User> findByEmail(String email);
+
     List<User> findAllByUsernameIn(Collection<String> usernames);
     void deleteByUsername(String username);
 
+    @Query("SELECT new com.chat_room_app.users.dtos.QueriedUserDto(u.id, u.username) FROM User u WHERE u.id = :id")
+    Optional<QueriedUserDto> findIdAndUsernameById(@Param("id") Long id);
+
+    @Query("SELECT new com.chat_room_app.users.dtos.QueriedUserDto(u.id, u.username) FROM User u WHERE u.id IN :ids")
+    List<QueriedUserDto> findIdsAndUsernamesByIdIn(@Param("ids") Collection<Long> ids);
+
     /**
-     * Find all users whose username is like the given query, except for the user themselves, and if they're verified
-     * @param query
-     * @param user
+     * Pages through the ids and usernames of verified users in id order, used to build the UsernameSearchIndex
+     * @param lastId
+     * @param pageable
      * @return
      */
-    @Query("SELECT u FROM User u WHERE LOWER (u.username) LIKE CONCAT('%', :query, '%') " +
-            "AND LOWER (u.username) != (:user) AND u.authDetails.isVerified = true")
-    List<User> findAllByUsernameLike(@Param("query") String query, @Param("user") String user);
+    @Query("SELECT new com.chat_room_app.users.dtos.QueriedUserDto(u.id, u.username) FROM User u " +
+            "WHERE u.authDetails.isVerified = true AND u.id > :lastId ORDER BY u.id")
+    List<QueriedUserDto> findVerifiedIdsAndUsernamesAfter(@Param("lastId") Long lastId, Pageable pageable);
 }
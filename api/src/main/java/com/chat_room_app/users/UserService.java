@@ -1,19 +1,28 @@
 package com.chat_room_app.users;
 
+import com.chat_room_app.chatroom.ChatRoomRepository;
+import com.chat_room_app.chatroom.RoomBlockIndex;
 import com.chat_room_app.chatroom.dtos.ChatRoomIdAndNameDto;
+import com.chat_room_app.configs.CacheConfiguration;
+import com.chat_room_app.datasource.AfterCommit;
 import com.chat_room_app.exceptions.custom_exceptions.BadRequest400Exception;
 import com.chat_room_app.exceptions.custom_exceptions.NotFound404Exception;
 import com.chat_room_app.exceptions.custom_exceptions.UnAuthorized401Exception;
 import com.chat_room_app.friends.FriendStatus;
-import com.chat_room_app.friends.Friendship;
+import com.chat_room_app.friends.FriendshipGraph;
 import com.chat_room_app.friends.dtos.FriendIdAndNameDto;
 import com.chat_room_app.users.dtos.QueriedUserDto;
 import com.chat_room_app.users.dtos.UserProfileDto;
+import com.chat_room_app.users.dtos.UserSearchPageDto;
 import lombok.extern.java.Log;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -22,10 +31,31 @@ import java.util.stream.Collectors;
 @Log
 public class UserService implements UserDetailsService {
 
-    private final UserRepository userRepository;
+    private static final int MAX_QUERY_LIMIT = 50;
+    private static final int MAX_AUTOCOMPLETE_LIMIT = 10;
 
-    public UserService(UserRepository userRepository) {
+    private final UserRepository userRepository;
+    private final FriendshipGraph friendshipGraph;
+    private final ChatRoomRepository chatRoomRepository;
+    private final UsernameSearchIndex usernameSearchIndex;
+    private final UsernameAutocompleteIndex usernameAutocompleteIndex;
+    private final RoomBlockIndex roomBlockIndex;
+    private final ProfileVersions profileVersions;
+    private final Cache chatRoomCache;
+    private final List<Cache> relationshipCaches;
+
+    public UserService(UserRepository userRepository, FriendshipGraph friendshipGraph, ChatRoomRepository chatRoomRepository, UsernameSearchIndex usernameSearchIndex, UsernameAutocompleteIndex usernameAutocompleteIndex, RoomBlockIndex roomBlockIndex,
+                       ProfileVersions profileVersions, CacheManager cacheManager) {
         this.userRepository = userRepository;
+        this.friendshipGraph = friendshipGraph;
+        this.chatRoomRepository = chatRoomRepository;
+        this.usernameSearchIndex = usernameSearchIndex;
+        this.usernameAutocompleteIndex = usernameAutocompleteIndex;
+        this.roomBlockIndex = roomBlockIndex;
+        this.profileVersions = profileVersions;
+        this.chatRoomCache = cacheManager.getCache(CacheConfiguration.CHAT_ROOMS);
+        this.relationshipCaches = List.of(cacheManager.getCache(CacheConfiguration.FRIENDS),
+                cacheManager.getCache(CacheConfiguration.FRIEND_REQUESTS), cacheManager.getCache(CacheConfiguration.BLOCKED_USERS));
     }
 
     public User getUserByUsername(String username) {
@@ -36,113 +66,143 @@ public class UserService implements UserDetailsService {
         return userRepository.findById(id).orElseThrow(() -> new NotFound404Exception("user not found: " + id));
     }
 
+    /**
+     * Deletes the user, the cached views that can mention them are dropped: their rooms, the friend lists of
+     * everyone they had a relationship with and every profile showing them or those users.
+     * The in-memory graph, indexes and caches are only changed once the delete commits
+     * @param username
+     */
+    @Transactional
     public void deleteUserByUsername(String username) {
+        Optional<User> user = userRepository.findByUsername(username);
+        List<Long> affectedIds = new ArrayList<>();
+        List<Long> chatRoomIds = List.of();
+        if (user.isPresent()) {
+            Long userId = user.get().getId();
+            usernameSearchIndex.unIndex(userId);
+            affectedIds.add(userId);
+            for (long connectedId : friendshipGraph.getConnectedIds(userId)) {
+                affectedIds.add(connectedId);
+            }
+            chatRoomIds = chatRoomRepository.findIdsByMemberId(userId);
+            friendshipGraph.removeUser(userId);
+            roomBlockIndex.onUserDeleted(userId);
+        }
         userRepository.deleteByUsername(username);
+        usernameAutocompleteIndex.unIndex(username);
+        evictDeletedUser(affectedIds, chatRoomIds);
     }
 
     /**
      * Gets basic users profile info
-     * Also shows the requesting user their mutual chat rooms and friends
+     * Also shows the requesting user their mutual chat rooms and friends,
+     * relationship status and mutual friends come from the FriendshipGraph, common rooms from a single query.
+     * Profiles are cached per pair of users, the key carries both users' ProfileVersions so a friendship or
+     * membership change of either one moves the pair to a new entry
      * @param searchUserId
      * @param requesterUserId
      * @return
      */
+    @Cacheable(cacheNames = CacheConfiguration.USER_PROFILES, sync = true, key = "#searchUserId + ':' + #requesterUserId + ':' "
+            + "+ @profileVersions.of(#searchUserId) + ':' + @profileVersions.of(#requesterUserId)")
+    @Transactional(readOnly = true)
     public UserProfileDto getUserProfile(Long searchUserId, Long requesterUserId) {
         log.info("Fetching user " + searchUserId + ", requested by " + requesterUserId);
-        User searchedUser = getUserById(searchUserId);
-        User requestingUser = getUserById(requesterUserId);
+        QueriedUserDto searchedUser = userRepository.findIdAndUsernameById(searchUserId)
+                .orElseThrow(() -> new NotFound404Exception("user not found: " + searchUserId));
 
-        FriendStatus status = getRelationshipStatus(requestingUser, searchedUser);
+        FriendStatus status = getRelationshipStatus(requesterUserId, searchedUser);
 
-        Set<ChatRoomIdAndNameDto> commonChatRooms = searchedUser.getChatRooms().stream()
-                .filter(chatRoom -> chatRoom.getMembers().containsAll(List.of(searchedUser, requestingUser)))
-                .map(chatRoom -> new ChatRoomIdAndNameDto(chatRoom.getId(), chatRoom.getName()))
-                .collect(Collectors.toSet());
+        Set<ChatRoomIdAndNameDto> commonChatRooms = new HashSet<>(chatRoomRepository.findCommonChatRooms(searchUserId, requesterUserId));
 
-        Set<FriendIdAndNameDto> mutualFriends = getMutualFriends(searchedUser, requestingUser);
+        Set<FriendIdAndNameDto> mutualFriends = getMutualFriends(searchUserId, requesterUserId);
 
-        log.info("fetched profile for " + searchedUser.getUsername());
-        return new UserProfileDto(searchedUser.getId(), searchedUser.getUsername(), mutualFriends, commonChatRooms, status);
+        log.info("fetched profile for " + searchedUser.username());
+        return new UserProfileDto(searchedUser.id(), searchedUser.username(), mutualFriends, commonChatRooms, status);
     }
 
     /**
      * Gets the relationship status between two users
-     * @param requester The user making the request
+     * @param requesterId The user making the request
      * @param target The user being searched
      * @return FriendStatus representing the relationship
      */
-    private FriendStatus getRelationshipStatus(User requester, User target) {
-        // Check if requester sent a friendship request to target
-        Optional<Friendship> sentFriendship = requester.getSentFriendships().stream()
-                .filter(friendship -> friendship.getReceiver().getId().equals(target.getId()))
-                .findFirst();
-
-        if (sentFriendship.isPresent()) {
-            return sentFriendship.get().getStatus();
+    private FriendStatus getRelationshipStatus(Long requesterId, QueriedUserDto target) {
+        if (friendshipGraph.isBlockedBy(requesterId, target.id())) {
+            throw new UnAuthorized401Exception("You are blocked by the user  " + target.username());
         }
-
-        // Check if requester received a friendship request from target
-        Optional<Friendship> receivedFriendship = requester.getReceivedFriendships().stream()
-                .filter(friendship -> friendship.getRequester().getId().equals(target.getId()))
-                .findFirst();
-
-        if (receivedFriendship.isPresent()) {
-            if (receivedFriendship.get().getStatus().equals(FriendStatus.BLOCKED)) {
-                throw new UnAuthorized401Exception("You are blocked by the user  " + target.getUsername());
-            }
-            return receivedFriendship.get().getStatus();
-        }
-
-        // No relationship exists
-        return FriendStatus.NONE;
+        return friendshipGraph.getRelationshipStatus(requesterId, target.id());
     }
 
-    private Set<FriendIdAndNameDto> getMutualFriends(User user1, User user2) {
-        Set<User> user1Friends = getAllFriends(user1);
-        Set<User> user2Friends = getAllFriends(user2);
-
-        return user1Friends.stream()
-                .filter(user2Friends::contains)
-                .map(friend -> new FriendIdAndNameDto(friend.getId(), friend.getUsername()))
+    /*
+     * ids are intersected in memory, only the names of the mutual friends are read
+     */
+    private Set<FriendIdAndNameDto> getMutualFriends(Long userId, Long otherUserId) {
+        long[] mutualFriendIds = friendshipGraph.getMutualFriendIds(userId, otherUserId);
+        if (mutualFriendIds.length == 0) {
+            return new HashSet<>();
+        }
+        List<Long> ids = Arrays.stream(mutualFriendIds).boxed().toList();
+        return userRepository.findIdsAndUsernamesByIdIn(ids).stream()
+                .map(user -> new FriendIdAndNameDto(user.id(), user.username()))
                 .collect(Collectors.toSet());
     }
 
-    private Set<User> getAllFriends(User user) {
-        Set<User> friends = new HashSet<>();
-
-        // Friends where user sent the request
-        user.getSentFriendships().stream()
-                .filter(friendship -> friendship.getStatus().equals(FriendStatus.ACCEPTED))
-                .map(Friendship::getReceiver)
-                .forEach(friends::add);
-
-        // Friends where user received the request
-        user.getReceivedFriendships().stream()
-                .filter(friendship -> friendship.getStatus().equals(FriendStatus.ACCEPTED))
-                .map(Friendship::getRequester)
-                .forEach(friends::add);
-
-        return friends;
-    }
-
     /**
-     * Finds all users whose usernames match the query given
+     * Finds verified users whose usernames contain the query given, served from the UsernameSearchIndex.
+     * Pages are cached briefly, the index clears them whenever a username is added or removed
      * @param query
+     * @param limit max results in the page, capped at 50
+     * @param cursor nextCursor of the previous page, null for the first page
      * @return
      */
-    public List<QueriedUserDto> queryUsers(String query, String username) {
+    @Cacheable(cacheNames = CacheConfiguration.USER_SEARCH, sync = true, condition = "#query != null && !#query.isBlank()",
+            key = "#query.trim().toLowerCase() + '|' + #username + '|' + #limit + '|' + #cursor")
+    public UserSearchPageDto queryUsers(String query, String username, int limit, String cursor) {
         if (query == null || query.isBlank()) {
             throw new BadRequest400Exception("Query cannot be empty");
         }
         query = query.trim().toLowerCase();
 
         if (query.length() < 3) { //too short of a query
-            return new ArrayList<>();
+            return new UserSearchPageDto(new ArrayList<>(), null);
         }
         log.info("fetch users with query: "+ query);
-        List<User> queriedUsers = userRepository.findAllByUsernameLike(query, username);
-        return queriedUsers.stream()
-                .map(user -> new QueriedUserDto(user.getId(), user.getUsername())).toList();
+        int boundedLimit = Math.min(Math.max(limit, 1), MAX_QUERY_LIMIT);
+        return usernameSearchIndex.search(query, username, boundedLimit, cursor);
+    }
+
+    /**
+     * Type-ahead over usernames starting with the prefix, served from memory only
+     * @param prefix
+     * @param limit capped at 10
+     * @return
+     */
+    public List<QueriedUserDto> autocompleteUsernames(String prefix, String username, int limit) {
+        if (prefix == null || prefix.isBlank()) {
+            return new ArrayList<>();
+        }
+        int boundedLimit = Math.min(Math.max(limit, 1), MAX_AUTOCOMPLETE_LIMIT);
+        return usernameAutocompleteIndex.complete(prefix.trim(), username, boundedLimit);
+    }
+
+    /*
+     * evicted right away and again after commit, a read that raced the commit cannot leave the old value cached
+     */
+    private void evictDeletedUser(List<Long> affectedIds, List<Long> chatRoomIds) {
+        Runnable evict = () -> {
+            for (Long chatRoomId : chatRoomIds) {
+                chatRoomCache.evict(chatRoomId);
+            }
+            for (Cache cache : relationshipCaches) {
+                for (Long userId : affectedIds) {
+                    cache.evict(userId);
+                }
+            }
+        };
+        evict.run();
+        AfterCommit.run(evict);
+        profileVersions.bump(affectedIds);
     }
 
     @Override
@@ -0,0 +1,123 @@
+package com.chat_room_app.users;
+
+import com.chat_room_app.datasource.AfterCommit;
+import com.chat_room_app.users.dtos.QueriedUserDto;
+import lombok.extern.java.Log;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Verified usernames kept sorted in a skip list so a prefix lookup is one O(log n) seek and a short scan,
+ * backs type-ahead when adding room members or starting a DM without ever hitting the database.
+ * Adds and removes (verification, delete) are O(log n) and lock free, and the startup load writes into the same
+ * map so changes committed while it runs are kept. Removes seen during the load are replayed after it, otherwise
+ * a row read just before its delete committed would come back
+ */
+@Log
+@Component
+public class UsernameAutocompleteIndex {
+
+    private static final int LOAD_BATCH_SIZE = 5_000;
+
+    private final UserRepository userRepository;
+    private final ConcurrentSkipListMap<String, QueriedUserDto> usersByLowerUsername = new ConcurrentSkipListMap<>();
+    private final Set<String> removedDuringLoad = ConcurrentHashMap.newKeySet();
+    private volatile boolean loading;
+
+    public UsernameAutocompleteIndex(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.nanoTime();
+        loading = true;
+        int loaded = 0;
+        try {
+            long lastId = Long.MIN_VALUE;
+            List<QueriedUserDto> batch;
+            do {
+                batch = userRepository.findVerifiedIdsAndUsernamesAfter(lastId, PageRequest.ofSize(LOAD_BATCH_SIZE));
+                for (QueriedUserDto user : batch) {
+                    usersByLowerUsername.putIfAbsent(user.username().toLowerCase(), user);
+                    lastId = user.id();
+                }
+                loaded += batch.size();
+            } while (batch.size() == LOAD_BATCH_SIZE);
+        }
+        finally {
+            loading = false;
+            for (String lowerUsername : removedDuringLoad) {
+                usersByLowerUsername.remove(lowerUsername);
+                removedDuringLoad.remove(lowerUsername);
+            }
+        }
+        log.info("Loaded " + loaded + " usernames for autocomplete in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Adds the user once the surrounding transaction commits, unverified users are ignored
+     */
+    public void index(User user) {
+        if (!Boolean.TRUE.equals(user.getAuthDetails().getIsVerified())) {
+            return;
+        }
+        Long id = user.getId();
+        String username = user.getUsername();
+        AfterCommit.run(() -> add(id, username));
+    }
+
+    /**
+     * Drops the user once the surrounding transaction commits
+     */
+    public void unIndex(String username) {
+        AfterCommit.run(() -> remove(username));
+    }
+
+    /**
+     * Users whose username starts with the prefix, in alphabetical order
+     * @param excludeUsername the requester, never suggested to themselves
+     * @param limit caller is expected to have capped it already
+     */
+    public List<QueriedUserDto> complete(String prefix, String excludeUsername, int limit) {
+        String lowerPrefix = prefix.toLowerCase();
+        List<QueriedUserDto> matches = new ArrayList<>(limit);
+        for (Map.Entry<String, QueriedUserDto> entry : usersByLowerUsername.tailMap(lowerPrefix).entrySet()) {
+            if (matches.size() >= limit || !entry.getKey().startsWith(lowerPrefix)) {
+                break;
+            }
+            if (entry.getKey().equalsIgnoreCase(excludeUsername)) {
+                continue;
+            }
+            matches.add(entry.getValue());
+        }
+        return matches;
+    }
+
+    public int size() {
+        return usersByLowerUsername.size();
+    }
+
+    void add(Long userId, String username) {
+        String lowerUsername = username.toLowerCase();
+        removedDuringLoad.remove(lowerUsername);
+        usersByLowerUsername.putIfAbsent(lowerUsername, new QueriedUserDto(userId, username));
+    }
+
+    void remove(String username) {
+        String lowerUsername = username.toLowerCase();
+        usersByLowerUsername.remove(lowerUsername);
+        if (loading) {
+            removedDuringLoad.add(lowerUsername);
+        }
+    }
+}
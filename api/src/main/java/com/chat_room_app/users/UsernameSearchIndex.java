@@ -0,0 +1,367 @@
+package com.chat_room_app.users;
+
+import com.chat_room_app.configs.CacheConfiguration;
+import com.chat_room_app.datasource.AfterCommit;
+import com.chat_room_app.exceptions.custom_exceptions.BadRequest400Exception;
+import com.chat_room_app.users.dtos.QueriedUserDto;
+import com.chat_room_app.users.dtos.UserSearchPageDto;
+import lombok.extern.java.Log;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In memory trigram index over verified usernames, replaces the LOWER(username) LIKE '%q%' table scan.
+ * Every user gets a dense ordinal, each trigram maps to a sorted int[] of ordinals so a substring query is
+ * an intersection of a few posting lists plus a contains() check on the survivors.
+ * Users are keyed by id, so usernames that only differ in case are both found.
+ * Loaded at startup and kept up to date by AuthService (verification) and UserService (delete). Users added after
+ * commit win over the rows the load read, and removes seen during the load are replayed after it, otherwise a row
+ * read just before its delete committed would come back
+ */
+@Log
+@Component
+public class UsernameSearchIndex {
+
+    private static final int GRAM = 3;
+    private static final int LOAD_BATCH_SIZE = 5_000;
+
+    private final UserRepository userRepository;
+    private final Cache searchCache;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, PostingList> postings = new HashMap<>();
+    private final Map<Long, Integer> ordinalByUserId = new HashMap<>();
+    private final Set<Long> removedDuringLoad = ConcurrentHashMap.newKeySet();
+    private volatile boolean loading;
+    private long[] userIds = new long[1024];
+    private String[] usernames = new String[1024];
+    private String[] lowerUsernames = new String[1024];
+    private int size;
+    private int tombstones;
+
+    public UsernameSearchIndex(UserRepository userRepository, CacheManager cacheManager) {
+        this.userRepository = userRepository;
+        this.searchCache = cacheManager.getCache(CacheConfiguration.USER_SEARCH);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.nanoTime();
+        loading = true;
+        int loaded = 0;
+        try {
+            long lastId = Long.MIN_VALUE;
+            List<QueriedUserDto> batch;
+            do {
+                batch = userRepository.findVerifiedIdsAndUsernamesAfter(lastId, PageRequest.ofSize(LOAD_BATCH_SIZE));
+                for (QueriedUserDto user : batch) {
+                    insert(user.id(), user.username(), false);
+                    lastId = user.id();
+                }
+                loaded += batch.size();
+            } while (batch.size() == LOAD_BATCH_SIZE);
+        }
+        finally {
+            loading = false;
+            for (Long userId : removedDuringLoad) {
+                remove(userId);
+                removedDuringLoad.remove(userId);
+            }
+        }
+        log.info("Indexed " + loaded + " usernames in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Adds the user once the surrounding transaction commits, unverified users are ignored.
+     * Cached search pages are cleared along with every change
+     */
+    public void index(User user) {
+        if (!Boolean.TRUE.equals(user.getAuthDetails().getIsVerified())) {
+            return;
+        }
+        Long id = user.getId();
+        String username = user.getUsername();
+        AfterCommit.run(() -> {
+            add(id, username);
+            searchCache.clear();
+        });
+    }
+
+    /**
+     * Drops the user once the surrounding transaction commits
+     */
+    public void unIndex(Long userId) {
+        AfterCommit.run(() -> {
+            remove(userId);
+            searchCache.clear();
+        });
+    }
+
+    /**
+     * Finds users whose username contains the query, prefix matches first, then shorter usernames.
+     * The cursor is the opaque position of the last result of the previous page
+     */
+    public UserSearchPageDto search(String query, String excludeUsername, int limit, String cursor) {
+        String needle = query.toLowerCase();
+        SearchKey after = cursor == null || cursor.isBlank() ? null : SearchKey.decode(cursor);
+        PriorityQueue<SearchKey> top = new PriorityQueue<>(limit + 1, Comparator.reverseOrder());
+
+        lock.readLock().lock();
+        try {
+            for (int ordinal : candidates(needle)) {
+                String lowerUsername = lowerUsernames[ordinal];
+                if (lowerUsername == null || !lowerUsername.contains(needle) || usernames[ordinal].equals(excludeUsername)) {
+                    continue;
+                }
+                SearchKey key = new SearchKey(lowerUsername.startsWith(needle) ? 0 : 1, lowerUsername, userIds[ordinal], usernames[ordinal]);
+                if (after != null && key.compareTo(after) <= 0) {
+                    continue;
+                }
+                if (top.size() <= limit) {
+                    top.add(key);
+                }
+                else if (key.compareTo(top.peek()) < 0) {
+                    top.poll();
+                    top.add(key);
+                }
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+
+        List<SearchKey> ranked = new ArrayList<>(top);
+        Collections.sort(ranked);
+        String nextCursor = null;
+        if (ranked.size() > limit) {
+            ranked = ranked.subList(0, limit);
+            nextCursor = ranked.get(limit - 1).encode();
+        }
+        List<QueriedUserDto> users = ranked.stream()
+                .map(key -> new QueriedUserDto(key.userId(), key.username()))
+                .toList();
+        return new UserSearchPageDto(users, nextCursor);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinalByUserId.size();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void add(Long userId, String username) {
+        removedDuringLoad.remove(userId);
+        insert(userId, username, true);
+    }
+
+    void remove(Long userId) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinalByUserId.remove(userId);
+            if (ordinal != null) {
+                tombstone(ordinal);
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+        if (loading) {
+            removedDuringLoad.add(userId);
+        }
+    }
+
+    /*
+     * replace is false for rows read by the load, a user already indexed after commit is newer than the row
+     */
+    private void insert(Long userId, String username, boolean replace) {
+        String lowerUsername = username.toLowerCase();
+        lock.writeLock().lock();
+        try {
+            Integer existing = ordinalByUserId.get(userId);
+            if (existing != null) {
+                if (!replace || usernames[existing].equals(username)) {
+                    return;
+                }
+                ordinalByUserId.remove(userId);
+                tombstone(existing);
+            }
+            ensureCapacity(size + 1);
+            int ordinal = size++;
+            userIds[ordinal] = userId;
+            usernames[ordinal] = username;
+            lowerUsernames[ordinal] = lowerUsername;
+            ordinalByUserId.put(userId, ordinal);
+            for (long gram : trigrams(lowerUsername)) {
+                postings.computeIfAbsent(gram, g -> new PostingList()).append(ordinal);
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+     * the ordinal stays in the posting lists as a tombstone until the next compaction, caller holds the write lock
+     */
+    private void tombstone(int ordinal) {
+        usernames[ordinal] = null;
+        lowerUsernames[ordinal] = null;
+        tombstones++;
+        if (tombstones > 1024 && tombstones > size / 4) {
+            compact();
+        }
+    }
+
+    /*
+     * intersects the posting lists of the query's trigrams, smallest first
+     */
+    private int[] candidates(String needle) {
+        Set<Long> grams = trigrams(needle);
+        if (grams.isEmpty()) {
+            return new int[0];
+        }
+        List<PostingList> lists = new ArrayList<>(grams.size());
+        for (long gram : grams) {
+            PostingList list = postings.get(gram);
+            if (list == null) {
+                return new int[0];
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+        PostingList smallest = lists.get(0);
+        int[] result = new int[smallest.size];
+        int count = 0;
+        outer:
+        for (int i = 0; i < smallest.size; i++) {
+            int ordinal = smallest.ordinals[i];
+            for (int j = 1; j < lists.size(); j++) {
+                if (!lists.get(j).contains(ordinal)) {
+                    continue outer;
+                }
+            }
+            result[count++] = ordinal;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /*
+     * rebuilds the arrays without the removed users, caller holds the write lock
+     */
+    private void compact() {
+        long[] oldIds = userIds;
+        String[] oldUsernames = usernames;
+        int oldSize = size;
+        postings.clear();
+        ordinalByUserId.clear();
+        userIds = new long[Math.max(1024, oldSize - tombstones)];
+        usernames = new String[userIds.length];
+        lowerUsernames = new String[userIds.length];
+        size = 0;
+        tombstones = 0;
+        for (int i = 0; i < oldSize; i++) {
+            if (oldUsernames[i] == null) {
+                continue;
+            }
+            int ordinal = size++;
+            userIds[ordinal] = oldIds[i];
+            usernames[ordinal] = oldUsernames[i];
+            lowerUsernames[ordinal] = oldUsernames[i].toLowerCase();
+            ordinalByUserId.put(oldIds[i], ordinal);
+            for (long gram : trigrams(lowerUsernames[ordinal])) {
+                postings.computeIfAbsent(gram, g -> new PostingList()).append(ordinal);
+            }
+        }
+        log.info("Compacted username index down to " + size + " users");
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= userIds.length) {
+            return;
+        }
+        int newLength = Math.max(capacity, userIds.length * 2);
+        userIds = Arrays.copyOf(userIds, newLength);
+        usernames = Arrays.copyOf(usernames, newLength);
+        lowerUsernames = Arrays.copyOf(lowerUsernames, newLength);
+    }
+
+    private static Set<Long> trigrams(String value) {
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            grams.add(((long) value.charAt(i) << 32) | ((long) value.charAt(i + 1) << 16) | value.charAt(i + 2));
+        }
+        return grams;
+    }
+
+    /**
+     * Sorted, append only list of ordinals, ordinals are handed out in increasing order so appends keep it sorted
+     */
+    private static final class PostingList {
+        private int[] ordinals = new int[4];
+        private int size;
+
+        private void append(int ordinal) {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            ordinals[size++] = ordinal;
+        }
+
+        private boolean contains(int ordinal) {
+            return Arrays.binarySearch(ordinals, 0, size, ordinal) >= 0;
+        }
+    }
+
+    /**
+     * Ranking of a single hit: prefix matches, then shorter usernames, then alphabetical, then by user id so usernames
+     * that only differ in case keep a stable order across pages
+     */
+    private record SearchKey(int rank, String lowerUsername, long userId, String username) implements Comparable<SearchKey> {
+
+        @Override
+        public int compareTo(SearchKey other) {
+            int compared = Integer.compare(rank, other.rank);
+            if (compared == 0) {
+                compared = Integer.compare(lowerUsername.length(), other.lowerUsername.length());
+            }
+            if (compared == 0) {
+                compared = lowerUsername.compareTo(other.lowerUsername);
+            }
+            if (compared == 0) {
+                compared = Long.compare(userId, other.userId);
+            }
+            return compared;
+        }
+
+        private String encode() {
+            String raw = rank + ":" + userId + ":" + lowerUsername;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static SearchKey decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.indexOf(':');
+                int idSeparator = raw.indexOf(':', separator + 1);
+                return new SearchKey(Integer.parseInt(raw.substring(0, separator)), raw.substring(idSeparator + 1),
+                        Long.parseLong(raw.substring(separator + 1, idSeparator)), null);
+            }
+            catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new BadRequest400Exception("Invalid cursor: " + cursor);
+            }
+        }
+    }
+}
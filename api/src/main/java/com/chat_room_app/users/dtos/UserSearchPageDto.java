@@ -0,0 +1,6 @@
+package com.chat_room_app.users.dtos;
+
+import java.util.List;
+
+public record UserSearchPageDto(List<QueriedUserDto> users, String nextCursor) {
+}
@@ -0,0 +1,24 @@
+package com.chat_room_app.web_socket;
+
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.security.Principal;
+import java.util.Map;
+
+/**
+ * Makes the user authenticated by the JwtHandshakeInterceptor the principal of the whole WebSocket session,
+ * the user registry needs it at CONNECT time to route /user/queue/** destinations to the right sessions
+ */
+public class AuthenticatedUserHandshakeHandler extends DefaultHandshakeHandler {
+
+    @Override
+    protected Principal determineUser(ServerHttpRequest request, WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        Object user = attributes.get("authenticatedUser");
+        if (user instanceof Principal principal) {
+            return principal;
+        }
+        return super.determineUser(request, wsHandler, attributes);
+    }
+}
@@ -0,0 +1,63 @@
+package com.chat_room_app.web_socket;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.core.MessagePostProcessor;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Drops broker deliveries to sessions whose user blocks the sender. A broadcast carries the blocking usernames
+ * in a server side header (see RoomBlockIndex), the simple broker copies it onto each per session copy and this
+ * interceptor on the outbound channel checks the session's user against it. Broadcasts without the header pass untouched
+ */
+@Component
+public class BlockedRecipientFilter implements ChannelInterceptor {
+
+    static final String BLOCKED_RECIPIENTS_HEADER = "blockedRecipients";
+
+    private final Map<String, String> usernameBySession = new ConcurrentHashMap<>();
+
+    /**
+     * Post processor for SimpMessagingTemplate.convertAndSend that keeps the broadcast away from the given users
+     */
+    public static MessagePostProcessor skipping(Set<String> blockedRecipients) {
+        return message -> blockedRecipients.isEmpty() ? message : MessageBuilder.fromMessage(message)
+                .setHeader(BLOCKED_RECIPIENTS_HEADER, blockedRecipients)
+                .build();
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        Object blockedRecipients = message.getHeaders().get(BLOCKED_RECIPIENTS_HEADER);
+        if (!(blockedRecipients instanceof Set<?> blocked)) {
+            return message;
+        }
+        String username = usernameBySession.get(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+        return username != null && blocked.contains(username) ? null : message;
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        Principal user = event.getUser();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (user != null && sessionId != null) {
+            usernameBySession.put(sessionId, user.getName());
+        }
+    }
+
+    @EventListener
+    public void onDisconnected(SessionDisconnectEvent event) {
+        usernameBySession.remove(event.getSessionId());
+    }
+}
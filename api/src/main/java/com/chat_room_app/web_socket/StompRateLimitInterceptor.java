@@ -0,0 +1,55 @@
+package com.chat_room_app.web_socket;
+
+import com.chat_room_app.rate_limit.ClientRateLimiterRegistry;
+import lombok.extern.java.Log;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+
+/**
+ * Rate limits SEND frames to /app/chat.* per user (or per session before auth),
+ * a frame over the limit is dropped instead of reaching the MessageController
+ */
+@Log
+@Component
+public class StompRateLimitInterceptor implements ChannelInterceptor {
+
+    private static final String CHAT_DESTINATION_PREFIX = "/app/";
+    private static final String CHAT_ROUTE = "chat";
+
+    private final ClientRateLimiterRegistry clientRateLimiterRegistry;
+
+    public StompRateLimitInterceptor(ClientRateLimiterRegistry clientRateLimiterRegistry) {
+        this.clientRateLimiterRegistry = clientRateLimiterRegistry;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor acc = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (acc == null || acc.getCommand() != StompCommand.SEND) {
+            return message;
+        }
+        String destination = acc.getDestination();
+        if (destination == null || !destination.startsWith(CHAT_DESTINATION_PREFIX + CHAT_ROUTE + ".")) {
+            return message;
+        }
+        // "/app/chat.sendMessage" -> route "chat.sendMessage", falling back to the shared "chat" route
+        String route = destination.substring(CHAT_DESTINATION_PREFIX.length());
+        if (!clientRateLimiterRegistry.hasRoute(route)) {
+            route = CHAT_ROUTE;
+        }
+        Principal user = acc.getUser();
+        String clientKey = user != null ? "user:" + user.getName() : "session:" + acc.getSessionId();
+        if (clientRateLimiterRegistry.acquire(route, clientKey) > 0) {
+            log.warning("Dropping " + destination + " frame from " + clientKey + ", rate limit exceeded");
+            return null;
+        }
+        return message;
+    }
+}
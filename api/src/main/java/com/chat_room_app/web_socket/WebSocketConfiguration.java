@@ -21,11 +21,16 @@ public class WebSocketConfiguration implements WebSocketMessageBrokerConfigurer
 	private WebSocketAuthInterceptor webSocketAuthInterceptor;
 	@Autowired
 	JwtHandshakeInterceptor jwtHandshakeInterceptor;
+	@Autowired
+	private StompRateLimitInterceptor stompRateLimitInterceptor;
+	@Autowired
+	private BlockedRecipientFilter blockedRecipientFilter;
 
 	@Override
 	public void configureMessageBroker(MessageBrokerRegistry config) {
-		config.enableSimpleBroker("/topic");
+		config.enableSimpleBroker("/topic", "/queue");
 		config.setApplicationDestinationPrefixes("/app");
+		config.setUserDestinationPrefix("/user");
 	}
 
 	@Override
@@ -33,12 +38,18 @@ public class WebSocketConfiguration implements WebSocketMessageBrokerConfigurer
 		registry.addEndpoint("/ws")
 				.setAllowedOrigins(frontendDomain)
 				.addInterceptors(jwtHandshakeInterceptor)
+				.setHandshakeHandler(new AuthenticatedUserHandshakeHandler())
 				.withSockJS();
 	}
 
 	@Override
 	public void configureClientInboundChannel(ChannelRegistration registration) {
-		registration.interceptors(webSocketAuthInterceptor);
+		registration.interceptors(webSocketAuthInterceptor, stompRateLimitInterceptor);
+	}
+
+	@Override
+	public void configureClientOutboundChannel(ChannelRegistration registration) {
+		registration.interceptors(blockedRecipientFilter);
 	}
 
 }
@@ -1,8 +1,15 @@
 package com.chat_room_app.auth;
 
 import com.chat_room_app.auth.dtos.RegisterUserDto;
-import com.chat_room_app.auth.dtos.VerifyUserDto;
 import com.chat_room_app.email.ChatterBoxEmailService;
+import com.chat_room_app.email.dtos.EmailBatchItemDto;
+import com.chat_room_app.email.dtos.EmailBatchItemResultDto;
+import com.chat_room_app.email.dtos.EmailBatchResponseDto;
+import com.chat_room_app.email.outbox.EmailOutboxDispatcher;
+import com.chat_room_app.email.outbox.EmailOutboxMessage;
+import com.chat_room_app.email.outbox.EmailOutboxRepository;
+import com.chat_room_app.email.outbox.EmailOutboxStatus;
+import com.chat_room_app.email.outbox.EmailType;
 import com.chat_room_app.users.User;
 import com.chat_room_app.users.UserRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -13,9 +20,6 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.boot.test.context.TestConfiguration;
-import org.springframework.context.annotation.Bean;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
@@ -23,11 +27,15 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 
-import java.util.concurrent.Executor;
+import java.util.List;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
 @AutoConfigureMockMvc(addFilters = false)
@@ -48,19 +56,23 @@ class AuthV2ControllerTest {
     @MockBean
     private ChatterBoxEmailService emailService;
 
-    // replace the virtual-thread executor with a synchronous one
-    @TestConfiguration
-    static class SyncExecutorConfig {
-        @Bean
-        @Qualifier("virtualThreadExecutor")
-        Executor sameThreadExecutor() {
-            return Runnable::run;
-        }
-    }
+    // drained by hand, the scheduled run cannot see rows of the uncommitted test transaction
+    @Autowired
+    private EmailOutboxDispatcher emailOutboxDispatcher;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
 
     @BeforeEach
     void cleanDb() {
         userRepository.deleteAll();
+        // the email service accepts every item of a batch
+        when(emailService.sendBatch(anyList())).thenAnswer(invocation -> {
+            List<EmailBatchItemDto> items = invocation.getArgument(0);
+            return new EmailBatchResponseDto(IntStream.range(0, items.size())
+                    .mapToObj(i -> new EmailBatchItemResultDto(i, "ACCEPTED", null))
+                    .toList());
+        });
     }
 
     @DisplayName("POST /api/v2/auths/register → 201, user stored, e-mail queued")
@@ -86,8 +98,14 @@ class AuthV2ControllerTest {
         assertThat(saved.getEmail()).isEqualTo("john@mail.com");
         assertThat(saved.getPassword()).isNotEqualTo("secret");   // encoded
 
-        // --- external call was made (mocked) ---------------------------------
-        verify(emailService).sendVerifyEmail(any(VerifyUserDto.class));
+        // --- e-mail queued, then sent by the dispatcher (mocked) -------------
+        EmailOutboxMessage queued = emailOutboxRepository.findByTypeAndUsername(EmailType.VERIFY, "john").orElseThrow();
+        assertThat(queued.getStatus()).isEqualTo(EmailOutboxStatus.PENDING);
+        verifyNoInteractions(emailService);
+
+        emailOutboxDispatcher.dispatch();
+        verify(emailService).sendBatch(List.of(new EmailBatchItemDto("VERIFY", "john@mail.com", "john", queued.getCode())));
+        assertThat(queued.getStatus()).isEqualTo(EmailOutboxStatus.SENT);
     }
 
     @DisplayName("POST /api/v2/auths/resend-verification/{username} → 200")
@@ -110,7 +128,8 @@ class AuthV2ControllerTest {
                                 .content()
                                 .string("Verification email sent"));
 
-        verify(emailService).sendVerifyEmail(any(VerifyUserDto.class));
+        emailOutboxDispatcher.dispatch();
+        verify(emailService).sendBatch(argThat(items -> items.size() == 1 && items.get(0).type().equals("VERIFY")));
     }
 
     @DisplayName("POST /api/v2/auths/forgot/{username} → 200")
@@ -128,6 +147,7 @@ class AuthV2ControllerTest {
                                 .content()
                                 .string("Forgot password verification code sent"));
 
-        verify(emailService).sendRestPasswordEmail(any(VerifyUserDto.class));
+        emailOutboxDispatcher.dispatch();
+        verify(emailService).sendBatch(argThat(items -> items.size() == 1 && items.get(0).type().equals("RESET_PASSWORD")));
     }
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+package com.chat_room_app.auth.hashing;
+
+import com.chat_room_app.exceptions.custom_exceptions.TooManyRequests429Exception;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PasswordHashingExecutorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor();
+    private PasswordHashingExecutor hashingExecutor;
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        hashingExecutor.shutdown();
+    }
+
+    @Test
+    void execute_ShouldRunTheHashOnAPlatformHashingThread() {
+        hashingExecutor = new PasswordHashingExecutor(1, 4, meterRegistry);
+
+        String threadName = hashingExecutor.execute(HashPriority.VERIFY, () -> Thread.currentThread().getName());
+
+        assertThat(threadName).startsWith("password-hash-");
+    }
+
+    @Test
+    void execute_WhenThePoolAndQueueAreFull_ShouldRejectWith429() throws Exception {
+        hashingExecutor = new PasswordHashingExecutor(1, 1, meterRegistry);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+
+        Future<String> running = callers.submit(() -> hashingExecutor.execute(HashPriority.ENCODE, () -> {
+            started.countDown();
+            await(release);
+            return "running";
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<String> queued = callers.submit(() -> hashingExecutor.execute(HashPriority.ENCODE, () -> "queued"));
+        awaitQueueSize(1);
+
+        assertThatThrownBy(() -> hashingExecutor.execute(HashPriority.VERIFY, () -> "rejected"))
+                .isInstanceOf(TooManyRequests429Exception.class);
+        assertThat(meterRegistry.counter("password.hashing.rejected").count()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("running");
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("queued");
+        // the permits came back with the finished tasks
+        assertThat(hashingExecutor.execute(HashPriority.VERIFY, () -> "accepted")).isEqualTo("accepted");
+    }
+
+    @Test
+    void execute_ShouldRunVerifyBeforeQueuedEncodes() throws Exception {
+        hashingExecutor = new PasswordHashingExecutor(1, 4, meterRegistry);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        Future<?> blocker = callers.submit(() -> hashingExecutor.execute(HashPriority.ENCODE, () -> {
+            started.countDown();
+            await(release);
+            return null;
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<?> encode = callers.submit(() -> hashingExecutor.execute(HashPriority.ENCODE, () -> order.add("encode")));
+        awaitQueueSize(1);
+        Future<?> verify = callers.submit(() -> hashingExecutor.execute(HashPriority.VERIFY, () -> order.add("verify")));
+        awaitQueueSize(2);
+
+        release.countDown();
+        blocker.get(5, TimeUnit.SECONDS);
+        encode.get(5, TimeUnit.SECONDS);
+        verify.get(5, TimeUnit.SECONDS);
+
+        assertThat(order).containsExactly("verify", "encode");
+    }
+
+    private void awaitQueueSize(int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("password.hashing.queue.size").gauge().value() < size && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(meterRegistry.get("password.hashing.queue.size").gauge().value()).isEqualTo(size);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -7,10 +7,18 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import com.chat_room_app.auth.AuthDetails;
 import com.chat_room_app.chatroom.dtos.NewChatDto;
+import com.chat_room_app.chatroom.dtos.RetentionDto;
 import com.chat_room_app.jwt.JwtUtils;
+import com.chat_room_app.message.Message;
+import com.chat_room_app.message.MessageRepository;
+import com.chat_room_app.message.MessageService;
+import com.chat_room_app.message.dtos.NewMessageDto;
 import com.chat_room_app.users.User;
 import com.chat_room_app.users.UserRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import lombok.extern.java.Log;
 import org.junit.jupiter.api.*;
@@ -19,6 +27,7 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
@@ -38,6 +47,8 @@ class ChatRoomControllerTest {
     @Autowired private UserRepository userRepository;
     @Autowired private ChatRoomRepository chatRoomRepository;
     @Autowired private ChatRoomService chatRoomService;
+    @Autowired private MessageRepository messageRepository;
+    @Autowired private MessageService messageService;
 
     private MockedStatic<JwtUtils> jwt;
 
@@ -131,6 +142,78 @@ class ChatRoomControllerTest {
                     .andExpect(jsonPath("$.members", hasSize(2)));
         }
 
+        @Test
+        @WithMockUser(username = "john")
+        void get_showsMessagesSentAfterTheRoomWasCached() throws Exception {
+            user("john", "john@mail.com");
+            user("jane", "jane@mail.com");
+
+            Long id = chatId("john", "room", "john", "jane");
+
+            jwt.when(JwtUtils::getCurrentUserUsername).thenReturn("john");
+
+            mockMvc
+                    .perform(get("/api/v1/chats/{id}", id))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.messages", hasSize(0)));
+
+            messageService.sendMessage(new NewMessageDto("hello", id), "jane");
+
+            mockMvc
+                    .perform(get("/api/v1/chats/{id}", id))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.messages", hasSize(1)))
+                    .andExpect(jsonPath("$.messages[0].content").value("hello"));
+
+            Long messageId = messageRepository.findHistoryBefore(id, LocalDateTime.of(9999, 12, 31, 0, 0), Long.MAX_VALUE,
+                    Pageable.unpaged()).getFirst().getId();
+            messageService.deleteMessage(messageId, id, "jane");
+
+            mockMvc
+                    .perform(get("/api/v1/chats/{id}", id))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.messages", hasSize(0)));
+        }
+
+        @Test
+        @WithMockUser(username = "john")
+        void get_showsOnlyTheNewestPage() throws Exception {
+            user("john", "john@mail.com");
+            user("jane", "jane@mail.com");
+
+            Long id = chatId("john", "room", "john", "jane");
+            ChatRoom chatRoom = chatRoomRepository.findById(id).orElseThrow();
+            LocalDateTime start = LocalDateTime.now().minusHours(1);
+            List<Message> messages = new ArrayList<>();
+            for (int i = 0; i < 51; i++) {
+                Message message = new Message();
+                message.setChatRoom(chatRoom);
+                message.setContent("message " + i);
+                message.setSender("jane");
+                message.setCreated(start.plusSeconds(i));
+                messages.add(message);
+            }
+            messageRepository.saveAll(messages);
+
+            jwt.when(JwtUtils::getCurrentUserUsername).thenReturn("john");
+
+            String body = mockMvc
+                    .perform(get("/api/v1/chats/{id}", id))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.messages", hasSize(50)))
+                    .andExpect(jsonPath("$.messages[0].content").value("message 1"))
+                    .andExpect(jsonPath("$.messages[49].content").value("message 50"))
+                    .andExpect(jsonPath("$.nextCursor").isNotEmpty())
+                    .andReturn().getResponse().getContentAsString();
+
+            mockMvc
+                    .perform(get("/api/v1/chats/{id}/messages", id)
+                            .param("before", mapper.readTree(body).get("nextCursor").asText()))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.messages", hasSize(1)))
+                    .andExpect(jsonPath("$.messages[0].content").value("message 0"));
+        }
+
         @Test
         @WithMockUser(username = "outsider")
         void get_unauthorizedNotAMember() throws Exception {
@@ -162,6 +245,87 @@ class ChatRoomControllerTest {
         }
     }
 
+    /* ===================================================================
+     * GET /api/v1/chats/{id}/messages
+     * =================================================================== */
+    @Nested
+    class GetHistory {
+
+        private void message(Long chatId, String content, LocalDateTime created) {
+            Message message = new Message();
+            message.setChatRoom(chatRoomRepository.findById(chatId).orElseThrow());
+            message.setContent(content);
+            message.setSender("jane");
+            message.setCreated(created);
+            messageRepository.save(message);
+        }
+
+        @Test
+        @WithMockUser(username = "john")
+        void history_pagesNewestFirst() throws Exception {
+            user("john", "john@mail.com");
+            user("jane", "jane@mail.com");
+
+            Long id = chatId("john", "room", "john", "jane");
+            LocalDateTime now = LocalDateTime.now();
+            message(id, "first", now.minusMinutes(3));
+            message(id, "second", now.minusMinutes(2));
+            message(id, "third", now.minusMinutes(1));
+
+            jwt.when(JwtUtils::getCurrentUserUsername).thenReturn("john");
+
+            String body = mockMvc
+                    .perform(get("/api/v1/chats/{id}/messages", id).param("limit", "2"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.messages", hasSize(2)))
+                    .andExpect(jsonPath("$.messages[0].content").value("third"))
+                    .andExpect(jsonPath("$.messages[1].content").value("second"))
+                    .andExpect(jsonPath("$.nextCursor").isNotEmpty())
+                    .andReturn().getResponse().getContentAsString();
+
+            mockMvc
+                    .perform(get("/api/v1/chats/{id}/messages", id)
+                            .param("limit", "2")
+                            .param("before", mapper.readTree(body).get("nextCursor").asText()))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.messages", hasSize(1)))
+                    .andExpect(jsonPath("$.messages[0].content").value("first"))
+                    .andExpect(jsonPath("$.nextCursor").value(nullValue()));
+        }
+
+        @Test
+        @WithMockUser(username = "outsider")
+        void history_unauthorizedNotAMember() throws Exception {
+            user("john", "john@mail.com");
+            user("jane", "jane@mail.com");
+            user("outsider", "out@mail.com");
+
+            Long id = chatId("john", "room", "john", "jane");
+
+            jwt.when(JwtUtils::getCurrentUserUsername).thenReturn("outsider");
+
+            mockMvc
+                    .perform(get("/api/v1/chats/{id}/messages", id))
+                    .andExpect(status().isUnauthorized())
+                    .andExpect(jsonPath("$.errorMessage").value("User is not part of a chat: outsider"));
+        }
+
+        @Test
+        @WithMockUser(username = "john")
+        void history_badCursor() throws Exception {
+            user("john", "john@mail.com");
+            user("jane", "jane@mail.com");
+
+            Long id = chatId("john", "room", "john", "jane");
+
+            jwt.when(JwtUtils::getCurrentUserUsername).thenReturn("john");
+
+            mockMvc
+                    .perform(get("/api/v1/chats/{id}/messages", id).param("before", "not a cursor"))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
     /* ===================================================================
      * DELETE /api/v1/chats/{id}  (owner only)
      * =================================================================== */
@@ -201,6 +365,81 @@ class ChatRoomControllerTest {
         }
     }
 
+    /* ===================================================================
+     * PUT /api/v1/chats/{chatId}/retention   (owner only)
+     * =================================================================== */
+    @Nested
+    class SetRetention {
+
+        @Test
+        @WithMockUser(username = "john")
+        void retention_ok() throws Exception {
+            user("john", "john@mail.com");
+            Long id = chatId("john", "room", "john");
+
+            jwt.when(JwtUtils::getCurrentUserUsername).thenReturn("john");
+
+            mockMvc.perform(put("/api/v1/chats/{id}/retention", id)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(asJson(new RetentionDto(30))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.retentionDays").value(30));
+
+            assertThat(chatRoomRepository.findById(id).orElseThrow().getRetentionDays()).isEqualTo(30);
+        }
+
+        @Test
+        @WithMockUser(username = "john")
+        void retention_backToDefault() throws Exception {
+            user("john", "john@mail.com");
+            Long id = chatId("john", "room", "john");
+            chatRoomService.setRetention(id, 30, "john");
+
+            jwt.when(JwtUtils::getCurrentUserUsername).thenReturn("john");
+
+            mockMvc.perform(put("/api/v1/chats/{id}/retention", id)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(asJson(new RetentionDto(null))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.retentionDays").value(nullValue()));
+
+            assertThat(chatRoomRepository.findById(id).orElseThrow().getRetentionDays()).isNull();
+        }
+
+        @Test
+        @WithMockUser(username = "jane")
+        void retention_notOwner() throws Exception {
+            user("john", "john@mail.com");
+            user("jane", "jane@mail.com");
+            Long id = chatId("john", "room", "john", "jane");
+
+            jwt.when(JwtUtils::getCurrentUserUsername).thenReturn("jane");
+
+            mockMvc.perform(put("/api/v1/chats/{id}/retention", id)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(asJson(new RetentionDto(30))))
+                    .andExpect(status().isUnauthorized())
+                    .andExpect(jsonPath("$.errorMessage").value("Only the chat room owner can change how long messages are kept"));
+
+            assertThat(chatRoomRepository.findById(id).orElseThrow().getRetentionDays()).isNull();
+        }
+
+        @Test
+        @WithMockUser(username = "john")
+        void retention_outOfRange() throws Exception {
+            user("john", "john@mail.com");
+            Long id = chatId("john", "room", "john");
+
+            jwt.when(JwtUtils::getCurrentUserUsername).thenReturn("john");
+
+            mockMvc.perform(put("/api/v1/chats/{id}/retention", id)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(asJson(new RetentionDto(0))))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.errorMessage").value("Retention must be between 1 and 3650 days"));
+        }
+    }
+
     /* ===================================================================
      * PUT /api/v1/chats/{chatId}/members/{username}   (add member)
      * =================================================================== */
@@ -0,0 +1,78 @@
+package com.chat_room_app.chatroom;
+
+import com.chat_room_app.friends.FriendStatus;
+import com.chat_room_app.friends.FriendshipGraph;
+import com.chat_room_app.friends.FriendshipRepository;
+import com.chat_room_app.users.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RoomBlockIndexTest {
+
+    private static final Long ROOM_ID = 10L;
+
+    private FriendshipGraph friendshipGraph;
+    private RoomBlockIndex roomBlockIndex;
+    private User alice;
+    private User bob;
+    private User carol;
+
+    @BeforeEach
+    void setUp() {
+        friendshipGraph = new FriendshipGraph(Mockito.mock(FriendshipRepository.class));
+        roomBlockIndex = new RoomBlockIndex(Mockito.mock(ChatRoomRepository.class), friendshipGraph);
+        alice = user(1L, "alice");
+        bob = user(2L, "bob");
+        carol = user(3L, "carol");
+    }
+
+    @Test
+    void getRecipientsBlocking_ShouldListOnlyMembersBlockingTheSender() {
+        friendshipGraph.link(bob.getId(), alice.getId(), FriendStatus.BLOCKED);
+        roomBlockIndex.onMembersAdded(ROOM_ID, List.of(alice, bob, carol));
+
+        assertThat(roomBlockIndex.getRecipientsBlocking(ROOM_ID, "alice")).containsExactly("bob");
+        assertThat(roomBlockIndex.getRecipientsBlocking(ROOM_ID, "bob")).isEmpty();
+        assertThat(roomBlockIndex.getRecipientsBlocking(ROOM_ID, "carol")).isEmpty();
+    }
+
+    @Test
+    void onBlocksChanged_ShouldFollowBlockAndUnblock() {
+        roomBlockIndex.onMembersAdded(ROOM_ID, List.of(alice, bob, carol));
+
+        friendshipGraph.link(carol.getId(), alice.getId(), FriendStatus.BLOCKED);
+        roomBlockIndex.onBlocksChanged(carol.getId(), alice.getId());
+        assertThat(roomBlockIndex.getRecipientsBlocking(ROOM_ID, "alice")).containsExactly("carol");
+
+        friendshipGraph.unlink(carol.getId(), alice.getId());
+        roomBlockIndex.onBlocksChanged(carol.getId(), alice.getId());
+        assertThat(roomBlockIndex.getRecipientsBlocking(ROOM_ID, "alice")).isEmpty();
+    }
+
+    @Test
+    void onUserDeleted_ShouldDropTheUserFromEveryRoom() {
+        friendshipGraph.link(bob.getId(), alice.getId(), FriendStatus.BLOCKED);
+        roomBlockIndex.onMembersAdded(ROOM_ID, List.of(alice, bob));
+        roomBlockIndex.onMembersAdded(ROOM_ID + 1, List.of(alice, bob));
+
+        roomBlockIndex.onUserDeleted(bob.getId());
+
+        assertThat(roomBlockIndex.getRecipientsBlocking(ROOM_ID, "alice")).isEmpty();
+        assertThat(roomBlockIndex.getRecipientsBlocking(ROOM_ID + 1, "alice")).isEmpty();
+
+        // a new member reusing the freed slot must not inherit the deleted user's blocks
+        roomBlockIndex.onMembersAdded(ROOM_ID, List.of(carol));
+        assertThat(roomBlockIndex.getRecipientsBlocking(ROOM_ID, "alice")).isEmpty();
+    }
+
+    private static User user(Long id, String username) {
+        User user = new User(username, username + "@email.com", "password");
+        user.setId(id);
+        return user;
+    }
+}
@@ -0,0 +1,42 @@
+package com.chat_room_app.concurrency_limit;
+
+import com.chat_room_app.exceptions.custom_exceptions.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DbConcurrencyLimiterTest {
+
+    @Test
+    void limiterAtItsLimit_ShouldShedWith503() {
+        DbConcurrencyLimitProperties properties = new DbConcurrencyLimitProperties();
+        properties.setInitialLimit(2);
+        properties.setMinLimit(1);
+        DbConcurrencyLimiter limiter = new DbConcurrencyLimiter(properties, new SimpleMeterRegistry());
+
+        long first = limiter.acquire();
+        limiter.acquire();
+
+        assertThatThrownBy(limiter::acquire).isInstanceOf(ServiceUnavailableException.class);
+
+        limiter.release(first, false);
+        assertThat(limiter.getInFlight()).isEqualTo(1);
+        limiter.acquire();
+    }
+
+    @Test
+    void disabledLimiter_ShouldAdmitEverything() {
+        DbConcurrencyLimitProperties properties = new DbConcurrencyLimitProperties();
+        properties.setEnabled(false);
+        properties.setInitialLimit(1);
+        DbConcurrencyLimiter limiter = new DbConcurrencyLimiter(properties, new SimpleMeterRegistry());
+
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire();
+        }
+
+        assertThat(limiter.getInFlight()).isZero();
+    }
+}
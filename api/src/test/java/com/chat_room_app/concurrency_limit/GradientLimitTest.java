@@ -0,0 +1,66 @@
+package com.chat_room_app.concurrency_limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GradientLimitTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(20);
+
+    @Test
+    void steadyLatencyAtFullUse_ShouldGrowTheLimit() {
+        GradientLimit limit = new GradientLimit(10, 4, 200, 0.2, 1.5);
+
+        for (int i = 0; i < 50; i++) {
+            limit.onSample(FAST, limit.getLimit(), false);
+        }
+
+        assertThat(limit.getLimit()).isGreaterThan(10);
+    }
+
+    @Test
+    void risingLatency_ShouldShrinkTheLimitAndRecoverAfterwards() {
+        GradientLimit limit = new GradientLimit(50, 4, 200, 0.2, 1.5);
+        for (int i = 0; i < 200; i++) {
+            limit.onSample(FAST, limit.getLimit(), false);
+        }
+        int healthy = limit.getLimit();
+
+        for (int i = 0; i < 30; i++) {
+            limit.onSample(SLOW, limit.getLimit(), false);
+        }
+        int overloaded = limit.getLimit();
+        assertThat(overloaded).isLessThan(healthy);
+
+        for (int i = 0; i < 200; i++) {
+            limit.onSample(FAST, limit.getLimit(), false);
+        }
+        assertThat(limit.getLimit()).isGreaterThan(overloaded);
+    }
+
+    @Test
+    void mostlyIdleLimit_ShouldNotChange() {
+        GradientLimit limit = new GradientLimit(40, 4, 200, 0.2, 1.5);
+
+        for (int i = 0; i < 50; i++) {
+            limit.onSample(SLOW, 1, false);
+        }
+
+        assertThat(limit.getLimit()).isEqualTo(40);
+    }
+
+    @Test
+    void drops_ShouldBackOffButNotBelowTheMinimum() {
+        GradientLimit limit = new GradientLimit(10, 4, 200, 0.2, 1.5);
+
+        for (int i = 0; i < 50; i++) {
+            limit.onSample(FAST, limit.getLimit(), true);
+        }
+
+        assertThat(limit.getLimit()).isEqualTo(4);
+    }
+}
@@ -0,0 +1,103 @@
+package com.chat_room_app.concurrency_limit;
+
+import com.chat_room_app.datasource.AfterCommit;
+import com.chat_room_app.exceptions.custom_exceptions.ServiceUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Not @Transactional, every test opens its own transactions the way a request would
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class LimitedJpaTransactionManagerTest {
+
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired private DbConcurrencyLimiter dbConcurrencyLimiter;
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void transactionFromAController_ShouldHoldASlotUntilItCompletes() {
+        handleRequest(true);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                assertThat(dbConcurrencyLimiter.getInFlight()).isEqualTo(1));
+
+        assertThat(dbConcurrencyLimiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void transactionBeforeTheController_ShouldNotBeLimited() {
+        // what the JWT filter sees, a request that has not reached a handler yet
+        handleRequest(false);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                assertThat(dbConcurrencyLimiter.getInFlight()).isZero());
+
+        // and what schedulers and startup loads see
+        RequestContextHolder.resetRequestAttributes();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                assertThat(dbConcurrencyLimiter.getInFlight()).isZero());
+    }
+
+    @Test
+    void nestedAndAfterCommitTransactions_ShouldShareTheOuterSlot() {
+        handleRequest(true);
+        TransactionTemplate requiresNew = new TransactionTemplate(transactionManager);
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        List<Integer> inFlight = new ArrayList<>();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            requiresNew.executeWithoutResult(inner -> inFlight.add(dbConcurrencyLimiter.getInFlight()));
+            AfterCommit.run(() -> requiresNew.executeWithoutResult(inner -> inFlight.add(dbConcurrencyLimiter.getInFlight())));
+        });
+
+        assertThat(inFlight).containsExactly(1, 1);
+        assertThat(dbConcurrencyLimiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void limiterAtItsLimit_ShouldShedTheTransactionBeforeItStarts() {
+        int limit = dbConcurrencyLimiter.getLimit();
+        List<Long> held = new ArrayList<>();
+        for (int i = 0; i < limit; i++) {
+            held.add(dbConcurrencyLimiter.acquire());
+        }
+        try {
+            handleRequest(true);
+
+            assertThatThrownBy(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> { }))
+                    .isInstanceOf(ServiceUnavailableException.class);
+            assertThat(dbConcurrencyLimiter.getInFlight()).isEqualTo(limit);
+        }
+        finally {
+            held.forEach(start -> dbConcurrencyLimiter.release(start, false));
+        }
+    }
+
+    private static void handleRequest(boolean reachedController) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        if (reachedController) {
+            request.setAttribute(DbConcurrencyLimitInterceptor.LIMITED, Boolean.TRUE);
+        }
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+}
@@ -0,0 +1,102 @@
+package com.chat_room_app.concurrency_limit;
+
+import com.chat_room_app.auth.AuthDetails;
+import com.chat_room_app.users.User;
+import com.chat_room_app.users.UserRepository;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.java.Log;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pinning detector for the repository path, hammers it from virtual threads and records every time one of them
+ * blocked while pinned to its carrier. Tagged so it only runs with the pinning profile, which also passes
+ * -Djdk.tracePinnedThreads=full so the JVM prints the offending stacks:
+ * ./mvnw test -Ppinning
+ */
+@Tag("pinning")
+@SpringBootTest
+@ActiveProfiles("test")
+@Log
+class VirtualThreadPinningTest {
+
+    private static final int THREADS = 500;
+
+    @Autowired private UserRepository userRepository;
+    @Autowired private DbConcurrencyLimiter dbConcurrencyLimiter;
+
+    private User user;
+    private final List<RecordedEvent> pinned = new CopyOnWriteArrayList<>();
+    private RecordingStream recording;
+
+    @BeforeEach
+    void setUp() {
+        user = new User("pinned", "pinned@mail.com", "Password1!");
+        AuthDetails auth = new AuthDetails();
+        auth.setIsVerified(true);
+        auth.setAuthorities("ROLE_USER");
+        user.setAuthDetails(auth);
+        user = userRepository.save(user);
+
+        recording = new RecordingStream();
+        recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ofMillis(1)).withStackTrace();
+        recording.onEvent("jdk.VirtualThreadPinned", pinned::add);
+        recording.startAsync();
+    }
+
+    @AfterEach
+    void tearDown() {
+        recording.close();
+        userRepository.delete(user);
+    }
+
+    @Test
+    void repositoryCallsFromVirtualThreads_ShouldNotPinCarriers() throws InterruptedException {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < THREADS; i++) {
+                executor.submit(() -> {
+                    try {
+                        userRepository.findByUsername("pinned");
+                    }
+                    catch (RuntimeException e) {
+                        // pool timeouts are possible under this load, only pinning is checked
+                    }
+                });
+            }
+            executor.shutdown();
+            assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        }
+        // the stream delivers events asynchronously
+        Thread.sleep(1_500);
+
+        pinned.forEach(event -> log.warning("Pinned for " + event.getDuration() + " at\n" + describe(event)));
+        assertThat(pinned).isEmpty();
+        assertThat(dbConcurrencyLimiter.getInFlight()).isZero();
+    }
+
+    private static String describe(RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return "no stack trace";
+        }
+        return event.getStackTrace().getFrames().stream()
+                .map(frame -> "    " + frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                        + ":" + frame.getLineNumber())
+                .collect(Collectors.joining("\n"));
+    }
+}
@@ -0,0 +1,105 @@
+package com.chat_room_app.configs;
+
+import com.chat_room_app.auth.AuthDetails;
+import com.chat_room_app.chatroom.ChatRoom;
+import com.chat_room_app.chatroom.ChatRoomRepository;
+import com.chat_room_app.message.Message;
+import com.chat_room_app.message.MessageRepository;
+import com.chat_room_app.users.User;
+import com.chat_room_app.users.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Inserts go out in JDBC batches with ids from pooled sequences, so the statement count
+ * depends on batch_size and allocationSize rather than on how many rows are written.
+ * The statistics count every session, scheduling is off in the test profile so only these inserts show up
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class JdbcBatchingTest {
+
+    @Autowired private EntityManager entityManager;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private UserRepository userRepository;
+    @Autowired private ChatRoomRepository chatRoomRepository;
+    @Autowired private MessageRepository messageRepository;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void createRoomWithHundredMembers_ShouldUseAFewStatements() {
+        List<User> members = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            members.add(user("member" + i));
+        }
+        userRepository.saveAll(members);
+        entityManager.flush();
+        statistics.clear();
+
+        ChatRoom room = new ChatRoom();
+        room.setName("big room");
+        room.setChatRoomCreator("member0");
+        room.getMembers().addAll(members);
+        chatRoomRepository.save(room);
+        entityManager.flush();
+
+        // one sequence call, the room insert and two batches of membership rows
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(5);
+    }
+
+    @Test
+    void persistThousandMessages_ShouldUseAFewStatements() {
+        User sender = userRepository.save(user("sender"));
+        ChatRoom room = new ChatRoom();
+        room.setName("busy room");
+        room.setChatRoomCreator("sender");
+        room.getMembers().add(sender);
+        chatRoomRepository.save(room);
+        entityManager.flush();
+        statistics.clear();
+
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            Message message = new Message();
+            message.setContent("message " + i);
+            message.setSender("sender");
+            message.setChatRoom(room);
+            messages.add(message);
+        }
+        messageRepository.saveAll(messages);
+        entityManager.flush();
+
+        // 1,000 / 500 sequence calls and 1,000 / 50 insert batches
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(25);
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(1_000);
+    }
+
+    private User user(String username) {
+        User u = new User(username, username + "@mail.com", "Password1!");
+        AuthDetails auth = new AuthDetails();
+        auth.setIsVerified(true);
+        auth.setAuthorities("ROLE_USER");
+        u.setAuthDetails(auth);
+        return u;
+    }
+}
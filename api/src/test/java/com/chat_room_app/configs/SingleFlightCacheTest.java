@@ -0,0 +1,109 @@
+package com.chat_room_app.configs;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightCacheTest {
+
+    private SingleFlightCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new SingleFlightCache(new ConcurrentMapCache("test"));
+    }
+
+    @Test
+    void concurrentMisses_ShouldShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 50;
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> cache.get("room", () -> {
+                    loads.incrementAndGet();
+                    release.await();
+                    return "loaded";
+                })));
+            }
+            awaitInFlight(1);
+            Thread.sleep(50);
+            release.countDown();
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("loaded");
+            }
+        }
+
+        assertThat(loads).hasValue(1);
+        assertThat(cache.inFlightCount()).isZero();
+        assertThat(cache.get("room", String.class)).isEqualTo("loaded");
+    }
+
+    @Test
+    void evictDuringLoad_ShouldNotLeaveTheOldValueCached() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> stale = executor.submit(() -> cache.get("room", () -> {
+                release.await();
+                return "before change";
+            }));
+            awaitInFlight(1);
+
+            cache.evict("room");
+            // a caller after the change starts its own load instead of joining the old one
+            assertThat(cache.get("room", () -> "after change")).isEqualTo("after change");
+
+            release.countDown();
+            assertThat(stale.get(5, TimeUnit.SECONDS)).isEqualTo("before change");
+        }
+
+        Cache.ValueWrapper cached = cache.get("room");
+        assertThat(cached == null || "after change".equals(cached.get())).isTrue();
+    }
+
+    @Test
+    void failedLoad_ShouldBeSeenByEveryWaitingCaller() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> leader = executor.submit(() -> cache.get("room", () -> {
+                release.await();
+                throw new IllegalStateException("not found");
+            }));
+            awaitInFlight(1);
+            Future<String> follower = executor.submit(() -> cache.get("room", () -> "never called"));
+            Thread.sleep(50);
+            release.countDown();
+
+            assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("not found");
+            assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("not found");
+        }
+
+        assertThat(cache.get("room")).isNull();
+        assertThat(cache.get("room", () -> "retried")).isEqualTo("retried");
+    }
+
+    private void awaitInFlight(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (cache.inFlightCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(cache.inFlightCount()).isEqualTo(count);
+    }
+}
@@ -0,0 +1,148 @@
+package com.chat_room_app.datasource;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two in-memory H2 databases stand in for the primary and the replica, each knows its own name.
+ * Transactions go through JpaTransactionManager like the application's, which binds the connection
+ * before the transaction is marked read only
+ */
+class ReadWriteRoutingDataSourceTest {
+
+    private static final String SERVICE_READ = "com.chat_room_app.users.UserService.getUserProfile";
+    private static final String REPOSITORY_READ = "org.springframework.data.jpa.repository.support.SimpleJpaRepository.findById";
+
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+    private ReplicaLagMonitor replicaLagMonitor;
+    private LocalContainerEntityManagerFactoryBean entityManagerFactoryBean;
+    private EntityManager entityManager;
+    private JpaTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        DataSource primaryDataSource = h2("primary");
+        DataSource replicaDataSource = h2("replica");
+        primary = new JdbcTemplate(primaryDataSource);
+        replica = new JdbcTemplate(replicaDataSource);
+        primary.execute("CREATE TABLE node (name VARCHAR(20))");
+        primary.update("INSERT INTO node VALUES ('primary')");
+        replica.execute("CREATE TABLE node (name VARCHAR(20))");
+        replica.update("INSERT INTO node VALUES ('replica')");
+        replica.execute("CREATE TABLE replica_lag (seconds DOUBLE)");
+        replica.update("INSERT INTO replica_lag VALUES (0)");
+
+        replicaLagMonitor = new ReplicaLagMonitor(replicaDataSource, "SELECT seconds FROM replica_lag", Duration.ofSeconds(2));
+        replicaLagMonitor.probe();
+        RecentWriteTracker recentWriteTracker = new RecentWriteTracker(Duration.ofMinutes(1));
+        DataSource routing = new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(primaryDataSource,
+                replicaDataSource, replicaLagMonitor, recentWriteTracker, List.of("com.chat_room_app")));
+        entityManagerFactoryBean = new LocalContainerEntityManagerFactoryBean();
+        entityManagerFactoryBean.setDataSource(routing);
+        entityManagerFactoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        entityManagerFactoryBean.setPackagesToScan(ReadWriteRoutingDataSourceTest.class.getPackageName());
+        entityManagerFactoryBean.afterPropertiesSet();
+        EntityManagerFactory entityManagerFactory = entityManagerFactoryBean.getObject();
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+        transactionManager = new JpaTransactionManager(entityManagerFactory);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        entityManagerFactoryBean.destroy();
+        primary.execute("DROP ALL OBJECTS");
+        replica.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void readOnlyServiceTransaction_ShouldUseReplica() {
+        assertThat(read(SERVICE_READ, true)).isEqualTo("replica");
+    }
+
+    @Test
+    void writeTransaction_ShouldUsePrimary() {
+        assertThat(read(SERVICE_READ, false)).isEqualTo("primary");
+    }
+
+    @Test
+    void readOnlyRepositoryDefault_ShouldUsePrimary() {
+        assertThat(read(REPOSITORY_READ, true)).isEqualTo("primary");
+    }
+
+    @Test
+    void laggingReplica_ShouldFallBackToPrimary() {
+        replica.update("UPDATE replica_lag SET seconds = 10");
+        replicaLagMonitor.probe();
+
+        assertThat(read(SERVICE_READ, true)).isEqualTo("primary");
+
+        replica.update("UPDATE replica_lag SET seconds = 0.5");
+        replicaLagMonitor.probe();
+
+        assertThat(read(SERVICE_READ, true)).isEqualTo("replica");
+    }
+
+    @Test
+    void unreachableReplica_ShouldFallBackToPrimary() {
+        replica.execute("DROP TABLE replica_lag");
+        replicaLagMonitor.probe();
+
+        assertThat(replicaLagMonitor.isReplicaUsable()).isFalse();
+        assertThat(read(SERVICE_READ, true)).isEqualTo("primary");
+    }
+
+    @Test
+    void userWhoJustWrote_ShouldReadTheirWritesFromPrimary() {
+        authenticate("john");
+        read(SERVICE_READ, false);
+
+        assertThat(read(SERVICE_READ, true)).isEqualTo("primary");
+
+        authenticate("jane");
+        assertThat(read(SERVICE_READ, true)).isEqualTo("replica");
+    }
+
+    @Test
+    void primaryReads_ShouldUsePrimaryForAReadOnlyServiceTransaction() throws Exception {
+        assertThat(PrimaryReads.call(() -> read(SERVICE_READ, true))).isEqualTo("primary");
+
+        assertThat(read(SERVICE_READ, true)).isEqualTo("replica");
+    }
+
+    private String read(String transactionName, boolean readOnly) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setName(transactionName);
+        transaction.setReadOnly(readOnly);
+        return transaction.execute(status -> (String) entityManager.createNativeQuery("SELECT name FROM node").getSingleResult());
+    }
+
+    private static void authenticate(String username) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(username, null, List.of()));
+    }
+
+    private static DataSource h2(String name) {
+        return new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+}
@@ -0,0 +1,133 @@
+package com.chat_room_app.email.outbox;
+
+import com.chat_room_app.email.ChatterBoxEmailService;
+import com.chat_room_app.email.dtos.EmailBatchItemResultDto;
+import com.chat_room_app.email.dtos.EmailBatchResponseDto;
+import com.chat_room_app.email.exceptions.EmailRejectedException;
+import com.chat_room_app.email.exceptions.EmailServiceUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+/**
+ * Not @Transactional, claims and results commit on their own like they do under the scheduler
+ */
+@SpringBootTest(properties = {
+        "email.outbox.max-attempts=3",
+        "email.outbox.initial-backoff=PT10S",
+        "email.outbox.max-backoff=PT15S"
+})
+@ActiveProfiles("test")
+class EmailOutboxDispatcherTest {
+
+    @MockBean private ChatterBoxEmailService chatterBoxEmailService;
+
+    @Autowired private EmailOutbox emailOutbox;
+    @Autowired private EmailOutboxDispatcher emailOutboxDispatcher;
+    @Autowired private EmailOutboxRepository emailOutboxRepository;
+
+    @AfterEach
+    void tearDown() {
+        emailOutboxRepository.deleteAll();
+    }
+
+    @Test
+    void claimDue_ShouldLeaseClaimedRowsUntilTheLeaseRunsOut() {
+        emailOutbox.enqueue(EmailType.VERIFY, "claim@email.com", "claimer", "123456");
+
+        assertThat(emailOutbox.claimDue(10, Duration.ofMinutes(1))).hasSize(1);
+        assertThat(emailOutbox.claimDue(10, Duration.ofMinutes(1))).isEmpty();
+
+        makeDue("claimer");
+        assertThat(emailOutbox.claimDue(10, Duration.ofMinutes(1))).extracting(OutboxEmail::username).containsExactly("claimer");
+    }
+
+    @Test
+    void dispatch_WhenAccepted_ShouldMarkSent() {
+        emailOutbox.enqueue(EmailType.VERIFY, "sent@email.com", "sender", "123456");
+        when(chatterBoxEmailService.sendBatch(anyList()))
+                .thenReturn(new EmailBatchResponseDto(List.of(new EmailBatchItemResultDto(0, "ACCEPTED", null))));
+
+        emailOutboxDispatcher.dispatch();
+
+        EmailOutboxMessage message = find("sender");
+        assertThat(message.getStatus()).isEqualTo(EmailOutboxStatus.SENT);
+        assertThat(message.getAttempts()).isEqualTo(1);
+        assertThat(message.getSentAt()).isNotNull();
+    }
+
+    @Test
+    void dispatch_WhenTheServiceIsDown_ShouldBackOffThenGiveUp() {
+        emailOutbox.enqueue(EmailType.VERIFY, "retry@email.com", "retrier", "123456");
+        when(chatterBoxEmailService.sendBatch(anyList())).thenThrow(new EmailServiceUnavailableException("down"));
+
+        LocalDateTime beforeFirst = LocalDateTime.now();
+        emailOutboxDispatcher.dispatch();
+        EmailOutboxMessage first = find("retrier");
+        assertThat(first.getStatus()).isEqualTo(EmailOutboxStatus.PENDING);
+        assertThat(first.getAttempts()).isEqualTo(1);
+        assertThat(first.getLastError()).isEqualTo("down");
+        // 10s plus up to 20% jitter
+        assertThat(first.getNextAttemptAt()).isBetween(beforeFirst.plusSeconds(10), LocalDateTime.now().plusSeconds(12));
+
+        makeDue("retrier");
+        LocalDateTime beforeSecond = LocalDateTime.now();
+        emailOutboxDispatcher.dispatch();
+        EmailOutboxMessage second = find("retrier");
+        assertThat(second.getAttempts()).isEqualTo(2);
+        // doubled to 20s, capped at 15s
+        assertThat(second.getNextAttemptAt()).isBetween(beforeSecond.plusSeconds(15), LocalDateTime.now().plusSeconds(18));
+
+        makeDue("retrier");
+        emailOutboxDispatcher.dispatch();
+        EmailOutboxMessage last = find("retrier");
+        assertThat(last.getStatus()).isEqualTo(EmailOutboxStatus.FAILED);
+        assertThat(last.getAttempts()).isEqualTo(3);
+    }
+
+    @Test
+    void dispatch_WhenAnItemIsRejected_ShouldFailItWithoutRetrying() {
+        emailOutbox.enqueue(EmailType.VERIFY, "not-an-email", "rejected", "123456");
+        when(chatterBoxEmailService.sendBatch(anyList()))
+                .thenReturn(new EmailBatchResponseDto(List.of(new EmailBatchItemResultDto(0, "REJECTED", "invalid address"))));
+
+        emailOutboxDispatcher.dispatch();
+
+        EmailOutboxMessage message = find("rejected");
+        assertThat(message.getStatus()).isEqualTo(EmailOutboxStatus.FAILED);
+        assertThat(message.getLastError()).isEqualTo("invalid address");
+    }
+
+    @Test
+    void dispatch_WhenTheWholeRequestIsRejected_ShouldRetry() {
+        emailOutbox.enqueue(EmailType.VERIFY, "throttled@email.com", "throttled", "123456");
+        when(chatterBoxEmailService.sendBatch(anyList())).thenThrow(new EmailRejectedException("401 UNAUTHORIZED"));
+
+        emailOutboxDispatcher.dispatch();
+
+        EmailOutboxMessage message = find("throttled");
+        assertThat(message.getStatus()).isEqualTo(EmailOutboxStatus.PENDING);
+        assertThat(message.getAttempts()).isEqualTo(1);
+    }
+
+    private EmailOutboxMessage find(String username) {
+        return emailOutboxRepository.findByTypeAndUsername(EmailType.VERIFY, username).orElseThrow();
+    }
+
+    private void makeDue(String username) {
+        EmailOutboxMessage message = find(username);
+        message.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+        emailOutboxRepository.save(message);
+    }
+}
@@ -0,0 +1,86 @@
+package com.chat_room_app.friends;
+
+import com.chat_room_app.chatroom.ChatRoomRepository;
+import com.chat_room_app.chatroom.dtos.ChatRoomMembershipDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+class FriendSuggestionEngineTest {
+
+    private static final Long ME = 1L;
+
+    private FriendshipGraph friendshipGraph;
+    private ChatRoomRepository chatRoomRepository;
+    private FriendSuggestionEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        friendshipGraph = new FriendshipGraph(Mockito.mock(FriendshipRepository.class));
+        chatRoomRepository = Mockito.mock(ChatRoomRepository.class);
+
+        // my friends 2 and 3 are also friends with each other
+        friendshipGraph.link(ME, 2L, FriendStatus.ACCEPTED);
+        friendshipGraph.link(3L, ME, FriendStatus.ACCEPTED);
+        friendshipGraph.link(2L, 3L, FriendStatus.ACCEPTED);
+        // 4 is a friend of both 2 and 3, 5 only of 2
+        friendshipGraph.link(2L, 4L, FriendStatus.ACCEPTED);
+        friendshipGraph.link(3L, 4L, FriendStatus.ACCEPTED);
+        friendshipGraph.link(2L, 5L, FriendStatus.ACCEPTED);
+        // 7 is a friend of 2 that I already sent a request to
+        friendshipGraph.link(2L, 7L, FriendStatus.ACCEPTED);
+        friendshipGraph.link(ME, 7L, FriendStatus.PENDING);
+        // 5 and 6 share a room with me
+        when(chatRoomRepository.findMembershipsAfter(anyLong(), anyLong(), any())).thenReturn(List.of(
+                new ChatRoomMembershipDto(100L, ME, "me"),
+                new ChatRoomMembershipDto(100L, 5L, "five"),
+                new ChatRoomMembershipDto(100L, 6L, "six")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void getSuggestions_ShouldRankByMutualFriendsThenSharedRoomsExcludingFriendsAndSelf() {
+        engine = new FriendSuggestionEngine(friendshipGraph, chatRoomRepository, 20);
+        engine.refreshAll();
+
+        List<FriendSuggestionEngine.Suggestion> suggestions = engine.getSuggestions(ME);
+
+        assertThat(suggestions).extracting(FriendSuggestionEngine.Suggestion::userId).containsExactly(4L, 5L, 6L);
+        assertThat(suggestions.get(0).mutualFriends()).isEqualTo(2);
+        assertThat(suggestions.get(1).mutualFriends()).isEqualTo(1);
+        assertThat(suggestions.get(1).sharedChatRooms()).isEqualTo(1);
+        assertThat(suggestions.get(2).sharedChatRooms()).isEqualTo(1);
+    }
+
+    @Test
+    void getSuggestions_ShouldKeepOnlyTheTopK() {
+        engine = new FriendSuggestionEngine(friendshipGraph, chatRoomRepository, 2);
+        engine.refreshAll();
+
+        assertThat(engine.getSuggestions(ME)).extracting(FriendSuggestionEngine.Suggestion::userId).containsExactly(4L, 5L);
+    }
+
+    @Test
+    void getSuggestions_ShouldDropCandidatesOnceTheyBecomeFriends() {
+        engine = new FriendSuggestionEngine(friendshipGraph, chatRoomRepository, 20);
+        engine.refreshAll();
+
+        friendshipGraph.link(ME, 4L, FriendStatus.ACCEPTED);
+        engine.markStale(ME, 4L);
+
+        assertThat(engine.getSuggestions(ME)).extracting(FriendSuggestionEngine.Suggestion::userId)
+                .doesNotContain(ME, 2L, 3L, 4L, 7L);
+    }
+}
@@ -0,0 +1,68 @@
+package com.chat_room_app.friends;
+
+import com.chat_room_app.auth.AuthDetails;
+import com.chat_room_app.friends.dtos.FriendshipDto;
+import com.chat_room_app.friends.dtos.FriendshipPageDto;
+import com.chat_room_app.users.User;
+import com.chat_room_app.users.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class FriendshipCacheTest {
+
+    @Autowired private FriendshipService friendshipService;
+    @Autowired private UserRepository userRepository;
+
+    private User alice;
+    private User bob;
+
+    @BeforeEach
+    void setUp() {
+        alice = saveUser("CacheAlice");
+        bob = saveUser("CacheBob");
+    }
+
+    @Test
+    void firstPage_ShouldBeServedFromTheCache() {
+        FriendshipPageDto first = friendshipService.getFriends(alice.getId(), 50, null);
+
+        assertThat(friendshipService.getFriends(alice.getId(), 50, null)).isSameAs(first);
+        assertThat(friendshipService.getFriends(alice.getId(), 10, null)).isNotSameAs(first);
+    }
+
+    @Test
+    void relationshipChanges_ShouldEvictBothUsersLists() {
+        assertThat(friendshipService.getFriends(alice.getId(), 50, null).friendships()).isEmpty();
+        assertThat(friendshipService.getFriendRequests(bob.getId(), 50, null).friendships()).isEmpty();
+
+        FriendshipDto request = friendshipService.requestFriendship(alice.getId(), bob.getId());
+        assertThat(friendshipService.getFriendRequests(bob.getId(), 50, null).friendships()).hasSize(1);
+
+        friendshipService.acceptFriendship(request.id());
+        assertThat(friendshipService.getFriends(alice.getId(), 50, null).friendships()).hasSize(1);
+        assertThat(friendshipService.getFriends(bob.getId(), 50, null).friendships()).hasSize(1);
+        assertThat(friendshipService.getFriendRequests(bob.getId(), 50, null).friendships()).isEmpty();
+
+        friendshipService.blockUser(alice.getId(), bob.getId());
+        assertThat(friendshipService.getFriends(bob.getId(), 50, null).friendships()).isEmpty();
+        assertThat(friendshipService.getBlockedUsers(alice.getId(), 50, null).friendships()).hasSize(1);
+    }
+
+    private User saveUser(String username) {
+        User user = new User(username, username.toLowerCase() + "@email.com", "password");
+        AuthDetails auth = new AuthDetails();
+        auth.setIsVerified(true);
+        auth.setAuthorities("ROLE_USER");
+        user.setAuthDetails(auth);
+        return userRepository.save(user);
+    }
+}
@@ -404,6 +404,64 @@ class FriendshipControllerTest {
                     .andExpect(jsonPath("$[*].status").value(org.hamcrest.Matchers.everyItem(org.hamcrest.Matchers.is("ACCEPTED"))));
         }
 
+        @Test
+        @WithMockUser(username = "john")
+        @DisplayName("Get friends with limit pages newest first → 200 OK with X-Next-Cursor")
+        void getFriends_paged() throws Exception {
+            User john = createVerifiedUser("john", "john@email.com");
+            User jane = createVerifiedUser("jane", "jane@email.com");
+            User bob = createVerifiedUser("bob", "bob@email.com");
+
+            Friendship older = new Friendship();
+            older.setRequester(john);
+            older.setReceiver(jane);
+            older.setStatus(FriendStatus.ACCEPTED);
+            older.setCreatedAt(java.time.LocalDateTime.now().minusDays(1));
+            friendshipRepository.save(older);
+
+            Friendship newer = new Friendship();
+            newer.setRequester(bob);
+            newer.setReceiver(john);
+            newer.setStatus(FriendStatus.ACCEPTED);
+            friendshipRepository.save(newer);
+
+            jwtUtilsMock.when(JwtUtils::getCurrentUserId).thenReturn(john.getId());
+
+            String cursor = mockMvc
+                    .perform(get("/api/v1/friends").param("limit", "1"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(1)))
+                    .andExpect(jsonPath("$[0].friend.username").value("bob"))
+                    .andExpect(header().exists("X-Next-Cursor"))
+                    .andReturn().getResponse().getHeader("X-Next-Cursor");
+
+            mockMvc
+                    .perform(get("/api/v1/friends").param("limit", "1").param("cursor", cursor))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(1)))
+                    .andExpect(jsonPath("$[0].friend.username").value("jane"))
+                    .andExpect(header().doesNotExist("X-Next-Cursor"));
+        }
+
+        @Test
+        @WithMockUser(username = "john")
+        @DisplayName("Get friends with a matching If-None-Match → 304 NOT MODIFIED")
+        void getFriends_notModified() throws Exception {
+            User john = createVerifiedUser("john", "john@email.com");
+
+            jwtUtilsMock.when(JwtUtils::getCurrentUserId).thenReturn(john.getId());
+
+            String eTag = mockMvc
+                    .perform(get("/api/v1/friends"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().exists("ETag"))
+                    .andReturn().getResponse().getHeader("ETag");
+
+            mockMvc
+                    .perform(get("/api/v1/friends").header("If-None-Match", eTag))
+                    .andExpect(status().isNotModified());
+        }
+
         @Test
         @WithMockUser(username = "jane")
         @DisplayName("Get friend requests returns pending requests → 200 OK")
@@ -436,6 +494,21 @@ class FriendshipControllerTest {
                     .andExpect(jsonPath("$[0].friend.username").value("john")); // The requester
         }
 
+        @Test
+        @WithMockUser(username = "john")
+        @DisplayName("Get suggestions for a user without friends or rooms → 200 OK empty")
+        void getSuggestions_none() throws Exception {
+            User john = createVerifiedUser("john", "john@email.com");
+            createVerifiedUser("jane", "jane@email.com");
+
+            jwtUtilsMock.when(JwtUtils::getCurrentUserId).thenReturn(john.getId());
+
+            mockMvc
+                    .perform(get("/api/v1/friends/suggestions"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(0)));
+        }
+
         @Test
         @WithMockUser(username = "john")
         @DisplayName("Get blocked users returns blocked users → 200 OK")
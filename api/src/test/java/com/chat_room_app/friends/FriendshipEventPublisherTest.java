@@ -0,0 +1,93 @@
+package com.chat_room_app.friends;
+
+import com.chat_room_app.auth.AuthDetails;
+import com.chat_room_app.friends.dtos.FriendIdAndNameDto;
+import com.chat_room_app.friends.dtos.FriendshipDto;
+import com.chat_room_app.friends.dtos.FriendshipEventDto;
+import com.chat_room_app.users.User;
+import com.chat_room_app.users.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Not @Transactional, events only go out once the service's transaction commits
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class FriendshipEventPublisherTest {
+
+    @MockBean private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired private FriendshipService friendshipService;
+    @Autowired private FriendshipRepository friendshipRepository;
+    @Autowired private FriendshipGraph friendshipGraph;
+    @Autowired private UserRepository userRepository;
+    @Autowired private TransactionTemplate transactionTemplate;
+
+    private User alice;
+    private User bob;
+
+    @BeforeEach
+    void setUp() {
+        alice = saveUser("EventAlice");
+        bob = saveUser("EventBob");
+    }
+
+    @AfterEach
+    void tearDown() {
+        friendshipRepository.findByRequesterIdAndReceiverId(alice.getId(), bob.getId()).ifPresent(friendshipRepository::delete);
+        friendshipGraph.removeUser(alice.getId());
+        friendshipGraph.removeUser(bob.getId());
+        userRepository.delete(alice);
+        userRepository.delete(bob);
+    }
+
+    @Test
+    void requestAndAccept_ShouldPushToBothUsers() {
+        FriendshipDto request = friendshipService.requestFriendship(alice.getId(), bob.getId());
+
+        verify(messagingTemplate).convertAndSendToUser(eq("EventBob"), eq(FriendshipEventPublisher.FRIENDS_QUEUE),
+                eq(new FriendshipEventDto(FriendshipEventType.REQUESTED, request.id(), new FriendIdAndNameDto(alice.getId(), "EventAlice"))));
+        verify(messagingTemplate).convertAndSendToUser(eq("EventAlice"), eq(FriendshipEventPublisher.FRIENDS_QUEUE),
+                eq(new FriendshipEventDto(FriendshipEventType.REQUESTED, request.id(), new FriendIdAndNameDto(bob.getId(), "EventBob"))));
+
+        friendshipService.acceptFriendship(request.id());
+
+        verify(messagingTemplate).convertAndSendToUser(eq("EventAlice"), eq(FriendshipEventPublisher.FRIENDS_QUEUE),
+                eq(new FriendshipEventDto(FriendshipEventType.ACCEPTED, request.id(), new FriendIdAndNameDto(bob.getId(), "EventBob"))));
+        verify(messagingTemplate).convertAndSendToUser(eq("EventBob"), eq(FriendshipEventPublisher.FRIENDS_QUEUE),
+                eq(new FriendshipEventDto(FriendshipEventType.ACCEPTED, request.id(), new FriendIdAndNameDto(alice.getId(), "EventAlice"))));
+    }
+
+    @Test
+    void rolledBackChange_ShouldPushNothing() {
+        transactionTemplate.executeWithoutResult(status -> {
+            friendshipService.requestFriendship(alice.getId(), bob.getId());
+            status.setRollbackOnly();
+        });
+
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any());
+    }
+
+    private User saveUser(String username) {
+        User user = new User(username, username.toLowerCase() + "@email.com", "password");
+        AuthDetails auth = new AuthDetails();
+        auth.setIsVerified(true);
+        auth.setAuthorities("ROLE_USER");
+        user.setAuthDetails(auth);
+        return userRepository.save(user);
+    }
+}
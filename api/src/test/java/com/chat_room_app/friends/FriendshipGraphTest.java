@@ -0,0 +1,138 @@
+package com.chat_room_app.friends;
+
+import com.chat_room_app.friends.dtos.FriendshipEdgeDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FriendshipGraphTest {
+
+    private FriendshipGraph graph;
+
+    @BeforeEach
+    void setUp() {
+        graph = new FriendshipGraph(Mockito.mock(FriendshipRepository.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void link_ShouldTrackRequestsAndFriendshipsBothWays() {
+        graph.link(1L, 2L, FriendStatus.PENDING);
+
+        assertThat(graph.getRelationshipStatus(1L, 2L)).isEqualTo(FriendStatus.PENDING);
+        assertThat(graph.getRelationshipStatus(2L, 1L)).isEqualTo(FriendStatus.PENDING);
+        assertThat(graph.getFriendIds(1L)).isEmpty();
+
+        graph.link(1L, 2L, FriendStatus.ACCEPTED);
+
+        assertThat(graph.getRelationshipStatus(1L, 2L)).isEqualTo(FriendStatus.ACCEPTED);
+        assertThat(graph.getFriendIds(1L)).containsExactly(2L);
+        assertThat(graph.getFriendIds(2L)).containsExactly(1L);
+        assertThat(graph.isConnected(2L, 1L)).isTrue();
+    }
+
+    @Test
+    void unlink_ShouldDropAnAcceptedFriendshipWhoeverRequestedIt() {
+        graph.link(1L, 2L, FriendStatus.ACCEPTED);
+
+        graph.unlink(2L, 1L);
+
+        assertThat(graph.getRelationshipStatus(1L, 2L)).isEqualTo(FriendStatus.NONE);
+        assertThat(graph.getFriendIds(1L)).isEmpty();
+        assertThat(graph.getFriendIds(2L)).isEmpty();
+        assertThat(graph.isConnected(1L, 2L)).isFalse();
+    }
+
+    @Test
+    void link_Blocked_ShouldOnlyBlockOneWay() {
+        graph.link(1L, 2L, FriendStatus.ACCEPTED);
+
+        graph.link(1L, 2L, FriendStatus.BLOCKED);
+
+        assertThat(graph.getFriendIds(1L)).isEmpty();
+        assertThat(graph.getBlockedIds(1L)).containsExactly(2L);
+        assertThat(graph.getBlockedByIds(2L)).containsExactly(1L);
+        assertThat(graph.isBlockedBy(2L, 1L)).isTrue();
+        assertThat(graph.isBlockedBy(1L, 2L)).isFalse();
+        assertThat(graph.isBlockedEitherWay(1L, 2L)).isTrue();
+    }
+
+    @Test
+    void getMutualFriendIds_ShouldIntersectFriendSets() {
+        graph.link(1L, 3L, FriendStatus.ACCEPTED);
+        graph.link(1L, 4L, FriendStatus.ACCEPTED);
+        graph.link(2L, 3L, FriendStatus.ACCEPTED);
+        graph.link(5L, 2L, FriendStatus.ACCEPTED);
+
+        assertThat(graph.getMutualFriendIds(1L, 2L)).containsExactly(3L);
+        assertThat(graph.getMutualFriendIds(1L, 99L)).isEmpty();
+    }
+
+    @Test
+    void removeUser_ShouldDropEveryEdgePointingAtThem() {
+        graph.link(1L, 2L, FriendStatus.ACCEPTED);
+        graph.link(3L, 1L, FriendStatus.BLOCKED);
+        graph.link(4L, 1L, FriendStatus.PENDING);
+        String versionBefore = graph.getVersionTag(2L);
+
+        graph.removeUser(1L);
+
+        assertThat(graph.getFriendIds(2L)).isEmpty();
+        assertThat(graph.getBlockedIds(3L)).isEmpty();
+        assertThat(graph.getRelationshipStatus(4L, 1L)).isEqualTo(FriendStatus.NONE);
+        assertThat(graph.getUserIds()).doesNotContain(1L);
+        assertThat(graph.getVersionTag(2L)).isNotEqualTo(versionBefore);
+    }
+
+    @Test
+    void load_ShouldKeepChangesCommittedWhileItRuns() {
+        FriendshipRepository repository = Mockito.mock(FriendshipRepository.class);
+        graph = new FriendshipGraph(repository);
+        // the batch was read before the unblock, the accept and the delete committed
+        Mockito.when(repository.findEdgesAfter(Mockito.anyLong(), Mockito.any())).thenAnswer(invocation -> {
+            graph.unlink(1L, 2L);
+            graph.link(3L, 4L, FriendStatus.ACCEPTED);
+            graph.removeUser(5L);
+            return List.of(
+                    new FriendshipEdgeDto(1L, 1L, 2L, FriendStatus.BLOCKED),
+                    new FriendshipEdgeDto(2L, 3L, 4L, FriendStatus.PENDING),
+                    new FriendshipEdgeDto(3L, 5L, 6L, FriendStatus.ACCEPTED));
+        });
+
+        graph.load();
+
+        assertThat(graph.isBlockedEitherWay(1L, 2L)).isFalse();
+        assertThat(graph.getFriendIds(3L)).containsExactly(4L);
+        assertThat(graph.getRelationshipStatus(4L, 3L)).isEqualTo(FriendStatus.ACCEPTED);
+        graph.unlink(3L, 4L);
+        assertThat(graph.getRelationshipStatus(4L, 3L)).isEqualTo(FriendStatus.NONE);
+        assertThat(graph.getFriendIds(6L)).isEmpty();
+        assertThat(graph.getUserIds()).doesNotContain(5L);
+    }
+
+    @Test
+    void changes_ShouldOnlyApplyOnceTheTransactionCommits() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        graph.link(1L, 2L, FriendStatus.ACCEPTED);
+        assertThat(graph.getFriendIds(1L)).isEmpty();
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        assertThat(graph.getFriendIds(1L)).containsExactly(2L);
+    }
+}
@@ -0,0 +1,195 @@
+package com.chat_room_app.message;
+
+import com.chat_room_app.auth.AuthDetails;
+import com.chat_room_app.chatroom.ChatRoom;
+import com.chat_room_app.chatroom.ChatRoomRepository;
+import com.chat_room_app.chatroom.ChatRoomService;
+import com.chat_room_app.chatroom.dtos.ChatRoomDto;
+import com.chat_room_app.exceptions.custom_exceptions.NotFound404Exception;
+import com.chat_room_app.exceptions.custom_exceptions.UnAuthorized401Exception;
+import com.chat_room_app.message.dtos.MessageDto;
+import com.chat_room_app.message.dtos.MessageHistoryPageDto;
+import com.chat_room_app.message.dtos.UpdateMessageDto;
+import com.chat_room_app.users.User;
+import com.chat_room_app.users.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Not @Transactional, every archive block commits on its own
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class MessageArchiverTest {
+
+    @Autowired private MessageArchiver messageArchiver;
+    @Autowired private MessageArchiveProperties properties;
+    @Autowired private MessageService messageService;
+    @Autowired private MessageRepository messageRepository;
+    @Autowired private MessageArchiveRepository messageArchiveRepository;
+    @Autowired private ChatRoomRepository chatRoomRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private ChatRoomService chatRoomService;
+
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    private int originalBlockSize;
+    private User member;
+    private ChatRoom room;
+
+    @BeforeEach
+    void setUp() {
+        originalBlockSize = properties.getBlockSize();
+        properties.setBlockSize(3);
+
+        member = new User("archivist", "archivist@email.com", "password");
+        AuthDetails auth = new AuthDetails();
+        auth.setIsVerified(true);
+        auth.setAuthorities("ROLE_USER");
+        member.setAuthDetails(auth);
+        member = userRepository.save(member);
+
+        room = new ChatRoom();
+        room.setName("cold room");
+        room.setChatRoomCreator(member.getUsername());
+        room.setMembers(new HashSet<>(Set.of(member)));
+        room = chatRoomRepository.save(room);
+    }
+
+    @AfterEach
+    void tearDown() {
+        properties.setBlockSize(originalBlockSize);
+        messageArchiveRepository.deleteByChatRoomId(room.getId());
+        chatRoomRepository.deleteById(room.getId());
+        userRepository.delete(member);
+    }
+
+    @Test
+    void codec_ShouldRoundTripMessages() {
+        LocalDateTime created = LocalDateTime.of(2024, 3, 1, 10, 15, 30, 123_456_789);
+        List<ArchivedMessage> messages = List.of(
+                new ArchivedMessage(1L, "archivist", created, "hello"),
+                new ArchivedMessage(2L, "someone", created.plusMinutes(1), "héllo again, with ünïcode"),
+                new ArchivedMessage(3L, "archivist", created.plusMinutes(2), null));
+
+        assertThat(MessageArchiveCodec.decode(MessageArchiveCodec.encode(messages))).isEqualTo(messages);
+    }
+
+    @Test
+    void archiveRoom_ShouldMoveOnlyOldMessagesIntoBlocks() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Message> old = saveMessages(now.minusDays(60), 7);
+        saveMessages(now.minusDays(1), 2);
+
+        long archived = messageArchiver.archiveRoom(room.getId(), now.minusDays(30));
+
+        assertThat(archived).isEqualTo(7);
+        assertThat(messageRepository.findHistoryBefore(room.getId(), LATEST, Long.MAX_VALUE, Pageable.unpaged())).hasSize(2);
+        List<MessageArchiveBlock> blocks = messageArchiveRepository.findBlocksBefore(room.getId(), LATEST, Long.MAX_VALUE, Pageable.unpaged());
+        assertThat(blocks).hasSize(3);
+        assertThat(blocks).extracting(MessageArchiveBlock::getMessageCount).containsExactly(1, 3, 3);
+        assertThat(blocks.getLast().getFirstCreated()).isEqualTo(old.getFirst().getCreated());
+    }
+
+    @Test
+    void getHistory_ShouldContinueIntoArchivedBlocks() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Message> old = saveMessages(now.minusDays(60), 7);
+        List<Message> recent = saveMessages(now.minusDays(1), 2);
+        messageArchiver.archiveRoom(room.getId(), now.minusDays(30));
+
+        MessageHistoryPageDto first = messageService.getHistory(room.getId(), member.getUsername(), null, 5);
+        assertThat(first.messages()).extracting(MessageDto::id).containsExactly(
+                recent.get(1).getId(), recent.get(0).getId(), old.get(6).getId(), old.get(5).getId(), old.get(4).getId());
+        assertThat(first.nextCursor()).isNotNull();
+
+        MessageHistoryPageDto second = messageService.getHistory(room.getId(), member.getUsername(), first.nextCursor(), 5);
+        assertThat(second.messages()).extracting(MessageDto::id).containsExactly(
+                old.get(3).getId(), old.get(2).getId(), old.get(1).getId(), old.get(0).getId());
+        assertThat(second.messages().getFirst().content()).isEqualTo("message 3");
+        assertThat(second.nextCursor()).isNull();
+    }
+
+    @Test
+    void getHistory_ShouldFollowCreationTimeWhenIdsDoNot() {
+        LocalDateTime now = LocalDateTime.now();
+        // the later id was created first, as when another instance hands out a higher pooled id range
+        List<Message> saved = saveMessages(now.minusDays(1), 2);
+        saved.get(1).setCreated(now.minusDays(2));
+        messageRepository.save(saved.get(1));
+
+        MessageHistoryPageDto first = messageService.getHistory(room.getId(), member.getUsername(), null, 1);
+        MessageHistoryPageDto second = messageService.getHistory(room.getId(), member.getUsername(), first.nextCursor(), 1);
+
+        assertThat(first.messages()).extracting(MessageDto::id).containsExactly(saved.get(0).getId());
+        assertThat(second.messages()).extracting(MessageDto::id).containsExactly(saved.get(1).getId());
+    }
+
+    @Test
+    void getChatRoom_ShouldIncludeArchivedHistoryOldestFirst() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Message> old = saveMessages(now.minusDays(60), 4);
+        List<Message> recent = saveMessages(now.minusDays(1), 1);
+        messageArchiver.archiveRoom(room.getId(), now.minusDays(30));
+
+        ChatRoomDto chatRoom = chatRoomService.getChatRoom(room.getId(), member.getUsername());
+
+        assertThat(chatRoom.messages()).extracting(MessageDto::id).containsExactly(
+                old.get(0).getId(), old.get(1).getId(), old.get(2).getId(), old.get(3).getId(), recent.get(0).getId());
+        assertThat(chatRoom.nextCursor()).isNull();
+    }
+
+    @Test
+    void editAndDeleteArchived_ShouldRewriteTheBlock() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Message> old = saveMessages(now.minusDays(60), 2);
+        messageArchiver.archiveRoom(room.getId(), now.minusDays(30));
+
+        messageService.editMessage(new UpdateMessageDto(old.get(0).getId(), "edited", room.getId()), member.getUsername());
+        messageService.deleteMessage(old.get(1).getId(), room.getId(), member.getUsername());
+
+        MessageHistoryPageDto history = messageService.getHistory(room.getId(), member.getUsername(), null, 10);
+        assertThat(history.messages()).extracting(MessageDto::id).containsExactly(old.get(0).getId());
+        assertThat(history.messages().getFirst().content()).isEqualTo("edited");
+    }
+
+    @Test
+    void editArchived_ByAnotherUser_ShouldBeRejected() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Message> old = saveMessages(now.minusDays(60), 1);
+        messageArchiver.archiveRoom(room.getId(), now.minusDays(30));
+
+        assertThatThrownBy(() -> messageService.deleteMessage(old.get(0).getId(), room.getId(), "someone else"))
+                .isInstanceOf(UnAuthorized401Exception.class);
+        assertThatThrownBy(() -> messageService.deleteMessage(old.get(0).getId(), null, member.getUsername()))
+                .isInstanceOf(NotFound404Exception.class);
+        assertThat(messageService.getHistory(room.getId(), member.getUsername(), null, 10).messages()).hasSize(1);
+    }
+
+    private List<Message> saveMessages(LocalDateTime created, int count) {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Message message = new Message();
+            message.setChatRoom(room);
+            message.setSender(member.getUsername());
+            message.setContent("message " + i);
+            message.setCreated(created.plusSeconds(i));
+            messages.add(message);
+        }
+        return messageRepository.saveAll(messages);
+    }
+}
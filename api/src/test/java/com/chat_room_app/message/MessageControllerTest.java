@@ -231,7 +231,7 @@ class MessageControllerTest {
             });
 
             // Delete message
-            DeleteMessageDto deleteDto = new DeleteMessageDto(message.getId());
+            DeleteMessageDto deleteDto = new DeleteMessageDto(message.getId(), chatRoom.getId());
             stompSession.send("/app/chat.deleteMessage", deleteDto);
 
             // Verify delete notification was received
@@ -267,7 +267,7 @@ class MessageControllerTest {
             });
 
             // Try to delete message
-            DeleteMessageDto deleteDto = new DeleteMessageDto(message.getId());
+            DeleteMessageDto deleteDto = new DeleteMessageDto(message.getId(), chatRoom.getId());
             stompSession.send("/app/chat.deleteMessage", deleteDto);
 
             // Verify no delete notification was received
@@ -315,7 +315,7 @@ class MessageControllerTest {
             });
 
             // Edit message
-            UpdateMessageDto updateDto = new UpdateMessageDto(message.getId(), "Hello Universe!");
+            UpdateMessageDto updateDto = new UpdateMessageDto(message.getId(), "Hello Universe!", chatRoom.getId());
             stompSession.send("/app/chat.editMessage", updateDto);
 
             // Verify edit notification was received
@@ -354,7 +354,7 @@ class MessageControllerTest {
             });
 
             // Try to edit message
-            UpdateMessageDto updateDto = new UpdateMessageDto(message.getId(), "Hello Universe!");
+            UpdateMessageDto updateDto = new UpdateMessageDto(message.getId(), "Hello Universe!", chatRoom.getId());
             stompSession.send("/app/chat.editMessage", updateDto);
 
             // Verify no edit notification was received
@@ -393,7 +393,7 @@ class MessageControllerTest {
             });
 
             // Try to edit non-existent message
-            UpdateMessageDto updateDto = new UpdateMessageDto(999L, "Hello Universe!");
+            UpdateMessageDto updateDto = new UpdateMessageDto(999L, "Hello Universe!", chatRoom.getId());
             stompSession.send("/app/chat.editMessage", updateDto);
 
             // Verify no edit notification was received
@@ -429,7 +429,7 @@ class MessageControllerTest {
             });
 
             // Edit message with empty content
-            UpdateMessageDto updateDto = new UpdateMessageDto(message.getId(), "");
+            UpdateMessageDto updateDto = new UpdateMessageDto(message.getId(), "", chatRoom.getId());
             stompSession.send("/app/chat.editMessage", updateDto);
 
             // Verify edit notification was received
@@ -0,0 +1,120 @@
+package com.chat_room_app.message;
+
+import com.chat_room_app.chatroom.ChatRoom;
+import com.chat_room_app.chatroom.ChatRoomRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Not @Transactional, every purge batch commits on its own
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class MessageRetentionPurgerTest {
+
+    @Autowired private MessageRetentionPurger messageRetentionPurger;
+    @Autowired private MessageRetentionProperties properties;
+    @Autowired private MessageRepository messageRepository;
+    @Autowired private ChatRoomRepository chatRoomRepository;
+
+    private int originalBatchSize;
+    private Duration originalDefaultRetention;
+    private ChatRoom defaultRoom;
+    private ChatRoom shortRoom;
+    private ChatRoom longRoom;
+
+    @BeforeEach
+    void setUp() {
+        originalBatchSize = properties.getBatchSize();
+        originalDefaultRetention = properties.getDefaultRetention();
+        properties.setEnabled(true);
+        properties.setBatchSize(3);
+        properties.setDefaultRetention(Duration.ofDays(30));
+
+        defaultRoom = saveRoom("default retention", null);
+        shortRoom = saveRoom("short retention", 7);
+        longRoom = saveRoom("long retention", 90);
+    }
+
+    @AfterEach
+    void tearDown() {
+        properties.setEnabled(false);
+        properties.setBatchSize(originalBatchSize);
+        properties.setDefaultRetention(originalDefaultRetention);
+        chatRoomRepository.deleteAll(List.of(defaultRoom, shortRoom, longRoom));
+    }
+
+    @Test
+    void purge_ShouldDeleteOnlyMessagesPastTheirRoomsRetention() {
+        LocalDateTime now = LocalDateTime.now();
+        saveMessages(defaultRoom, now.minusDays(40), 5);
+        saveMessages(defaultRoom, now.minusDays(10), 2);
+        saveMessages(shortRoom, now.minusDays(10), 4);
+        saveMessages(shortRoom, now.minusDays(1), 1);
+        saveMessages(longRoom, now.minusDays(100), 2);
+        saveMessages(longRoom, now.minusDays(40), 4);
+
+        messageRetentionPurger.purge();
+
+        assertThat(countMessages(defaultRoom)).isEqualTo(2);
+        assertThat(countMessages(shortRoom)).isEqualTo(1);
+        assertThat(countMessages(longRoom)).isEqualTo(4);
+    }
+
+    @Test
+    void purge_WhenNotEnabled_ShouldKeepEverything() {
+        properties.setEnabled(false);
+        saveMessages(defaultRoom, LocalDateTime.now().minusDays(40), 3);
+
+        messageRetentionPurger.purge();
+
+        assertThat(countMessages(defaultRoom)).isEqualTo(3);
+    }
+
+    @Test
+    void purge_WithNothingExpired_ShouldKeepEverything() {
+        saveMessages(defaultRoom, LocalDateTime.now().minusDays(1), 4);
+
+        messageRetentionPurger.purge();
+
+        assertThat(countMessages(defaultRoom)).isEqualTo(4);
+    }
+
+    private ChatRoom saveRoom(String name, Integer retentionDays) {
+        ChatRoom room = new ChatRoom();
+        room.setName(name);
+        room.setChatRoomCreator("creator");
+        room.setRetentionDays(retentionDays);
+        return chatRoomRepository.save(room);
+    }
+
+    private void saveMessages(ChatRoom room, LocalDateTime created, int count) {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Message message = new Message();
+            message.setChatRoom(room);
+            message.setSender("creator");
+            message.setContent("message " + i);
+            message.setCreated(created);
+            messages.add(message);
+        }
+        messageRepository.saveAll(messages);
+    }
+
+    private long countMessages(ChatRoom room) {
+        return messageRepository.findAll().stream()
+                .filter(message -> message.getChatRoom().getId().equals(room.getId()))
+                .count();
+    }
+}
@@ -0,0 +1,75 @@
+package com.chat_room_app.rate_limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketRateLimiterTest {
+
+    @Test
+    void acquire_ShouldAllowTheBurstThenLimit() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(3, TimeUnit.MINUTES.toNanos(1),
+                TimeUnit.MINUTES.toNanos(10), 100);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.acquire("client")).isZero();
+        }
+        long wait = limiter.acquire("client");
+
+        assertThat(wait).isPositive().isLessThanOrEqualTo(TimeUnit.SECONDS.toNanos(20));
+    }
+
+    @Test
+    void acquire_ShouldRefillOverTime() throws InterruptedException {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(2, TimeUnit.MILLISECONDS.toNanos(100),
+                TimeUnit.MINUTES.toNanos(1), 100);
+        assertThat(limiter.acquire("client")).isZero();
+        assertThat(limiter.acquire("client")).isZero();
+        assertThat(limiter.acquire("client")).isPositive();
+
+        Thread.sleep(120);
+
+        assertThat(limiter.acquire("client")).isZero();
+        assertThat(limiter.acquire("client")).isZero();
+    }
+
+    @Test
+    void acquire_ShouldKeepClientsIndependent() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, TimeUnit.MINUTES.toNanos(1),
+                TimeUnit.MINUTES.toNanos(10), 100);
+
+        assertThat(limiter.acquire("first")).isZero();
+        assertThat(limiter.acquire("first")).isPositive();
+
+        assertThat(limiter.acquire("second")).isZero();
+    }
+
+    @Test
+    void acquire_WhenFloodedWithNewKeys_ShouldStayBounded() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, TimeUnit.MINUTES.toNanos(1),
+                TimeUnit.MINUTES.toNanos(10), 1_000);
+
+        for (int i = 0; i < 100_000; i++) {
+            limiter.acquire("sprayed-" + i);
+        }
+
+        assertThat(limiter.size()).isLessThanOrEqualTo(1_000);
+        assertThat(limiter.acquire("newcomer")).isZero();
+    }
+
+    @Test
+    void acquire_WhenAtTheKeyCap_ShouldNotThrottleNewClientsForOthersTraffic() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, TimeUnit.MINUTES.toNanos(1),
+                TimeUnit.MINUTES.toNanos(10), 2);
+        assertThat(limiter.acquire("first")).isZero();
+        assertThat(limiter.acquire("second")).isZero();
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(limiter.acquire("newcomer-" + i)).isZero();
+        }
+
+        assertThat(limiter.size()).isLessThanOrEqualTo(2);
+    }
+}
@@ -0,0 +1,42 @@
+package com.chat_room_app.users;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProfileVersionsTest {
+
+    private final ProfileVersions profileVersions = new ProfileVersions();
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void bump_ShouldOnlyMoveTheUsersGiven() {
+        profileVersions.bump(1L, 2L);
+
+        assertThat(profileVersions.of(1L)).isEqualTo(1L);
+        assertThat(profileVersions.of(2L)).isEqualTo(1L);
+        assertThat(profileVersions.of(3L)).isZero();
+    }
+
+    @Test
+    void bump_ShouldOnlyApplyOnceTheTransactionCommits() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        profileVersions.bump(1L);
+        assertThat(profileVersions.of(1L)).isZero();
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        assertThat(profileVersions.of(1L)).isEqualTo(1L);
+    }
+}
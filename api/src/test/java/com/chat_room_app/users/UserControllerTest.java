@@ -1,6 +1,7 @@
 package com.chat_room_app.users;
 
 import com.chat_room_app.auth.AuthDetails;
+import com.chat_room_app.configs.CacheConfiguration;
 import com.chat_room_app.jwt.JwtUtils;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.java.Log;
@@ -14,11 +15,15 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.List;
+
 
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
@@ -39,6 +44,15 @@ class UserControllerTest {
 
     @Autowired private UserRepository userRepository;
 
+    @Autowired private UsernameAutocompleteIndex usernameAutocompleteIndex;
+
+    @Autowired private UsernameSearchIndex usernameSearchIndex;
+
+    @Autowired private CacheManager cacheManager;
+
+    // the test transaction never commits, so users are put into the search index by hand and taken out again after
+    private final List<String> searchIndexed = new ArrayList<>();
+
     private MockedStatic<JwtUtils> jwtUtilsMock;
 
 
@@ -56,6 +70,15 @@ class UserControllerTest {
         if (jwtUtilsMock != null) {
             jwtUtilsMock.close();
         }
+        searchIndexed.forEach(usernameSearchIndex::remove);
+        cacheManager.getCache(CacheConfiguration.USER_SEARCH).clear();
+    }
+
+    private void indexForSearch(User... users) {
+        for (User user : users) {
+            usernameSearchIndex.add(user.getId(), user.getUsername());
+            searchIndexed.add(user.getUsername());
+        }
     }
 
 
@@ -299,6 +322,7 @@ class UserControllerTest {
         alice.setAuthDetails(aliceAuth);
         userRepository.save(alice);
 
+        indexForSearch(requester, billy, billSmith, alice);
         jwtUtilsMock.when(JwtUtils::getCurrentUserId).thenReturn(requester.getId());
 
         mockMvc.perform(
@@ -331,6 +355,7 @@ class UserControllerTest {
         alice.setAuthDetails(aliceAuth);
         userRepository.save(alice);
 
+        indexForSearch(requester, alice);
         jwtUtilsMock.when(JwtUtils::getCurrentUserId).thenReturn(requester.getId());
 
         mockMvc.perform(
@@ -361,6 +386,7 @@ class UserControllerTest {
         billy.setAuthDetails(billyAuth);
         userRepository.save(billy);
 
+        indexForSearch(requester, billy);
         jwtUtilsMock.when(JwtUtils::getCurrentUserId).thenReturn(requester.getId());
 
         mockMvc.perform(
@@ -392,6 +418,7 @@ class UserControllerTest {
         billy.setAuthDetails(billyAuth);
         userRepository.save(billy);
 
+        indexForSearch(requester, billy);
         jwtUtilsMock.when(JwtUtils::getCurrentUserId).thenReturn(requester.getId());
 
         mockMvc.perform(
@@ -479,4 +506,63 @@ class UserControllerTest {
                 .andExpect(jsonPath("$.instance").value("/api/v1/users/query"));
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("GET /api/v1/users/autocomplete → 200 OK with prefix matches in alphabetical order")
+    @WithMockUser(username = "John")
+    void autocompleteUsernames_authenticated_withMatches() throws Exception {
+        usernameAutocompleteIndex.add(9001L, "Zedd");
+        usernameAutocompleteIndex.add(9002L, "zebra");
+        usernameAutocompleteIndex.add(9003L, "Ozzy");
+        usernameAutocompleteIndex.add(9004L, "John");
+
+        jwtUtilsMock.when(JwtUtils::getCurrentUserUsername).thenReturn("John");
+
+        try {
+            mockMvc.perform(
+                            get("/api/v1/users/autocomplete")
+                                    .param("prefix", "ZE"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.length()").value(2))
+                    .andExpect(jsonPath("$[0].username").value("zebra"))
+                    .andExpect(jsonPath("$[1].username").value("Zedd"));
+
+            mockMvc.perform(
+                            get("/api/v1/users/autocomplete")
+                                    .param("prefix", "jo"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.length()").value(0));
+        }
+        finally {
+            usernameAutocompleteIndex.remove("Zedd");
+            usernameAutocompleteIndex.remove("zebra");
+            usernameAutocompleteIndex.remove("Ozzy");
+            usernameAutocompleteIndex.remove("John");
+        }
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/users/autocomplete → 200 OK capped at the max limit")
+    @WithMockUser(username = "John")
+    void autocompleteUsernames_authenticated_limitIsCapped() throws Exception {
+        for (int i = 0; i < 15; i++) {
+            usernameAutocompleteIndex.add(9100L + i, "capped" + i);
+        }
+
+        jwtUtilsMock.when(JwtUtils::getCurrentUserUsername).thenReturn("John");
+
+        try {
+            mockMvc.perform(
+                            get("/api/v1/users/autocomplete")
+                                    .param("prefix", "capped")
+                                    .param("limit", "100"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.length()").value(10));
+        }
+        finally {
+            for (int i = 0; i < 15; i++) {
+                usernameAutocompleteIndex.remove("capped" + i);
+            }
+        }
+    }
+
+}
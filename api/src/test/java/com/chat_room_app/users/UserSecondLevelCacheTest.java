@@ -0,0 +1,91 @@
+package com.chat_room_app.users;
+
+import com.chat_room_app.auth.AuthDetails;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Not @Transactional on purpose, every repository call gets its own session so only the second level cache
+ * can save a query
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class UserSecondLevelCacheTest {
+
+    @Autowired private UserRepository userRepository;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        User user = new User("cached", "cached@mail.com", "Password1!");
+        AuthDetails auth = new AuthDetails();
+        auth.setIsVerified(false);
+        auth.setAuthorities("ROLE_USER");
+        user.setAuthDetails(auth);
+        userRepository.save(user);
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.findByUsername("cached").ifPresent(userRepository::delete);
+    }
+
+    @Test
+    void repeatedUsernameLookups_ShouldNotRunSql() {
+        userRepository.findByUsername("cached");
+        statistics.clear();
+
+        for (int i = 0; i < 10; i++) {
+            User user = userRepository.findByUsername("cached").orElseThrow();
+            assertThat(user.getAuthDetails().getAuthorities()).isEqualTo("ROLE_USER");
+        }
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getSecondLevelCacheHitCount()).isPositive();
+    }
+
+    @Test
+    void passwordChange_ShouldBeSeenByTheNextLookup() {
+        User user = userRepository.findByUsername("cached").orElseThrow();
+        user.setPassword("Changed1!");
+        userRepository.save(user);
+
+        assertThat(userRepository.findByUsername("cached").orElseThrow().getPassword()).isEqualTo("Changed1!");
+    }
+
+    @Test
+    void verification_ShouldBeSeenByTheNextLookup() {
+        User user = userRepository.findByUsername("cached").orElseThrow();
+        user.getAuthDetails().setIsVerified(true);
+        userRepository.save(user);
+
+        assertThat(userRepository.findByUsername("cached").orElseThrow().getAuthDetails().getIsVerified()).isTrue();
+    }
+
+    @Test
+    void emailLookup_ShouldBeCachedUntilUsersChange() {
+        userRepository.findByEmail("cached@mail.com");
+        statistics.clear();
+
+        assertThat(userRepository.findByEmail("cached@mail.com")).isPresent();
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+
+        User user = userRepository.findByUsername("cached").orElseThrow();
+        userRepository.delete(user);
+
+        assertThat(userRepository.findByEmail("cached@mail.com")).isEmpty();
+        assertThat(userRepository.findByUsername("cached")).isEmpty();
+    }
+}
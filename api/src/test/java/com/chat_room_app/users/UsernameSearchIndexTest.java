@@ -0,0 +1,78 @@
+package com.chat_room_app.users;
+
+import com.chat_room_app.users.dtos.QueriedUserDto;
+import com.chat_room_app.users.dtos.UserSearchPageDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UsernameSearchIndexTest {
+
+    private UserRepository userRepository;
+    private UsernameSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = Mockito.mock(UserRepository.class);
+        CacheManager cacheManager = Mockito.mock(CacheManager.class);
+        Mockito.when(cacheManager.getCache(Mockito.anyString())).thenReturn(Mockito.mock(Cache.class));
+        index = new UsernameSearchIndex(userRepository, cacheManager);
+    }
+
+    @Test
+    void search_ShouldFindUsernamesThatOnlyDifferInCase() {
+        index.add(1L, "Bobby");
+        index.add(2L, "bobby");
+
+        assertThat(index.search("bob", null, 10, null).users())
+                .extracting(QueriedUserDto::id).containsExactly(1L, 2L);
+        assertThat(index.search("bob", "bobby", 10, null).users())
+                .extracting(QueriedUserDto::id).containsExactly(1L);
+    }
+
+    @Test
+    void search_ShouldPageThroughUsernamesThatOnlyDifferInCase() {
+        index.add(1L, "Bobby");
+        index.add(2L, "bobby");
+
+        UserSearchPageDto first = index.search("bob", null, 1, null);
+        UserSearchPageDto second = index.search("bob", null, 1, first.nextCursor());
+
+        assertThat(first.users()).extracting(QueriedUserDto::id).containsExactly(1L);
+        assertThat(second.users()).extracting(QueriedUserDto::id).containsExactly(2L);
+    }
+
+    @Test
+    void load_ShouldNotBringBackUsersDeletedWhileItRuns() {
+        // the batch was read before the delete of user 2 committed
+        Mockito.when(userRepository.findVerifiedIdsAndUsernamesAfter(Mockito.anyLong(), Mockito.any())).thenAnswer(invocation -> {
+            index.remove(2L);
+            return List.of(new QueriedUserDto(1L, "alice"), new QueriedUserDto(2L, "albert"));
+        });
+
+        index.load();
+
+        assertThat(index.search("ali", null, 10, null).users()).extracting(QueriedUserDto::id).containsExactly(1L);
+        assertThat(index.search("alb", null, 10, null).users()).isEmpty();
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    void load_ShouldKeepUsersIndexedWhileItRuns() {
+        Mockito.when(userRepository.findVerifiedIdsAndUsernamesAfter(Mockito.anyLong(), Mockito.any())).thenAnswer(invocation -> {
+            index.add(3L, "carol");
+            return List.of(new QueriedUserDto(1L, "alice"));
+        });
+
+        index.load();
+
+        assertThat(index.search("car", null, 10, null).users()).extracting(QueriedUserDto::id).containsExactly(3L);
+        assertThat(index.size()).isEqualTo(2);
+    }
+}
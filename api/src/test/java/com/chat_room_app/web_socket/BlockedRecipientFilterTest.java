@@ -0,0 +1,74 @@
+package com.chat_room_app.web_socket;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlockedRecipientFilterTest {
+
+    private BlockedRecipientFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new BlockedRecipientFilter();
+        connect("alice-session", "alice");
+        connect("bob-session", "bob");
+    }
+
+    @Test
+    void preSend_ShouldDropDeliveriesToBlockingUsersOnly() {
+        Message<?> broadcast = BlockedRecipientFilter.skipping(Set.of("bob")).postProcessMessage(delivery(null));
+
+        assertThat(filter.preSend(copyFor(broadcast, "bob-session"), null)).isNull();
+        assertThat(filter.preSend(copyFor(broadcast, "alice-session"), null)).isNotNull();
+    }
+
+    @Test
+    void preSend_WithoutBlockedRecipients_ShouldPassUntouched() {
+        Message<?> broadcast = BlockedRecipientFilter.skipping(Set.of()).postProcessMessage(delivery(null));
+
+        assertThat(broadcast.getHeaders()).doesNotContainKey(BlockedRecipientFilter.BLOCKED_RECIPIENTS_HEADER);
+        Message<?> copy = copyFor(broadcast, "bob-session");
+        assertThat(filter.preSend(copy, null)).isSameAs(copy);
+    }
+
+    @Test
+    void preSend_AfterDisconnect_ShouldNoLongerKnowTheSession() {
+        Message<?> broadcast = BlockedRecipientFilter.skipping(Set.of("bob")).postProcessMessage(delivery(null));
+        filter.onDisconnected(new SessionDisconnectEvent(this, delivery("bob-session"), "bob-session", CloseStatus.NORMAL));
+
+        assertThat(filter.preSend(copyFor(broadcast, "bob-session"), null)).isNotNull();
+    }
+
+    private void connect(String sessionId, String username) {
+        Principal user = () -> username;
+        filter.onConnected(new SessionConnectedEvent(this, delivery(sessionId), user));
+    }
+
+    /*
+     * the simple broker copies the broadcast's headers onto one message per subscribed session
+     */
+    private static Message<?> copyFor(Message<?> broadcast, String sessionId) {
+        return MessageBuilder.fromMessage(broadcast)
+                .setHeader(SimpMessageHeaderAccessor.SESSION_ID_HEADER, sessionId)
+                .build();
+    }
+
+    private static Message<byte[]> delivery(String sessionId) {
+        MessageBuilder<byte[]> builder = MessageBuilder.withPayload(new byte[0]);
+        if (sessionId != null) {
+            builder.setHeader(SimpMessageHeaderAccessor.SESSION_ID_HEADER, sessionId);
+        }
+        return builder.build();
+    }
+}
@@ -8,7 +8,7 @@ import {
     getSuccessfulResponse
 } from "@/api/apiConfig";
 import {NewChatDto} from "@/lib/models/requests";
-import {ChatRoom} from "@/lib/models/models";
+import {ChatRoom, MessageHistoryPage} from "@/lib/models/models";
 
 const RESOURCE_PATH = API_VERSION_PATHING_V1 + "/chats";
 
@@ -33,6 +33,16 @@ export const getChatRoom = async (id: number): Promise<ApiResponseWrapper<ChatRo
     }
 }
 
+export const getChatHistory = async (id: number, before: string): Promise<ApiResponseWrapper<MessageHistoryPage | FailedAPIRequestResponse>> => {
+    try {
+        const response = await apiClient.get(RESOURCE_PATH + `/${id}/messages`, {params: {before}});
+        return getSuccessfulResponse(response);
+    }
+    catch (error) {
+        return getFailedResponse(error);
+    }
+}
+
 export const deleteChatRoom = async (id: number): Promise<ApiResponseWrapperPromise<ChatRoom, FailedAPIRequestResponse>> => {
     try {
         const response = await apiClient.delete(RESOURCE_PATH + `/${id}`);
@@ -11,7 +11,8 @@ import {Label} from "@/components/ui/label";
 import {CornerDownLeft, Edit, Paperclip, Trash} from "lucide-react";
 import {ChatInput} from "@/components/ui/chat/chat-input";
 import {Button} from "@/components/ui/button";
-import {ChatRoom, Message} from "@/lib/models/models"
+import {ChatRoom, Message, MessageHistoryPage} from "@/lib/models/models"
+import {getChatHistory} from "@/api/chatroom";
 import {useWebSocket} from "@/hooks/use-web-socket";
 import {useGetChatRoom} from "@/hooks/react-query";
 import {useUserStore} from "@/hooks/stores";
@@ -143,8 +144,10 @@ export const ChatContainer = ({id}: ChatContainerProps) => {
         id: 0,
         members: [],
         messages: [],
-        name: ""
+        name: "",
+        nextCursor: null
     });
+    const [loadingOlder, setLoadingOlder] = useState(false);
     const {user} = useUserStore();
     const [subscribed, setSubscribed] = useState(false);
     const subscriptionAttemptRef = useRef(false);
@@ -226,6 +229,26 @@ export const ChatContainer = ({id}: ChatContainerProps) => {
         };
     }, [webSocket, id, subscribed, handleMessage, handleDelete, handleEdit]);
 
+    // Older history is paged in from the cursor of the oldest page shown
+    const handleLoadOlder = useCallback(async () => {
+        if (!chatRoomDetails.nextCursor || loadingOlder) {
+            return;
+        }
+        setLoadingOlder(true);
+        const response = await getChatHistory(id, chatRoomDetails.nextCursor);
+        if (isFailedResponse(response)) {
+            updateFailedRequest(true, response.data.errorMessage);
+        } else {
+            const page = response.data as MessageHistoryPage;
+            setChatRoomDetails((prev: ChatRoom) => ({
+                ...prev,
+                messages: [...[...page.messages].reverse(), ...prev.messages],
+                nextCursor: page.nextCursor,
+            }));
+        }
+        setLoadingOlder(false);
+    }, [id, chatRoomDetails.nextCursor, loadingOlder, updateFailedRequest]);
+
     // Delete message handler
     const handleDeleteMessage = useCallback(async (messageId: number) => {
         try {
@@ -272,6 +295,10 @@ export const ChatContainer = ({id}: ChatContainerProps) => {
                 <h1 className={"text-5xl font-bold text-slate-200 pt-2"}>{chatRoomDetails.name}</h1>
                 <div className="max-h-5/6 overflow-y-scroll w-full py-2">
                 <ChatMessageList>
+                    {chatRoomDetails.nextCursor &&
+                        <Button variant={"ghost"} className={"self-center text-slate-200"} disabled={loadingOlder} onClick={handleLoadOlder}>
+                            {loadingOlder ? "Loading..." : "Load older messages"}
+                        </Button>}
                     {chatRoomDetails.messages.map((message) => {
                         const variant: Variant = message.author === user.username ? "sent" : "received";
                         return (
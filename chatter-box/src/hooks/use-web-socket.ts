@@ -80,22 +80,22 @@ export const useWebSocket = (chatRoomId: number) => {
     const deleteMessage = useCallback(async (messageId: number) => {
         try {
             const webSocket = getWebSocket();
-            await webSocket.deleteMessage(messageId);
+            await webSocket.deleteMessage(chatRoomId, messageId);
         } catch (err: any) {
             console.error('Failed to delete message:', err);
             setError(err.message);
         }
-    }, [getWebSocket]);
+    }, [chatRoomId, getWebSocket]);
 
     const editMessage = useCallback(async (messageId: number, newContent: UpdateMessageDto) => {
         try {
             const webSocket = getWebSocket();
-            await webSocket.editMessage(messageId, newContent);
+            await webSocket.editMessage(chatRoomId, messageId, newContent);
         } catch (err: any) {
             console.error('Failed to edit message:', err);
             setError(err.message);
         }
-    }, [getWebSocket]);
+    }, [chatRoomId, getWebSocket]);
 
     const unsubscribe = useCallback((roomId: number) => {
         const webSocket = getWebSocket();
@@ -13,7 +13,13 @@ export interface ChatRoom {
     name: string,
     creator: string,
     members: ChatRoomUserDto[],
-    messages: Message[]
+    messages: Message[],
+    nextCursor: string | null
+}
+
+export interface MessageHistoryPage {
+    messages: Message[], //newest first
+    nextCursor: string | null
 }
 
 export interface Message {
@@ -147,7 +147,7 @@ export class WebSocketService {
         });
     }
 
-    async deleteMessage(messageId: number) {
+    async deleteMessage(chatRoomId: number, messageId: number) {
         await this.ensureConnected();
 
         if (!this.isFullyConnected()) {
@@ -157,12 +157,13 @@ export class WebSocketService {
         this.client!.publish({
             destination: '/app/chat.deleteMessage',
             body: JSON.stringify({
-                messageId: messageId
+                messageId: messageId,
+                chatRoomId: chatRoomId
             }),
         });
     }
 
-    async editMessage(messageId: number, newContent: UpdateMessageDto) {
+    async editMessage(chatRoomId: number, messageId: number, newContent: UpdateMessageDto) {
         await this.ensureConnected();
 
         if (!this.isFullyConnected()) {
@@ -173,7 +174,8 @@ export class WebSocketService {
             destination: '/app/chat.editMessage',
             body: JSON.stringify({
                 messageId: messageId,
-                newContent: newContent
+                newContent: newContent,
+                chatRoomId: chatRoomId
             }),
         });
     }
@@ -0,0 +1,319 @@
+package com.chatter_box.email_service.email;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.smallrye.mutiny.subscription.BackPressureStrategy;
+import io.smallrye.mutiny.subscription.MultiEmitter;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decouples accepting an email from the SMTP exchange. Jobs go into a Mutiny stream that sends at most
+ * smtp-concurrency emails at once over the mailer's pooled connections, callers only wait for the enqueue.
+ * Capacity counts queued and in flight jobs, once it is reached offer() returns FULL and the caller sheds the request.
+ * The stream carries recipient keys while the latest job per key waits in a map, so a repeat request for an email
+ * that has not gone out yet just swaps in the newer code. Every send takes a token from a global bucket sized to
+ * what the SMTP provider tolerates, an empty bucket delays the send instead of failing it.
+ * Accepted jobs are written to the EmailJournal before offer() returns and replayed on startup,
+ * a failed send is retried with exponential backoff until max-attempts and then dead lettered
+ */
+@ApplicationScoped
+public class EmailDispatchQueue {
+
+    @Inject
+    EmailService emailService;
+
+    @Inject
+    EmailJournal journal;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @ConfigProperty(name = "email.queue.capacity", defaultValue = "1000")
+    int capacity;
+
+    @ConfigProperty(name = "email.queue.smtp-concurrency", defaultValue = "4")
+    int smtpConcurrency;
+
+    @ConfigProperty(name = "email.smtp.rate.burst", defaultValue = "20")
+    int smtpBurst;
+
+    @ConfigProperty(name = "email.smtp.rate.per-second", defaultValue = "1")
+    double smtpPerSecond;
+
+    @ConfigProperty(name = "email.retry.max-attempts", defaultValue = "5")
+    int maxAttempts;
+
+    @ConfigProperty(name = "email.retry.initial-backoff", defaultValue = "PT1S")
+    Duration initialBackoff;
+
+    @ConfigProperty(name = "email.retry.max-backoff", defaultValue = "PT5M")
+    Duration maxBackoff;
+
+    // jobs waiting in pending, changed only together with the map
+    private final AtomicInteger queued = new AtomicInteger();
+    // jobs taken out of pending whose send has not finished yet
+    private final AtomicInteger sending = new AtomicInteger();
+    private final Map<String, EmailJob> pending = new ConcurrentHashMap<>();
+    private volatile MultiEmitter<? super String> jobs;
+    private volatile boolean stopping;
+    private volatile TokenBucket smtpBudget;
+    private Timer sendTimer;
+    private Counter failureCounter;
+    private Counter rejectedCounter;
+    private Counter coalescedCounter;
+    private Counter retriedCounter;
+    private Counter deadLetteredCounter;
+
+    void onStart(@Observes StartupEvent event) {
+        sendTimer = Timer.builder("email.send.duration")
+                .description("Time spent handing one email to the SMTP server")
+                .register(meterRegistry);
+        failureCounter = Counter.builder("email.send.failures")
+                .description("Emails the SMTP server did not accept")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("email.queue.rejected")
+                .description("Emails shed because the queue was full")
+                .register(meterRegistry);
+        coalescedCounter = Counter.builder("email.queue.coalesced")
+                .description("Requests folded into an email for the same recipient that was still queued")
+                .register(meterRegistry);
+        retriedCounter = Counter.builder("email.send.retried")
+                .description("Failed emails scheduled for another attempt")
+                .register(meterRegistry);
+        deadLetteredCounter = Counter.builder("email.send.dead-lettered")
+                .description("Emails given up on after max-attempts")
+                .register(meterRegistry);
+        meterRegistry.gauge("email.queue.depth", this, EmailDispatchQueue::depth);
+        resetSmtpBudget();
+
+        startDispatch();
+        Log.info("Email dispatch queue started with capacity " + capacity + " and " + smtpConcurrency + " concurrent SMTP sends");
+
+        // jobs accepted before the last shutdown were already answered 202, they skip the capacity check
+        List<EmailJob> unfinished = journal.open();
+        unfinished.forEach(this::resume);
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        stopping = true;
+        jobs.complete();
+        journal.close();
+    }
+
+    /**
+     * Queues the email without waiting for it to be sent, or replaces the queued one for the same recipient and type.
+     * Returns once the job is on disk so an accepted email survives a crash
+     */
+    public Admission offer(EmailJob job) {
+        String recipientKey = job.recipientKey();
+        if (depth() >= capacity && !pending.containsKey(recipientKey)) {
+            rejectedCounter.increment();
+            return Admission.FULL;
+        }
+        // journaled before touching the map, compute() holds the bin lock and must not wait on the disk
+        EmailJob journaled = journal.append(job);
+        Admission[] admission = new Admission[1];
+        EmailJob[] replaced = new EmailJob[1];
+        pending.compute(recipientKey, (key, existing) -> {
+            if (existing != null) {
+                admission[0] = Admission.COALESCED;
+                replaced[0] = existing;
+                return journaled;
+            }
+            if (queued.incrementAndGet() + sending.get() > capacity) {
+                queued.decrementAndGet();
+                admission[0] = Admission.FULL;
+                return null;
+            }
+            admission[0] = Admission.QUEUED;
+            return journaled;
+        });
+        switch (admission[0]) {
+            case QUEUED -> jobs.emit(recipientKey);
+            case COALESCED -> {
+                journal.complete(replaced[0].journalId());
+                coalescedCounter.increment();
+            }
+            case FULL -> {
+                journal.complete(journaled.journalId());
+                rejectedCounter.increment();
+                return Admission.FULL;
+            }
+        }
+        journal.awaitDurable();
+        return admission[0];
+    }
+
+    /**
+     * Swaps the job in for a queued one to the same recipient and type, used before the recipient's limit is checked
+     * so repeats that fold into an unsent email do not use up their budget
+     * @return false when nothing for the recipient is queued, the caller then goes through offer()
+     */
+    public boolean coalesce(EmailJob job) {
+        String recipientKey = job.recipientKey();
+        if (!pending.containsKey(recipientKey)) {
+            return false;
+        }
+        EmailJob journaled = journal.append(job);
+        EmailJob[] replaced = new EmailJob[1];
+        pending.computeIfPresent(recipientKey, (key, existing) -> {
+            replaced[0] = existing;
+            return journaled;
+        });
+        if (replaced[0] == null) {
+            // taken for sending in the meantime
+            journal.complete(journaled.journalId());
+            return false;
+        }
+        journal.complete(replaced[0].journalId());
+        coalescedCounter.increment();
+        journal.awaitDurable();
+        return true;
+    }
+
+    public int depth() {
+        return queued.get() + sending.get();
+    }
+
+    void resetSmtpBudget() {
+        smtpBudget = new TokenBucket(smtpBurst, smtpPerSecond);
+    }
+
+    void setSmtpBudget(TokenBucket smtpBudget) {
+        this.smtpBudget = smtpBudget;
+    }
+
+    /*
+     * the emitter is thread safe and buffers, capacity is enforced by depth before anything is emitted.
+     * Should the stream still end before shutdown a new one takes over. Keys buffered in the old emitter are lost
+     * with it so everything still pending is emitted again, the counters follow pending and the sends themselves
+     * so they are left alone. A key emitted twice is only sent once, the first take removes its job
+     */
+    private void startDispatch() {
+        Multi.createFrom().<String>emitter(emitter -> jobs = emitter, BackPressureStrategy.BUFFER)
+                .onItem().transformToUni(this::send).merge(smtpConcurrency)
+                .subscribe().with(ignored -> { }, this::restartDispatch, () -> restartDispatch(null));
+    }
+
+    private void restartDispatch(Throwable failure) {
+        if (stopping) {
+            return;
+        }
+        Log.error("Email dispatch stream stopped, starting a new one", failure);
+        startDispatch();
+        pending.keySet().forEach(jobs::emit);
+    }
+
+    /*
+     * puts back a job that is already journaled, a newer job for the same recipient wins over an older one
+     */
+    private void resume(EmailJob job) {
+        boolean[] emit = new boolean[1];
+        EmailJob[] superseded = new EmailJob[1];
+        pending.compute(job.recipientKey(), (key, existing) -> {
+            if (existing == null) {
+                queued.incrementAndGet();
+                emit[0] = true;
+                return job;
+            }
+            if (existing.journalId() > job.journalId()) {
+                superseded[0] = job;
+                return existing;
+            }
+            superseded[0] = existing;
+            return job;
+        });
+        if (superseded[0] != null) {
+            journal.complete(superseded[0].journalId());
+        }
+        if (emit[0]) {
+            jobs.emit(job.recipientKey());
+        }
+    }
+
+    /*
+     * recovers from anything the send or the journal throws, a failed item would end the merged stream
+     */
+    private Uni<Void> send(String recipientKey) {
+        long wait = smtpBudget.reserve();
+        Uni<Void> paced = wait == 0 ? Uni.createFrom().voidItem()
+                : Uni.createFrom().voidItem().onItem().delayIt().by(Duration.ofNanos(wait));
+        return paced.onItem().transformToUni(ignored -> {
+            // taken only now so requests arriving while this one waited for a token still fold into it
+            EmailJob job = pending.remove(recipientKey);
+            if (job == null) {
+                return Uni.createFrom().voidItem();
+            }
+            // counted as sending before it stops counting as queued, depth never dips below what is really there
+            sending.incrementAndGet();
+            queued.decrementAndGet();
+            return Uni.createFrom().deferred(() -> send(job))
+                    .onTermination().invoke(() -> sending.decrementAndGet());
+        }).onFailure().recoverWithItem(failure -> {
+            // the job stays in the journal and is replayed on the next start
+            Log.error("Could not dispatch the email for " + recipientKey, failure);
+            return null;
+        });
+    }
+
+    private Uni<Void> send(EmailJob job) {
+        long start = System.nanoTime();
+        return emailService.sendEmail(job.type(), job.email(), job.username(), job.code())
+                .onTermination().invoke(() -> sendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                // the mailer answers on its event loop, completing, rescheduling or dead lettering may force the journal
+                // to disk so the outcome is handled on a worker thread
+                .emitOn(Infrastructure.getDefaultWorkerPool())
+                .onItem().invoke(() -> journal.complete(job.journalId()))
+                .onFailure().recoverWithUni(failure -> {
+                    failureCounter.increment();
+                    Log.warn("Failed to send " + job.type() + " email to " + job.email() + ": " + failure.getMessage());
+                    retryLater(job);
+                    return Uni.createFrom().voidItem();
+                });
+    }
+
+    /*
+     * runs on a worker thread, never on the mailer's event loop.
+     * Waits initial-backoff doubled per failed attempt, capped at max-backoff. The job holds no slot while it waits,
+     * once resumed it counts towards depth again but, like a job replayed at startup, is never refused for capacity
+     */
+    private void retryLater(EmailJob job) {
+        if (job.attempt() + 1 >= maxAttempts) {
+            deadLetteredCounter.increment();
+            Log.error("Giving up on " + job.type() + " email to " + job.email() + " after " + maxAttempts + " attempts");
+            journal.deadLetter(job);
+            return;
+        }
+        EmailJob next = journal.reschedule(job);
+        Duration backoff = initialBackoff.multipliedBy(1L << Math.min(job.attempt(), 20));
+        if (backoff.compareTo(maxBackoff) > 0) {
+            backoff = maxBackoff;
+        }
+        retriedCounter.increment();
+        Uni.createFrom().voidItem().onItem().delayIt().by(backoff)
+                .subscribe().with(ignored -> resume(next));
+    }
+
+    public enum Admission {
+        QUEUED,
+        COALESCED,
+        FULL
+    }
+}
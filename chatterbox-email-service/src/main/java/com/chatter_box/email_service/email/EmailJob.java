@@ -0,0 +1,30 @@
+package com.chatter_box.email_service.email;
+
+import java.util.Locale;
+
+/**
+ * An accepted email waiting in the EmailDispatchQueue.
+ * journalId is the record that keeps it across restarts, 0 until the EmailJournal has written it,
+ * attempt counts the sends that already failed
+ */
+public record EmailJob(EmailType type, String email, String username, String code, long journalId, int attempt) {
+
+    public EmailJob(EmailType type, String email, String username, String code) {
+        this(type, email, username, code, 0, 0);
+    }
+
+    /**
+     * Jobs with the same key are the same email to the same person, only the latest code matters
+     */
+    public String recipientKey() {
+        return type + "|" + email.toLowerCase(Locale.ROOT);
+    }
+
+    public EmailJob withJournalId(long journalId) {
+        return new EmailJob(type, email, username, code, journalId, attempt);
+    }
+
+    public EmailJob nextAttempt() {
+        return new EmailJob(type, email, username, code, journalId, attempt + 1);
+    }
+}
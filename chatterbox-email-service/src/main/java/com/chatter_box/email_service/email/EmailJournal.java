@@ -0,0 +1,307 @@
+package com.chatter_box.email_service.email;
+
+import io.quarkus.logging.Log;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append only log of accepted email jobs so an SMTP outage or a restart does not lose them.
+ * The segment is a memory mapped file, appends are plain memory writes and a flusher thread forces them
+ * to disk every flush-interval, so callers waiting in awaitDurable() share one fsync.
+ * A record is [length][crc32][kind, id, job] and a torn tail is dropped on replay.
+ * Finished jobs only append a DONE record, once dead records take up half the segment the live jobs are
+ * rewritten into a fresh file that atomically replaces the old one. Jobs that ran out of attempts
+ * are copied to a dead letter file before being marked done
+ */
+@ApplicationScoped
+public class EmailJournal {
+
+    private static final byte ACCEPTED = 1;
+    private static final byte DONE = 2;
+    private static final int HEADER_BYTES = Integer.BYTES * 2;
+    private static final EmailType[] TYPES = EmailType.values();
+
+    @ConfigProperty(name = "email.journal.dir", defaultValue = "data/email-journal")
+    String directory;
+
+    @ConfigProperty(name = "email.journal.segment-size", defaultValue = "16777216")
+    int segmentSize;
+
+    @ConfigProperty(name = "email.journal.flush-interval", defaultValue = "PT0.005S")
+    Duration flushInterval;
+
+    // live jobs in id order, everything below is guarded by this
+    private final Map<Long, EmailJob> live = new LinkedHashMap<>();
+    private Path segmentPath;
+    private Path deadLetterPath;
+    private MappedByteBuffer segment;
+    private long nextId = 1;
+    private long liveBytes;
+    private long writes;
+    private long flushed;
+    private volatile boolean running;
+    private Thread flusher;
+
+    /**
+     * Replays the segment left by the last run and starts the flusher
+     * @return the jobs that were accepted but never finished, oldest first
+     */
+    public synchronized List<EmailJob> open() {
+        try {
+            Path dir = Path.of(directory);
+            Files.createDirectories(dir);
+            segmentPath = dir.resolve("journal.log");
+            deadLetterPath = dir.resolve("dead-letter.log");
+            if (Files.exists(segmentPath)) {
+                replay();
+            }
+            compact(0);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Could not open the email journal in " + directory, e);
+        }
+        running = true;
+        flusher = Thread.ofPlatform().daemon().name("email-journal-flusher").start(this::flushLoop);
+        Log.info("Email journal opened with " + live.size() + " unfinished jobs");
+        return new ArrayList<>(live.values());
+    }
+
+    /**
+     * Writes the job without waiting for the disk, see awaitDurable()
+     * @return the job carrying its journal id
+     */
+    public synchronized EmailJob append(EmailJob job) {
+        EmailJob journaled = job.withJournalId(nextId++);
+        byte[] record = encodeAccepted(journaled);
+        write(record);
+        live.put(journaled.journalId(), journaled);
+        liveBytes += record.length;
+        return journaled;
+    }
+
+    /**
+     * Marks the job finished, it will not be replayed
+     */
+    public synchronized void complete(long journalId) {
+        EmailJob finished = live.remove(journalId);
+        if (finished == null) {
+            return;
+        }
+        liveBytes -= encodeAccepted(finished).length;
+        write(encodeDone(journalId));
+        if (segment.position() - liveBytes > segmentSize / 2) {
+            compact(0);
+        }
+    }
+
+    /**
+     * Swaps the job for its next attempt so the attempt count survives a restart
+     */
+    public synchronized EmailJob reschedule(EmailJob job) {
+        complete(job.journalId());
+        return append(job.nextAttempt());
+    }
+
+    /**
+     * Keeps a job that ran out of attempts in the dead letter file and finishes it
+     */
+    public synchronized void deadLetter(EmailJob job) {
+        try (FileChannel channel = FileChannel.open(deadLetterPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(encodeAccepted(job)));
+            channel.force(false);
+        }
+        catch (IOException e) {
+            Log.error("Could not dead letter " + job.type() + " email to " + job.email(), e);
+        }
+        complete(job.journalId());
+    }
+
+    /**
+     * Blocks until everything appended so far has been forced to disk
+     */
+    public synchronized void awaitDurable() {
+        long target = writes;
+        while (flushed < target && running) {
+            try {
+                wait(flushInterval.toMillis() + 1);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return live.size();
+    }
+
+    public void close() {
+        running = false;
+        if (flusher != null) {
+            flusher.interrupt();
+            try {
+                flusher.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                Thread.sleep(flushInterval);
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+            flush();
+        }
+    }
+
+    private void flush() {
+        MappedByteBuffer buffer;
+        long target;
+        synchronized (this) {
+            if (segment == null || flushed == writes) {
+                return;
+            }
+            buffer = segment;
+            target = writes;
+        }
+        // forced outside the lock so appends keep going while the disk catches up
+        buffer.force();
+        synchronized (this) {
+            flushed = Math.max(flushed, target);
+            notifyAll();
+        }
+    }
+
+    private void write(byte[] record) {
+        if (segment.remaining() < record.length) {
+            compact(record.length);
+        }
+        segment.put(record);
+        writes++;
+    }
+
+    /*
+     * the new segment is forced before it replaces the old one, so everything written so far is durable afterwards.
+     * reserve is room for the record about to be written, which may be larger than a whole segment
+     */
+    private void compact(int reserve) {
+        List<byte[]> records = new ArrayList<>(live.size());
+        long size = 0;
+        for (EmailJob job : live.values()) {
+            byte[] record = encodeAccepted(job);
+            records.add(record);
+            size += record.length;
+        }
+        long capacity = Math.max(segmentSize, size * 2 + reserve);
+        Path compacted = segmentPath.resolveSibling("journal.log.compact");
+        try (FileChannel channel = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer fresh = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            records.forEach(fresh::put);
+            fresh.force();
+            Files.move(compacted, segmentPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            segment = fresh;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Could not compact the email journal", e);
+        }
+        liveBytes = size;
+        flushed = writes;
+        notifyAll();
+    }
+
+    private void replay() throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segmentPath));
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= HEADER_BYTES) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            byte[] body = new byte[length];
+            buffer.get(body);
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != checksum) {
+                Log.warn("Email journal has a torn record, dropping everything after it");
+                break;
+            }
+            ByteBuffer record = ByteBuffer.wrap(body);
+            byte kind = record.get();
+            long id = record.getLong();
+            if (kind == ACCEPTED) {
+                int attempt = record.getInt();
+                EmailType type = TYPES[record.get()];
+                live.put(id, new EmailJob(type, readString(record), readString(record), readString(record), id, attempt));
+            }
+            else {
+                live.remove(id);
+            }
+            nextId = Math.max(nextId, id + 1);
+        }
+    }
+
+    private static byte[] encodeAccepted(EmailJob job) {
+        byte[] email = job.email().getBytes(StandardCharsets.UTF_8);
+        byte[] username = job.username().getBytes(StandardCharsets.UTF_8);
+        byte[] code = job.code().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = ByteBuffer.allocate(1 + Long.BYTES + Integer.BYTES + 1
+                + Integer.BYTES * 3 + email.length + username.length + code.length);
+        body.put(ACCEPTED).putLong(job.journalId()).putInt(job.attempt()).put((byte) job.type().ordinal());
+        putString(body, email);
+        putString(body, username);
+        putString(body, code);
+        return frame(body.array());
+    }
+
+    private static byte[] encodeDone(long journalId) {
+        return frame(ByteBuffer.allocate(1 + Long.BYTES).put(DONE).putLong(journalId).array());
+    }
+
+    private static byte[] frame(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return ByteBuffer.allocate(HEADER_BYTES + body.length)
+                .putInt(body.length)
+                .putInt((int) crc.getValue())
+                .put(body)
+                .array();
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        buffer.putInt(value.length).put(value);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] value = new byte[buffer.getInt()];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
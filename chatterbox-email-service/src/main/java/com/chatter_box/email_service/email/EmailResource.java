@@ -1,46 +1,129 @@
 package com.chatter_box.email_service.email;
 
+import com.chatter_box.email_service.email.dto.BatchEmailItemDto;
+import com.chatter_box.email_service.email.dto.BatchEmailItemResultDto;
+import com.chatter_box.email_service.email.dto.BatchEmailRequestDto;
+import com.chatter_box.email_service.email.dto.BatchEmailResponseDto;
+import com.chatter_box.email_service.email.dto.BatchItemStatus;
 import com.chatter_box.email_service.email.dto.VerificationCodeDto;
+import com.chatter_box.email_service.exception.TooManyEmailsException;
 import io.quarkus.security.UnauthorizedException;
-import io.smallrye.faulttolerance.api.RateLimit;
-import io.smallrye.mutiny.Uni;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import io.quarkus.logging.Log;
 
 
-import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
 
 @Path("/api/v1/emails")
 public class EmailResource {
 
+    private static final String QUEUE_FULL_MESSAGE = "Email queue is full, try again later";
+    private static final String RECIPIENT_LIMIT_MESSAGE = "Too many emails for this recipient, try again later";
+
+    @Inject
+    EmailDispatchQueue emailDispatchQueue;
+
     @Inject
-    EmailService emailService;
+    RecipientThrottle recipientThrottle;
 
     @Inject
     @ConfigProperty(name = "secret.key")
     String secretKey;
 
+    @Inject
+    @ConfigProperty(name = "email.batch.max-size", defaultValue = "100")
+    int maxBatchSize;
+
+    /**
+     * Queues the verification email and answers 202 right away,
+     * 429 when the recipient is over their limit and 503 when the queue is full
+     */
     @POST
-    @RateLimit(value = 20, window = 5, windowUnit = ChronoUnit.MINUTES)
     @Path("/verify")
     @Consumes(MediaType.APPLICATION_JSON)
-    public Uni<Void> sendVerificationEmail(@HeaderParam("Access-Token") String accessToken, VerificationCodeDto request) {
+    public Response sendVerificationEmail(@HeaderParam("Access-Token") String accessToken, VerificationCodeDto request) {
         verifyAccessToken(accessToken);
         verifyRequestBody(request);
-        return emailService.sendVerificationEmail(request.email(), request.username(), request.code());
+        enqueue(new EmailJob(EmailType.VERIFY, request.email(), request.username(), request.code()));
+        return Response.accepted().build();
     }
 
+    /**
+     * Queues the reset password email and answers 202 right away,
+     * 429 when the recipient is over their limit and 503 when the queue is full
+     */
     @POST
-    @RateLimit(value = 20, window = 5, windowUnit = ChronoUnit.MINUTES)
     @Path("/reset-password")
     @Consumes(MediaType.APPLICATION_JSON)
-    public Uni<Void> sendResetPasswordEmail(@HeaderParam("Access-Token") String accessToken, VerificationCodeDto request) {
+    public Response sendResetPasswordEmail(@HeaderParam("Access-Token") String accessToken, VerificationCodeDto request) {
         verifyAccessToken(accessToken);
         verifyRequestBody(request);
-        return emailService.sendResetPasswordEmail(request.email(), request.username(), request.code());
+        enqueue(new EmailJob(EmailType.RESET_PASSWORD, request.email(), request.username(), request.code()));
+        return Response.accepted().build();
+    }
+
+    /**
+     * Queues many verification and reset emails in one request, every item is validated on its own
+     * and gets a result at the same index so one bad item does not fail the batch.
+     * Items over their recipient's limit or that no longer fit in the queue come back FAILED so the caller retries just those
+     */
+    @POST
+    @Path("/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response sendBatch(@HeaderParam("Access-Token") String accessToken, BatchEmailRequestDto request) {
+        verifyAccessToken(accessToken);
+        if (request == null || request.emails() == null || request.emails().isEmpty()) {
+            throw new BadRequestException("Invalid request");
+        }
+        if (request.emails().size() > maxBatchSize) {
+            throw new BadRequestException("Batch is larger than " + maxBatchSize + " emails");
+        }
+        List<BatchEmailItemResultDto> results = new ArrayList<>(request.emails().size());
+        for (int i = 0; i < request.emails().size(); i++) {
+            BatchEmailItemDto item = request.emails().get(i);
+            if (!isValid(item)) {
+                results.add(new BatchEmailItemResultDto(i, BatchItemStatus.REJECTED, "Invalid email request"));
+            }
+            else {
+                EmailJob job = new EmailJob(item.type(), item.email(), item.username(), item.code());
+                if (emailDispatchQueue.coalesce(job)) {
+                    results.add(new BatchEmailItemResultDto(i, BatchItemStatus.ACCEPTED, null));
+                }
+                else if (!recipientThrottle.tryAcquire(job.recipientKey())) {
+                    results.add(new BatchEmailItemResultDto(i, BatchItemStatus.FAILED, RECIPIENT_LIMIT_MESSAGE));
+                }
+                else if (emailDispatchQueue.offer(job) == EmailDispatchQueue.Admission.FULL) {
+                    results.add(new BatchEmailItemResultDto(i, BatchItemStatus.FAILED, QUEUE_FULL_MESSAGE));
+                }
+                else {
+                    results.add(new BatchEmailItemResultDto(i, BatchItemStatus.ACCEPTED, null));
+                }
+            }
+        }
+        return Response.accepted(new BatchEmailResponseDto(results)).build();
+    }
+
+    /*
+     * a repeat that folds into a queued email sends nothing extra, so it is not counted against the recipient
+     */
+    private void enqueue(EmailJob job) {
+        if (emailDispatchQueue.coalesce(job)) {
+            return;
+        }
+        if (!recipientThrottle.tryAcquire(job.recipientKey())) {
+            Log.warn("Recipient over their " + job.type() + " email limit");
+            throw new TooManyEmailsException(RECIPIENT_LIMIT_MESSAGE);
+        }
+        if (emailDispatchQueue.offer(job) == EmailDispatchQueue.Admission.FULL) {
+            Log.warn("Email queue is full, shedding " + job.type() + " email");
+            throw new ServiceUnavailableException(QUEUE_FULL_MESSAGE);
+        }
     }
 
     private void verifyAccessToken(String accessToken) {
@@ -55,4 +138,8 @@ public class EmailResource {
         }
     }
 
+    private boolean isValid(BatchEmailItemDto item) {
+        return item != null && item.type() != null && item.email() != null && item.username() != null && item.code() != null;
+    }
+
 }
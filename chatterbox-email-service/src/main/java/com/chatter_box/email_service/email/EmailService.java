@@ -2,11 +2,17 @@ package com.chatter_box.email_service.email;
 
 import io.quarkus.mailer.Mail;
 import io.quarkus.mailer.reactive.ReactiveMailer;
+import io.quarkus.qute.CheckedTemplate;
+import io.quarkus.qute.TemplateInstance;
 import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
 @ApplicationScoped
 public class EmailService {
 
@@ -17,68 +23,50 @@ public class EmailService {
     @ConfigProperty(name = "frontend.domain")
     String domain;
 
+    private String verifyLinkPrefix;
+
+    /**
+     * Email bodies live in templates/EmailService/, Qute validates and parses them at build time
+     * so a send only walks the parsed tree, static HTML is written out as is
+     */
+    @CheckedTemplate
+    static class Templates {
+        static native TemplateInstance verificationEmail(String username, String verificationLink);
+        static native TemplateInstance resetPasswordEmail(String username, String verificationLink);
+    }
+
+    @PostConstruct
+    void init() {
+        verifyLinkPrefix = (domain.endsWith("/") ? domain : domain + "/") + "verify?email=";
+    }
+
     public Uni<Void> sendEmail(String to, String subject, String body) {
         Mail mail = Mail.withHtml(to, subject, body);
         return reactiveMailer.send(mail);
     }
 
+    public Uni<Void> sendEmail(EmailType type, String userEmail, String username, String code) {
+        return switch (type) {
+            case VERIFY -> sendVerificationEmail(userEmail, username, code);
+            case RESET_PASSWORD -> sendResetPasswordEmail(userEmail, username, code);
+        };
+    }
+
     public Uni<Void> sendVerificationEmail(String userEmail, String username, String code) {
-        String subject = "Verification Email";
-        String verificationLink = String.format(domain+"verify?email=%s&username=%s&code=%s", userEmail, username, code);
-        String body = String.format("""
-                <!DOCTYPE html>
-                <html>
-                <head>
-                  <meta charset="utf-8">
-                  <meta name="viewport" content="width=device-width, initial-scale=1">
-                  <title>Verify Your Account</title>
-                </head>
-                <body>
-                        <h1 style="margin: 0; color: white; font-size: 24px; font-weight: 700; letter-spacing: 0.5px;">ChatterBox</h1>
-                      </div>
-                      <div class="content">
-                        <h1 class="title">Verify Your Email Address</h1>
-                        <p class="text">Thanks for signing up %s! Please click the link below to complete your account setup.</p>
-                        <div class="code-container">
-                          <a class="verification-code" href="%s">Verify</div>
-                        </div>
-                        <p class="text">This code will expire in 10 minutes. If you didn't request this code, you can ignore this email, or reply to have your email deleted</p>
-                        <p class="help-text">Having trouble? Contact our support team.</p>
-                      </div>
-                      <div class="footer">
-                        <p class="footer-text">© 2025 ChatterBox. All rights reserved.</p>
-                </body>
-                </html>""", username, verificationLink);
-        return sendEmail(userEmail, subject, body);
+        String body = Templates.verificationEmail(username, verificationLink(userEmail, username, code)).render();
+        return sendEmail(userEmail, "Verification Email", body);
     }
 
     public Uni<Void> sendResetPasswordEmail(String userEmail, String username, String code) {
-        String subject = "Reset Password";
-        String verificationLink = String.format(domain+"/verify?email=%s&username=%s&code=%s", userEmail, username, code);
-        String body = String.format("""
-                <!DOCTYPE html>
-                <html>
-                <head>
-                  <meta charset="utf-8">
-                  <meta name="viewport" content="width=device-width, initial-scale=1">
-                  <title>Forgot Your Password?</title>
-                </head>
-                <body>
-                        <h1 style="margin: 0; color: white; font-size: 24px; font-weight: 700; letter-spacing: 0.5px;">INeedHousing</h1>
-                      </div>
-                      <div class="content">
-                        <h1 class="title">Forgot Your Password</h1>
-                        <p class="text">Hello %s! Please enter the verification code below to reset your password.</p>
-                        <div class="code-container">
-                          <a class="verification-code" href="%s">Verify</div>
-                        </div>
-                        <p class="text">This code will expire in 10 minutes. If you didn't request this code, you can safely ignore this email.</p>
-                        <p class="help-text">Having trouble? Contact our support team.</p>
-                      </div>
-                      <div class="footer">
-                        <p class="footer-text">© 2025 ChatterBox. All rights reserved.</p>
-                </body>
-                </html>""", username, verificationLink);
-        return  sendEmail(userEmail, subject, body);
+        String body = Templates.resetPasswordEmail(username, verificationLink(userEmail, username, code)).render();
+        return sendEmail(userEmail, "Reset Password", body);
+    }
+
+    String verificationLink(String userEmail, String username, String code) {
+        return verifyLinkPrefix + encode(userEmail) + "&username=" + encode(username) + "&code=" + encode(code);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
     }
 }
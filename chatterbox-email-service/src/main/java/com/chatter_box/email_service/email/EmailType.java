@@ -0,0 +1,6 @@
+package com.chatter_box.email_service.email;
+
+public enum EmailType {
+    VERIFY,
+    RESET_PASSWORD
+}
@@ -0,0 +1,65 @@
+package com.chatter_box.email_service.email;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+
+/**
+ * Per recipient and email type fixed windows, one user mashing "resend" only uses up their own budget.
+ * Windows live in a Caffeine cache bounded at max-entries, an entry untouched for a whole window is dropped and
+ * past the bound the least useful entries are evicted, so memory stays bounded however many addresses show up
+ * and a new recipient is never turned away just because others filled the map
+ */
+@ApplicationScoped
+public class RecipientThrottle {
+
+    @ConfigProperty(name = "email.recipient-limit.max-per-window", defaultValue = "3")
+    int maxPerWindow;
+
+    @ConfigProperty(name = "email.recipient-limit.window", defaultValue = "PT10M")
+    Duration window;
+
+    @ConfigProperty(name = "email.recipient-limit.max-entries", defaultValue = "100000")
+    int maxEntries;
+
+    private Cache<String, Window> windows;
+
+    @PostConstruct
+    void init() {
+        windows = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterAccess(window)
+                .build();
+    }
+
+    /**
+     * Counts the request against the recipient's window
+     * @return false when the recipient is over their limit
+     */
+    public boolean tryAcquire(String recipientKey) {
+        long now = System.nanoTime();
+        Window current = windows.asMap().compute(recipientKey, (key, existing) -> {
+            if (existing == null || now - existing.start >= window.toNanos()) {
+                return new Window(now, 1);
+            }
+            return new Window(existing.start, existing.count + 1);
+        });
+        return current.count <= maxPerWindow;
+    }
+
+    public long size() {
+        windows.cleanUp();
+        return windows.estimatedSize();
+    }
+
+    void clear() {
+        windows.invalidateAll();
+    }
+
+    private record Window(long start, int count) {
+    }
+}
@@ -0,0 +1,32 @@
+package com.chatter_box.email_service.email;
+
+/**
+ * Classic token bucket that hands out reservations instead of refusals, a caller that finds the bucket empty
+ * is told how long to wait for its token so sends get spaced out at the refill rate rather than dropped
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(int capacity, double tokensPerSecond) {
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Takes one token, possibly from the future
+     * @return nanoseconds to wait before using it, 0 when one was available
+     */
+    public synchronized long reserve() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerNano);
+    }
+}
@@ -0,0 +1,6 @@
+package com.chatter_box.email_service.email.dto;
+
+import com.chatter_box.email_service.email.EmailType;
+
+public record BatchEmailItemDto(EmailType type, String email, String username, String code) {
+}
@@ -0,0 +1,4 @@
+package com.chatter_box.email_service.email.dto;
+
+public record BatchEmailItemResultDto(int index, BatchItemStatus status, String error) {
+}
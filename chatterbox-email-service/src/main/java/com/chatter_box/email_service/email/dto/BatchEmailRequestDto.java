@@ -0,0 +1,6 @@
+package com.chatter_box.email_service.email.dto;
+
+import java.util.List;
+
+public record BatchEmailRequestDto(List<BatchEmailItemDto> emails) {
+}
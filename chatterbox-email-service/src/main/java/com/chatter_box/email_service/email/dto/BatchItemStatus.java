@@ -0,0 +1,7 @@
+package com.chatter_box.email_service.email.dto;
+
+public enum BatchItemStatus {
+    ACCEPTED,
+    REJECTED, // invalid item, resending it will not help
+    FAILED // could not be sent right now, worth retrying
+}
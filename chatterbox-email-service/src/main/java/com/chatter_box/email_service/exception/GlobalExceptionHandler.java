@@ -3,6 +3,7 @@ package com.chatter_box.email_service.exception;
 import io.quarkus.security.UnauthorizedException;
 import io.smallrye.faulttolerance.api.RateLimitException;
 import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.ServiceUnavailableException;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.ext.ExceptionMapper;
 import jakarta.ws.rs.ext.Provider;
@@ -28,6 +29,15 @@ class RateLimitExceptionHandler implements ExceptionMapper<RateLimitException> {
     }
 }
 
+@Provider
+class TooManyEmailsExceptionHandler implements ExceptionMapper<TooManyEmailsException> {
+    @Override
+    public Response toResponse(TooManyEmailsException tme) {
+        ErrorResDto dto = new ErrorResDto(tme.getMessage(), UtilFunctions.getTimeStamp());
+        return RestResponse.ResponseBuilder.create(RestResponse.Status.TOO_MANY_REQUESTS, dto).build().toResponse();
+    }
+}
+
 @Provider
 class UnAuthorizedExceptionHandler implements ExceptionMapper<UnauthorizedException> {
 
@@ -47,6 +57,15 @@ class BadRequestExceptionHandler implements ExceptionMapper<BadRequestException>
     }
 }
 
+@Provider
+class ServiceUnavailableExceptionHandler implements ExceptionMapper<ServiceUnavailableException> {
+    @Override
+    public Response toResponse(ServiceUnavailableException sue) {
+        ErrorResDto dto = new ErrorResDto(sue.getMessage(), UtilFunctions.getTimeStamp());
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE).header("Retry-After", 5).entity(dto).build();
+    }
+}
+
 class UtilFunctions {
     public static String getTimeStamp() {
         Long time = Instant.now().toEpochMilli();
@@ -0,0 +1,10 @@
+package com.chatter_box.email_service.exception;
+
+/**
+ * The recipient already got as many emails of this type as their window allows
+ */
+public class TooManyEmailsException extends RuntimeException {
+    public TooManyEmailsException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,127 @@
+package com.chatter_box.email_service.email;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmailJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private EmailJournal journal;
+
+    @BeforeEach
+    void setUp() {
+        journal = newJournal();
+        journal.open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        journal.close();
+    }
+
+    @Test
+    void reopen_ShouldReplayOnlyUnfinishedJobs() {
+        EmailJob first = journal.append(new EmailJob(EmailType.VERIFY, "first@example.com", "first", "111111"));
+        EmailJob second = journal.append(new EmailJob(EmailType.RESET_PASSWORD, "second@example.com", "second", "222222"));
+        journal.complete(first.journalId());
+        journal.awaitDurable();
+        journal.close();
+
+        journal = newJournal();
+        List<EmailJob> replayed = journal.open();
+
+        assertEquals(List.of(second), replayed);
+    }
+
+    @Test
+    void reschedule_ShouldKeepTheAttemptCountAcrossRestarts() {
+        EmailJob job = journal.append(new EmailJob(EmailType.VERIFY, "test@example.com", "testuser", "123456"));
+        EmailJob retried = journal.reschedule(journal.reschedule(job));
+        journal.awaitDurable();
+        journal.close();
+
+        journal = newJournal();
+        List<EmailJob> replayed = journal.open();
+
+        assertEquals(1, replayed.size());
+        assertEquals(2, replayed.get(0).attempt());
+        assertEquals(retried.journalId(), replayed.get(0).journalId());
+    }
+
+    @Test
+    void manyFinishedJobs_ShouldBeCompactedAway() {
+        EmailJob kept = journal.append(new EmailJob(EmailType.VERIFY, "kept@example.com", "kept", "000000"));
+        // far more records than the 4 KB segment holds, only works if finished ones get compacted
+        for (int i = 0; i < 1_000; i++) {
+            EmailJob job = journal.append(new EmailJob(EmailType.VERIFY, "user" + i + "@example.com", "user" + i, "123456"));
+            journal.complete(job.journalId());
+        }
+        journal.close();
+
+        journal = newJournal();
+        assertEquals(List.of(kept), journal.open());
+    }
+
+    @Test
+    void tornTail_ShouldBeDroppedOnReplay() throws IOException {
+        EmailJob job = journal.append(new EmailJob(EmailType.VERIFY, "test@example.com", "testuser", "123456"));
+        journal.close();
+
+        // a crash mid write leaves a half record right after the last complete one
+        Path segment = directory.resolve("journal.log");
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            int end = 2 * Integer.BYTES + ByteBuffer.wrap(Files.readAllBytes(segment)).getInt();
+            channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 40, 1, 2, 3, 4, 9, 9}), end);
+        }
+
+        journal = newJournal();
+        List<EmailJob> replayed = journal.open();
+
+        assertEquals(List.of(job), replayed);
+    }
+
+    @Test
+    void longFields_ShouldSurviveReplayUntruncated() {
+        // larger than both a short length prefix and the 4 KB segment
+        String username = "u".repeat(70_000);
+        EmailJob job = journal.append(new EmailJob(EmailType.VERIFY, "long@example.com", username, "123456"));
+        journal.awaitDurable();
+        journal.close();
+
+        journal = newJournal();
+        assertEquals(List.of(job), journal.open());
+    }
+
+    @Test
+    void deadLetter_ShouldFinishTheJobAndKeepACopy() throws IOException {
+        EmailJob job = journal.append(new EmailJob(EmailType.VERIFY, "test@example.com", "testuser", "123456"));
+        journal.deadLetter(job);
+
+        assertEquals(0, journal.size());
+        assertTrue(Files.size(directory.resolve("dead-letter.log")) > 0, "Dead letter file should hold the job");
+    }
+
+    private EmailJournal newJournal() {
+        EmailJournal fresh = new EmailJournal();
+        fresh.directory = directory.toString();
+        fresh.segmentSize = 4096;
+        fresh.flushInterval = Duration.ofMillis(1);
+        return fresh;
+    }
+}
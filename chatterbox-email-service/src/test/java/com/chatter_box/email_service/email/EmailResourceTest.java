@@ -1,5 +1,7 @@
 package com.chatter_box.email_service.email;
 
+import com.chatter_box.email_service.email.dto.BatchEmailItemDto;
+import com.chatter_box.email_service.email.dto.BatchEmailRequestDto;
 import com.chatter_box.email_service.email.dto.VerificationCodeDto;
 import io.quarkus.mailer.MockMailbox;
 import io.quarkus.test.junit.QuarkusTest;
@@ -11,6 +13,7 @@ import jakarta.inject.Inject;
 import java.util.List;
 
 import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.contains;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -20,10 +23,17 @@ class EmailResourceTest {
     @Inject
     MockMailbox mockMailbox;
 
+    @Inject
+    RecipientThrottle recipientThrottle;
+
+    @Inject
+    EmailDispatchQueue emailDispatchQueue;
+
     private static final String VALID_ACCESS_TOKEN = "secret_key";
     private static final String INVALID_ACCESS_TOKEN = "invalid-token";
     private static final String VERIFY_ENDPOINT = "/api/v1/emails/verify";
     private static final String RESET_PASSWORD_ENDPOINT = "/api/v1/emails/reset-password";
+    private static final String BATCH_ENDPOINT = "/api/v1/emails/batch";
 
     private VerificationCodeDto validRequest;
 
@@ -32,6 +42,10 @@ class EmailResourceTest {
         validRequest = new VerificationCodeDto("test@example.com", "testuser", "123456");
         // Clear the mock mailbox before each test
         mockMailbox.clear();
+        // every test starts with a fresh per-recipient budget
+        recipientThrottle.clear();
+        // and a full SMTP bucket, earlier tests would otherwise leave later sends waiting for tokens
+        emailDispatchQueue.resetSmtpBudget();
     }
 
     // ==================== VERIFICATION EMAIL TESTS ====================
@@ -45,9 +59,10 @@ class EmailResourceTest {
                 .when()
                 .post(VERIFY_ENDPOINT)
                 .then()
-                .statusCode(204);
+                .statusCode(202);
 
-        // Verify email was captured by mock mailbox
+        // Verify email was captured by mock mailbox once the queue sent it
+        awaitSent(1);
         List<io.quarkus.mailer.Mail> emails = mockMailbox.getMailsSentTo("test@example.com");
         assertEquals(1, emails.size(), "Should have sent exactly one email");
 
@@ -56,6 +71,9 @@ class EmailResourceTest {
         assertTrue(sentEmail.getSubject().toLowerCase().contains("verification") ||
                         sentEmail.getSubject().toLowerCase().contains("verify"),
                 "Email subject should contain verification-related text");
+        assertTrue(sentEmail.getHtml().contains("Thanks for signing up testuser!"), "Body should greet the user");
+        assertTrue(sentEmail.getHtml().contains("verify?email=test%40example.com&amp;username=testuser&amp;code=123456"),
+                "Body should link to the verification page");
     }
 
     @Test
@@ -163,9 +181,10 @@ class EmailResourceTest {
                 .when()
                 .post(RESET_PASSWORD_ENDPOINT)
                 .then()
-                .statusCode(204);
+                .statusCode(202);
 
-        // Verify email was captured by mock mailbox
+        // Verify email was captured by mock mailbox once the queue sent it
+        awaitSent(1);
         List<io.quarkus.mailer.Mail> emails = mockMailbox.getMailsSentTo("test@example.com");
         assertEquals(1, emails.size(), "Should have sent exactly one email");
 
@@ -207,13 +226,55 @@ class EmailResourceTest {
                 "No emails should be sent with missing token");
     }
 
+    // ==================== BATCH EMAIL TESTS ====================
+
+    @Test
+    void sendBatch_WithMixedItems_ShouldReturnPerItemResults() {
+        BatchEmailRequestDto request = new BatchEmailRequestDto(List.of(
+                new BatchEmailItemDto(EmailType.VERIFY, "first@example.com", "first", "111111"),
+                new BatchEmailItemDto(EmailType.RESET_PASSWORD, "second@example.com", "second", "222222"),
+                new BatchEmailItemDto(EmailType.VERIFY, null, "third", "333333")));
+
+        given()
+                .header("Access-Token", VALID_ACCESS_TOKEN)
+                .contentType(ContentType.JSON)
+                .body(request)
+                .when()
+                .post(BATCH_ENDPOINT)
+                .then()
+                .statusCode(202)
+                .body("results.status", contains("ACCEPTED", "ACCEPTED", "REJECTED"));
+
+        awaitSent(2);
+        assertEquals(1, mockMailbox.getMailsSentTo("first@example.com").size());
+        assertEquals(1, mockMailbox.getMailsSentTo("second@example.com").size());
+        assertEquals(2, mockMailbox.getTotalMessagesSent(), "The invalid item should not be sent");
+    }
+
+    @Test
+    void sendBatch_WithInvalidToken_ShouldReturn401() {
+        BatchEmailRequestDto request = new BatchEmailRequestDto(List.of(
+                new BatchEmailItemDto(EmailType.VERIFY, "first@example.com", "first", "111111")));
+
+        given()
+                .header("Access-Token", INVALID_ACCESS_TOKEN)
+                .contentType(ContentType.JSON)
+                .body(request)
+                .when()
+                .post(BATCH_ENDPOINT)
+                .then()
+                .statusCode(401);
+
+        assertEquals(0, mockMailbox.getTotalMessagesSent(),
+                "No emails should be sent with invalid token");
+    }
+
     // ==================== RATE LIMITING TESTS ====================
-    // Note: These tests might need adjustment based on your rate limiting implementation
 
     @Test
-    void sendVerificationEmail_RateLimitExceeded_ShouldReturn429() {
-        // Send 5 requests (at the rate limit)
-        for (int i = 0; i < 5; i++) {
+    void sendVerificationEmail_RecipientLimitExceeded_ShouldReturn429() {
+        // Send 3 requests (at the per-recipient limit)
+        for (int i = 0; i < 3; i++) {
             given()
                     .header("Access-Token", VALID_ACCESS_TOKEN)
                     .contentType(ContentType.JSON)
@@ -221,10 +282,12 @@ class EmailResourceTest {
                     .when()
                     .post(VERIFY_ENDPOINT)
                     .then()
-                    .statusCode(204);
+                    .statusCode(202);
+            // sent before the next request so it is counted instead of folded into the queued one
+            awaitSent(i + 1);
         }
 
-        // The 6th request should be rate limited
+        // The 4th request for the same recipient should be rate limited
         given()
                 .header("Access-Token", VALID_ACCESS_TOKEN)
                 .contentType(ContentType.JSON)
@@ -234,15 +297,20 @@ class EmailResourceTest {
                 .then()
                 .statusCode(429);
 
-        // Verify only 5 emails were sent (not 6)
-        assertEquals(5, mockMailbox.getTotalMessagesSent(),
-                "Should have sent exactly 5 emails before rate limiting kicked in");
+        // Another recipient still has their own budget
+        given()
+                .header("Access-Token", VALID_ACCESS_TOKEN)
+                .contentType(ContentType.JSON)
+                .body(new VerificationCodeDto("other@example.com", "otheruser", "654321"))
+                .when()
+                .post(VERIFY_ENDPOINT)
+                .then()
+                .statusCode(202);
     }
 
     @Test
-    void sendResetPasswordEmail_RateLimitExceeded_ShouldReturn429() {
-        // Send 5 requests (at the rate limit)
-        for (int i = 0; i < 5; i++) {
+    void sendResetPasswordEmail_RecipientLimitExceeded_ShouldReturn429() {
+        for (int i = 0; i < 3; i++) {
             given()
                     .header("Access-Token", VALID_ACCESS_TOKEN)
                     .contentType(ContentType.JSON)
@@ -250,10 +318,11 @@ class EmailResourceTest {
                     .when()
                     .post(RESET_PASSWORD_ENDPOINT)
                     .then()
-                    .statusCode(204);
+                    .statusCode(202);
+            // sent before the next request so it is counted instead of folded into the queued one
+            awaitSent(i + 1);
         }
 
-        // The 6th request should be rate limited
         given()
                 .header("Access-Token", VALID_ACCESS_TOKEN)
                 .contentType(ContentType.JSON)
@@ -263,9 +332,39 @@ class EmailResourceTest {
                 .then()
                 .statusCode(429);
 
-        // Verify only 5 emails were sent (not 6)
-        assertEquals(5, mockMailbox.getTotalMessagesSent(),
-                "Should have sent exactly 5 emails before rate limiting kicked in");
+        // The verification budget for the same address is separate
+        given()
+                .header("Access-Token", VALID_ACCESS_TOKEN)
+                .contentType(ContentType.JSON)
+                .body(validRequest)
+                .when()
+                .post(VERIFY_ENDPOINT)
+                .then()
+                .statusCode(202);
+    }
+
+    @Test
+    void repeatedRequests_WhileQueued_ShouldSendOneEmailWithLatestCode() {
+        // an empty bucket holds the first send for two seconds, long enough for every repeat to fold into it
+        emailDispatchQueue.setSmtpBudget(new TokenBucket(0, 0.5));
+
+        // more than the recipient's limit, repeats that fold into the queued email are not counted
+        for (String code : List.of("111111", "222222", "333333", "444444", "555555")) {
+            given()
+                    .header("Access-Token", VALID_ACCESS_TOKEN)
+                    .contentType(ContentType.JSON)
+                    .body(new VerificationCodeDto("test@example.com", "testuser", code))
+                    .when()
+                    .post(VERIFY_ENDPOINT)
+                    .then()
+                    .statusCode(202);
+        }
+
+        awaitSent(1);
+        awaitQuiet();
+        List<io.quarkus.mailer.Mail> emails = mockMailbox.getMailsSentTo("test@example.com");
+        assertEquals(1, emails.size(), "Repeat requests should fold into the queued email");
+        assertTrue(emails.get(0).getHtml().contains("code=555555"), "The email should carry the latest code");
     }
 
     // ==================== INTEGRATION TESTS ====================
@@ -283,7 +382,7 @@ class EmailResourceTest {
                 .when()
                 .post(VERIFY_ENDPOINT)
                 .then()
-                .statusCode(204);
+                .statusCode(202);
 
         // Test reset password endpoint
         given()
@@ -293,9 +392,10 @@ class EmailResourceTest {
                 .when()
                 .post(RESET_PASSWORD_ENDPOINT)
                 .then()
-                .statusCode(204);
+                .statusCode(202);
 
         // Verify both emails were sent
+        awaitSent(2);
         assertEquals(2, mockMailbox.getTotalMessagesSent(),
                 "Should have sent exactly 2 emails total");
 
@@ -316,7 +416,7 @@ class EmailResourceTest {
                 .when()
                 .post(VERIFY_ENDPOINT)
                 .then()
-                .statusCode(204);
+                .statusCode(202);
 
         // Send reset password email to same recipient
         given()
@@ -326,11 +426,41 @@ class EmailResourceTest {
                 .when()
                 .post(RESET_PASSWORD_ENDPOINT)
                 .then()
-                .statusCode(204);
+                .statusCode(202);
 
         // Verify both emails were sent to the same recipient
+        awaitSent(2);
         List<io.quarkus.mailer.Mail> emails = mockMailbox.getMailsSentTo("test@example.com");
         assertEquals(2, emails.size(), "Should have sent 2 emails to the same recipient");
         assertEquals(2, mockMailbox.getTotalMessagesSent(), "Should have sent 2 emails total");
     }
-}
\ No newline at end of file
+
+    // waits until nothing new has been sent for a little while
+    private void awaitQuiet() {
+        int sent = -1;
+        while (sent != mockMailbox.getTotalMessagesSent()) {
+            sent = mockMailbox.getTotalMessagesSent();
+            try {
+                Thread.sleep(200);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // emails are sent from the dispatch queue after the 202, give it a moment
+    private void awaitSent(int expected) {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (mockMailbox.getTotalMessagesSent() < expected && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(20);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.chatter_box.email_service.email;
+
+import io.quarkus.qute.Engine;
+import io.quarkus.qute.HtmlEscaper;
+import io.quarkus.qute.Template;
+import io.quarkus.qute.Variant;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Render cost of the verification email, the old String.format body against the Qute template parsed once.
+ * Not part of the test run, start it with
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.chatter_box.email_service.email.EmailTemplateBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmailTemplateBenchmark {
+
+    private static final String DOMAIN = "https://chatterbox.example.com/";
+    private static final String EMAIL = "someone@example.com";
+    private static final String USERNAME = "someone";
+    private static final String CODE = "123456";
+
+    // the body EmailService used to build on every send
+    private static final String LEGACY_BODY = """
+            <!DOCTYPE html>
+            <html>
+            <head>
+              <meta charset="utf-8">
+              <meta name="viewport" content="width=device-width, initial-scale=1">
+              <title>Verify Your Account</title>
+            </head>
+            <body>
+                    <h1 style="margin: 0; color: white; font-size: 24px; font-weight: 700; letter-spacing: 0.5px;">ChatterBox</h1>
+                  </div>
+                  <div class="content">
+                    <h1 class="title">Verify Your Email Address</h1>
+                    <p class="text">Thanks for signing up %s! Please click the link below to complete your account setup.</p>
+                    <div class="code-container">
+                      <a class="verification-code" href="%s">Verify</div>
+                    </div>
+                    <p class="text">This code will expire in 10 minutes. If you didn't request this code, you can ignore this email, or reply to have your email deleted</p>
+                    <p class="help-text">Having trouble? Contact our support team.</p>
+                  </div>
+                  <div class="footer">
+                    <p class="footer-text">© 2025 ChatterBox. All rights reserved.</p>
+            </body>
+            </html>""";
+
+    private Template template;
+    private String linkPrefix;
+
+    @Setup
+    public void setUp() throws IOException {
+        Engine engine = Engine.builder()
+                .addDefaults()
+                .addResultMapper(new HtmlEscaper(List.of(Variant.TEXT_HTML)))
+                .build();
+        try (InputStream in = getClass().getResourceAsStream("/templates/EmailService/verificationEmail.html")) {
+            String content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            template = engine.parse(content, Variant.forContentType(Variant.TEXT_HTML));
+        }
+        linkPrefix = DOMAIN + "verify?email=";
+    }
+
+    @Benchmark
+    public String stringFormat() {
+        String verificationLink = String.format(DOMAIN + "verify?email=%s&username=%s&code=%s", EMAIL, USERNAME, CODE);
+        return String.format(LEGACY_BODY, USERNAME, verificationLink);
+    }
+
+    @Benchmark
+    public String quteTemplate() {
+        String verificationLink = linkPrefix + EMAIL + "&username=" + USERNAME + "&code=" + CODE;
+        return template.data("username", USERNAME).data("verificationLink", verificationLink).render();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EmailTemplateBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,43 @@
+package com.chatter_box.email_service.email;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecipientThrottleTest {
+
+    private RecipientThrottle throttle;
+
+    @BeforeEach
+    void setUp() {
+        throttle = new RecipientThrottle();
+        throttle.maxPerWindow = 2;
+        throttle.window = Duration.ofMinutes(10);
+        throttle.maxEntries = 100;
+        throttle.init();
+    }
+
+    @Test
+    void tryAcquire_ShouldLimitEachRecipientOnItsOwn() {
+        assertTrue(throttle.tryAcquire("VERIFY:first@example.com"));
+        assertTrue(throttle.tryAcquire("VERIFY:first@example.com"));
+        assertFalse(throttle.tryAcquire("VERIFY:first@example.com"));
+
+        assertTrue(throttle.tryAcquire("VERIFY:second@example.com"));
+        assertTrue(throttle.tryAcquire("RESET_PASSWORD:first@example.com"));
+    }
+
+    @Test
+    void tryAcquire_ShouldStillAdmitNewRecipientsOnceFull() {
+        for (int i = 0; i < 1_000; i++) {
+            throttle.tryAcquire("VERIFY:sprayed" + i + "@example.com");
+        }
+
+        assertTrue(throttle.tryAcquire("VERIFY:new-user@example.com"));
+        assertTrue(throttle.size() <= 100);
+    }
+}